@@ -0,0 +1,226 @@
+package game;
+
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A {@link Handler} that hands records to a background thread instead of writing them on the caller's thread. Records
+ * are placed in a fixed size ring buffer and a daemon thread drains it in batches into the target handler, flushing
+ * the target whenever the buffer runs empty. Publishing a record never waits for formatting or I/O, so logging from the
+ * game loop or the paint thread costs a level check and a short copy into the ring.
+ * <p>
+ *     When the ring is full the {@link OverflowPolicy} decides which record is lost, and the number of lost records is
+ *     reported to the target as a single warning once the writer catches up. Closing the handler writes everything
+ *     still queued before closing the target, so nothing is lost on a normal shutdown.
+ * </p>
+ */
+public class AsyncLogHandler extends Handler {
+    /**
+     * What to do with a record published while the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Discard the new record and keep the ones already queued. */
+        DROP_NEWEST,
+        /** Discard the oldest queued record to make room for the new one. */
+        DROP_OLDEST
+    }
+
+    /** Most records moved out of the ring in one go, so producers are not held up by a long copy. */
+    private static final int BATCH_SIZE = 256;
+
+    /** Handler that formats and writes the records. */
+    private final Handler target;
+
+    /** Queued records, indexed by sequence number modulo the capacity. */
+    private final LogRecord[] ring;
+
+    /** Capacity minus one, used to map sequence numbers to slots. The capacity is a power of two. */
+    private final int mask;
+
+    /** How to handle a full ring. */
+    private final OverflowPolicy policy;
+
+    /** Guards the ring and the counters below. */
+    private final Object lock = new Object();
+
+    /** Thread that drains the ring into the target. */
+    private final Thread writer;
+
+    /** Sequence number of the next record to drain. */
+    private long head;
+
+    /** Sequence number of the next record to publish. */
+    private long tail;
+
+    /** Number of records dropped since the last report. */
+    private long dropped;
+
+    /** Total number of records dropped. */
+    private long totalDropped;
+
+    /** {@code true} while the writer is waiting for records. */
+    private boolean idle;
+
+    /** {@code true} once the handler has been closed. */
+    private boolean closed;
+
+    /**
+     * Creates a handler that writes to the given target on a new daemon thread. The handler's level starts at the
+     * target's level.
+     * @param target the handler that writes the records.
+     * @param capacity the number of records the ring can hold, rounded up to a power of two.
+     * @param policy what to do with records published while the ring is full.
+     * @param name name of the writer thread.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public AsyncLogHandler(Handler target, int capacity, OverflowPolicy policy, String name) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.target = target;
+        this.ring = new LogRecord[size];
+        this.mask = size - 1;
+        this.policy = policy;
+        setLevel(target.getLevel());
+        writer = new Thread(this::drain, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record for the writer thread. Returns without waiting if the ring is full, dropping a record as
+     * determined by the overflow policy.
+     * @param record the record to log.
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record))
+            return;
+        // Finding the calling method means walking the stack, which costs more than the rest of the call and would see
+        // the wrong stack on the writer thread. Loggers are named after their class, so the name is used instead.
+        record.setSourceClassName(record.getLoggerName());
+        synchronized (lock) {
+            if (closed)
+                return;
+            if (tail - head == ring.length) {
+                dropped++;
+                totalDropped++;
+                if (policy == OverflowPolicy.DROP_NEWEST)
+                    return;
+                ring[(int) (head++ & mask)] = null;
+            }
+            ring[(int) (tail++ & mask)] = record;
+            if (idle)
+                lock.notify();
+        }
+    }
+
+    /**
+     * Wakes the writer thread so the queued records are written and the target is flushed. Returns without waiting
+     * for the write.
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            if (idle)
+                lock.notify();
+        }
+    }
+
+    /**
+     * Writes every queued record, then closes the target. Waits for the writer thread to finish. Calling this more than
+     * once has no further effect.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed)
+                return;
+            closed = true;
+            lock.notify();
+        }
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        target.close();
+    }
+
+    /**
+     * Gets the number of records dropped because the ring was full.
+     * @return the total number of dropped records.
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return totalDropped;
+        }
+    }
+
+    /**
+     * Gets the number of records waiting to be written.
+     * @return the number of queued records.
+     */
+    public int getQueuedCount() {
+        synchronized (lock) {
+            return (int) (tail - head);
+        }
+    }
+
+    /**
+     * Moves records from the ring to the target until the handler is closed and the ring is empty.
+     * @hidden
+     */
+    private void drain() {
+        LogRecord[] batch = new LogRecord[Math.min(BATCH_SIZE, ring.length)];
+        while (true) {
+            int count = 0;
+            long lost;
+            boolean flush = false;
+            synchronized (lock) {
+                if (head == tail && !closed) {
+                    idle = true;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        reportError("Log writer interrupted", e, ErrorManager.GENERIC_FAILURE);
+                    }
+                    idle = false;
+                }
+                while (count < batch.length && head != tail) {
+                    int slot = (int) (head++ & mask);
+                    batch[count++] = ring[slot];
+                    ring[slot] = null;
+                }
+                lost = dropped;
+                dropped = 0;
+                if (head == tail) {
+                    if (closed && count == 0 && lost == 0)
+                        break;
+                    flush = true;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                target.publish(batch[i]);
+                batch[i] = null;
+            }
+            if (lost > 0) {
+                LogRecord warning = new LogRecord(Level.WARNING, "Log queue full, dropped " + lost + " records.");
+                warning.setLoggerName(AsyncLogHandler.class.getName());
+                warning.setSourceClassName(AsyncLogHandler.class.getName());
+                warning.setSourceMethodName("publish");
+                target.publish(warning);
+            }
+            if (flush)
+                target.flush();
+        }
+        target.flush();
+    }
+}
@@ -1,12 +1,22 @@
 package game;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.logging.*;
 
 
 /**
  * Used to uniformly configure a logger that can be used by all classes.
+ * <p>
+ *     Every package logs to its own file and all packages share one console. In the default asynchronous mode both
+ *     go through an {@link AsyncLogHandler}, so a log call from the game loop or the paint thread only queues the
+ *     record and the formatting, writing and rolling over of files happen on background threads. Loggers are set to
+ *     the lowest level any handler writes, so messages below it are discarded by a single level check; messages that
+ *     are expensive to build should be passed as a {@link java.util.function.Supplier} so they are only built when
+ *     they will be written.
+ * </p>
  */
 public class LoggerSetup {
     /** The path to the directory where the log file will be stored. */
@@ -18,8 +28,26 @@ public class LoggerSetup {
     /** Minimum level that the file will log. */
     private final static Level MIN_FILE = Level.FINER;
 
+    /** {@code true} to write logs on background threads, {@code false} to write them on the logging thread. */
+    private final static boolean ASYNC = true;
+
+    /** Number of records each asynchronous handler can queue before dropping records. */
+    private final static int QUEUE_CAPACITY = 8192;
+
+    /** Which records are dropped when a queue is full. */
+    private final static AsyncLogHandler.OverflowPolicy OVERFLOW = AsyncLogHandler.OverflowPolicy.DROP_NEWEST;
+
+    /** Size in bytes after which a log file is compressed and a new one started. */
+    private final static long MAX_FILE_BYTES = 8L << 20;
+
+    /** Number of compressed log files kept for each package. */
+    private final static int MAX_ARCHIVES = 5;
+
     /** Holds all file handlers with the package name as the key. */
-    private final static HashMap<String, FileHandler> fileHandlers = new HashMap<>();
+    private final static HashMap<String, Handler> fileHandlers = new HashMap<>();
+
+    /** Handler for console output shared by every logger, created with the first logger. */
+    private static Handler consoleHandler;
 
     /**
      * This class is not instantiable as it is only used to set up a logger uniformly throughout the program.
@@ -28,26 +56,26 @@ public class LoggerSetup {
     private LoggerSetup() {}
 
     /**
-     * Returns a {@code FileHandler} for the given {@code packageName}. This allows for every package to have their own
+     * Returns a file handler for the given {@code packageName}. This allows for every package to have their own
      * file handler allowing for each package to log to one file.
      * @param packageName name of the package
-     * @return the {@code FileHandler} for the given package.
+     * @return the file handler for the given package.
      */
-    private static FileHandler getFileHandler(String packageName) {
-        // Check if the FileHandler for the package already exists
+    private static Handler getFileHandler(String packageName) {
+        // Check if the handler for the package already exists
         if (!fileHandlers.containsKey(packageName)) {
-            // Attempt to Configure and add a handler to log all minFile and above severity logs to a file with a
-            // simple text format
+            // Attempt to configure a handler to log all minFile and above severity logs to a file with a simple text
+            // format
             try {
+                Files.createDirectories(Path.of(LOG_DIR));
                 // Construct the log file name based on the package name
-                String logFileName = LOG_DIR + packageName + "_logfile.log";
-                // this filehandler will use the file at 'logFileName' and will append to the file until it reaches size of
-                // Long.MAX_VALUE. it will then clear the current file and use it again as file count is set to 1. It will
-                // append because of the true.
-                FileHandler fileHandler = new FileHandler(logFileName, Long.MAX_VALUE, 1, true);
-                fileHandler.setFormatter(new SimpleFormatter());
+                Path logFile = Path.of(LOG_DIR, packageName + "_logfile.log");
+                // Appends to the file until it reaches MAX_FILE_BYTES, then compresses it into an archive and starts
+                // over with an empty file
+                Handler fileHandler = new RollingFileHandler(logFile, MAX_FILE_BYTES, MAX_ARCHIVES,
+                        new SimpleFormatter());
                 fileHandler.setLevel(MIN_FILE);
-                fileHandlers.put(packageName, fileHandler);
+                fileHandlers.put(packageName, wrap(fileHandler, "log-writer-" + packageName));
             } catch (IOException e) {
                 throw new RuntimeException("Failed to initialize file handler for package: " + packageName, e);
             }
@@ -55,35 +83,56 @@ public class LoggerSetup {
         return fileHandlers.get(packageName);
     }
 
+    /**
+     * Returns the handler for console output, creating it on first use.
+     * @return the shared console handler.
+     */
+    private static Handler getConsoleHandler() {
+        if (consoleHandler == null) {
+            Handler handler = new ConsoleHandler();
+            handler.setLevel(MIN_CONSOLE);
+            consoleHandler = wrap(handler, "log-writer-console");
+        }
+        return consoleHandler;
+    }
+
+    /**
+     * Wraps a handler so it writes on a background thread when logging is asynchronous.
+     * @hidden
+     */
+    private static Handler wrap(Handler handler, String threadName) {
+        return ASYNC ? new AsyncLogHandler(handler, QUEUE_CAPACITY, OVERFLOW, threadName) : handler;
+    }
+
     /**
      * Configures a {@link Logger} to log all messages at severity {@code minFile} and above to a file at
      * {@code log_path} and log all messages at {@code minConsole} and above to the console. This allows the user to
      * view detailed logging when needed without filling up the console with unnecessary information.
      * <p>
-     *     The method configures a {@link ConsoleHandler} to handle console output and configures a {@link FileHandler}
-     *     to log all messages to a file using a {@link SimpleFormatter} to format the logs to be easily read.
+     *     The method adds the shared console handler and the file handler of the logger's package, which writes all
+     *     messages to a file using a {@link SimpleFormatter} to format the logs to be easily read. Asking for the same
+     *     logger again returns it without adding more handlers.
      * </p>
      * @param name name of the logger
      * @return A configured {@code Logger} of the specified name.
      */
-    public static Logger getLogger(String name){
+    public static synchronized Logger getLogger(String name){
         String packageName = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : "default";
         Logger logger = Logger.getLogger(name);
+        if (logger.getHandlers().length > 0)
+            return logger;
 
         // Stops the logger from logging to console
         logger.setUseParentHandlers(false);
 
-        // Configure and add a handler to log all minConsole and above severity logs to console
-        ConsoleHandler consoleHandler = new ConsoleHandler();
-        consoleHandler.setLevel(MIN_CONSOLE);
-        logger.addHandler(consoleHandler);
+        // Add the shared handler that logs all minConsole and above severity logs to console
+        logger.addHandler(getConsoleHandler());
 
         // File handler configuration
-        FileHandler fileHandler = getFileHandler(packageName);
-        logger.addHandler(fileHandler);
+        logger.addHandler(getFileHandler(packageName));
 
-        // Allow the logger to capture everything; the logs will be sorted by the handlers
-        logger.setLevel(Level.ALL);
+        // Discard anything no handler would write before a record is created
+        logger.setLevel(MIN_FILE.intValue() < MIN_CONSOLE.intValue() ? MIN_FILE : MIN_CONSOLE);
         return logger;
     }
 }
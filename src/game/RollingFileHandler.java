@@ -0,0 +1,135 @@
+package game;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+import java.util.logging.StreamHandler;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link StreamHandler} that appends to a log file and rolls it over once it grows past a size limit. The full file
+ * is compressed to {@code <file>.1.gz}, older archives move up by one and the oldest is deleted, so the logs of a
+ * package never take more than about the limit plus the compressed archives on disk.
+ * <p>
+ *     Records are buffered and only written when the handler is flushed, which {@link AsyncLogHandler} does whenever
+ *     its queue runs empty. The size is counted as bytes reach the file, so a file may pass the limit by up to one
+ *     buffer before rolling over.
+ * </p>
+ */
+public class RollingFileHandler extends StreamHandler {
+    /** Path of the current log file. */
+    private final Path path;
+
+    /** Size in bytes after which the file is rolled over. */
+    private final long limit;
+
+    /** Number of compressed archives kept. */
+    private final int archives;
+
+    /** Number of bytes in the current file. */
+    private long written;
+
+    /**
+     * Opens a log file for appending.
+     * @param path the path of the log file.
+     * @param limit the size in bytes after which the file is rolled over.
+     * @param archives the number of compressed archives to keep, or {@code 0} to delete full files.
+     * @param formatter the formatter for the records.
+     * @throws IOException if the file cannot be opened.
+     * @throws IllegalArgumentException if the limit is not positive or the archive count is negative.
+     */
+    public RollingFileHandler(Path path, long limit, int archives, Formatter formatter) throws IOException {
+        if (limit <= 0 || archives < 0) {
+            throw new IllegalArgumentException("Limit must be positive and archives must not be negative");
+        }
+        this.path = path;
+        this.limit = limit;
+        this.archives = archives;
+        setFormatter(formatter);
+        open();
+    }
+
+    /**
+     * Formats and buffers a record, rolling the file over first if it has reached the size limit.
+     * @param record the record to log.
+     */
+    @Override
+    public synchronized void publish(LogRecord record) {
+        if (written >= limit) {
+            try {
+                rollOver();
+            } catch (IOException e) {
+                reportError("Failed to roll over " + path, e, ErrorManager.OPEN_FAILURE);
+                // The old file was already closed, so reopen it and keep appending rather than losing records
+                try {
+                    open();
+                } catch (IOException reopen) {
+                    reportError("Failed to reopen " + path, reopen, ErrorManager.OPEN_FAILURE);
+                }
+                // Only try to roll over again after another limit's worth of records
+                written = 0;
+            }
+        }
+        super.publish(record);
+    }
+
+    /**
+     * Closes the current file, compresses it into the newest archive and starts an empty file.
+     * @hidden
+     */
+    private void rollOver() throws IOException {
+        // Closes the old file after writing any buffered records
+        setOutputStream(OutputStream.nullOutputStream());
+        Files.deleteIfExists(archive(archives));
+        for (int i = archives - 1; i >= 1; i--) {
+            if (Files.exists(archive(i)))
+                Files.move(archive(i), archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (archives > 0) {
+            try (InputStream in = Files.newInputStream(path);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive(1)))) {
+                in.transferTo(out);
+            }
+        }
+        Files.delete(path);
+        open();
+    }
+
+    /**
+     * Opens the log file for appending and counts the bytes already in it.
+     * @hidden
+     */
+    private void open() throws IOException {
+        written = Files.exists(path) ? Files.size(path) : 0;
+        OutputStream file = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        setOutputStream(new FilterOutputStream(file) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                written += len;
+            }
+        });
+    }
+
+    /**
+     * Gets the path of an archive.
+     * @hidden
+     */
+    private Path archive(int i) {
+        return path.resolveSibling(path.getFileName() + "." + i + ".gz");
+    }
+}
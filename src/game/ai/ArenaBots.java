@@ -0,0 +1,195 @@
+package game.ai;
+
+import game.LoggerSetup;
+import game.core.Arena;
+import game.core.ArenaListener;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Scripted players for an {@link Arena}. Each bot heads for the food nearest to it, turning only into cells that no
+ * snake covers, and looks for the nearest food again once its target is gone. Targets are found through the arena's
+ * spatial index and moves are checked with a handful of lookups in its owner grid, so steering costs the same per bot
+ * however many snakes and food items share the board.
+ * <p>
+ *     Bots share the arena with human players. Call {@link #steer()} before every {@link Arena#tick(ArenaListener)}
+ *     from the thread that ticks the arena.
+ * </p>
+ * Running {@link #main(String[])} plays headless bot battles of growing size and reports the tick rate, which is how the
+ * arena is load tested.
+ */
+public class ArenaBots {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(ArenaBots.class.getName());
+
+    /** Shared direction values to avoid copying the array on every tick. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** A listener that ignores every change, for ticking without observers. */
+    private static final ArenaListener IGNORE = new ArenaListener() {
+        @Override
+        public void spawned(int id, List<Point> body) {
+        }
+
+        @Override
+        public void moved(int id, int headX, int headY, int tailX, int tailY) {
+        }
+
+        @Override
+        public void died(int id) {
+        }
+
+        @Override
+        public void foodAdded(int x, int y) {
+        }
+
+        @Override
+        public void foodRemoved(int x, int y) {
+        }
+    };
+
+    /** The arena the bots play in. */
+    private final Arena arena;
+
+    /** Player ids of the bots. The first {@code count} entries are used. */
+    private final int[] ids;
+
+    /** Food cell each bot is heading for, indexed by player id, or {@code -1} if it has none. */
+    private final int[] targets;
+
+    /** Number of bots. */
+    private int count;
+
+    /**
+     * Creates a group of bots with no players yet.
+     * @param arena the arena the bots play in.
+     */
+    public ArenaBots(Arena arena) {
+        this.arena = arena;
+        this.ids = new int[arena.getMaxPlayers()];
+        this.targets = new int[arena.getMaxPlayers()];
+    }
+
+    /**
+     * Joins new bots to the arena.
+     * @param bots the number of bots to add.
+     * @return the number of bots added, which is less than requested if the arena filled up.
+     */
+    public int add(int bots) {
+        int added = 0;
+        while (added < bots) {
+            int id = arena.join();
+            if (id < 0)
+                break;
+            ids[count++] = id;
+            targets[id] = -1;
+            added++;
+        }
+        LOGGER.fine("Added " + added + " bots.");
+        return added;
+    }
+
+    /**
+     * Queues the next turn of every bot that has a snake on the board.
+     */
+    public void steer() {
+        int cols = arena.getCols();
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            if (!arena.isAlive(id))
+                continue;
+            Point head = arena.getBody(id).get(0);
+            int target = targets[id];
+            if (target < 0 || !arena.isFood(target % cols, target / cols)) {
+                target = arena.nearestFood(head.x, head.y);
+                targets[id] = target;
+            }
+            Direction best = null;
+            int bestDistance = Integer.MAX_VALUE;
+            for (Direction dir : DIRECTIONS) {
+                int x = head.x + dx(dir);
+                int y = head.y + dy(dir);
+                if (arena.isOccupied(x, y))
+                    continue;
+                int distance = target < 0 ? 0 : Math.abs(x - target % cols) + Math.abs(y - target / cols);
+                if (distance < bestDistance) {
+                    best = dir;
+                    bestDistance = distance;
+                }
+            }
+            if (best != null)
+                arena.steer(id, best);
+        }
+    }
+
+    /**
+     * Gets the number of bots.
+     * @return the number of bots.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the column offset of a move.
+     * @hidden
+     */
+    private static int dx(Direction dir) {
+        return dir == Direction.LEFT ? -1 : dir == Direction.RIGHT ? 1 : 0;
+    }
+
+    /**
+     * Gets the row offset of a move.
+     * @hidden
+     */
+    private static int dy(Direction dir) {
+        return dir == Direction.UP ? -1 : dir == Direction.DOWN ? 1 : 0;
+    }
+
+    /**
+     * Plays headless bot battles and logs the tick rate for each size, doubling the number of snakes up to the given
+     * count so the scaling can be compared. The board and food grow with the number of snakes. Arguments, all
+     * optional, are the largest number of snakes and the number of ticks played per battle.
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        int maxSnakes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        for (int snakes = Math.max(1, maxSnakes / 4); ; snakes = Math.min(snakes * 2, maxSnakes)) {
+            // About 64 cells per snake and one food item for every two snakes
+            int size = (int) Math.ceil(Math.sqrt(64.0 * snakes));
+            Arena arena = new Arena(size, size, snakes, Math.max(1, snakes / 2), snakes);
+            ArenaBots bots = new ArenaBots(arena);
+            bots.add(snakes);
+
+            long start = System.nanoTime();
+            long alive = 0;
+            long length = 0;
+            for (int t = 0; t < ticks; t++) {
+                bots.steer();
+                arena.tick(IGNORE);
+                if (t % 100 == 0) {
+                    for (int id = 0; id < snakes; id++) {
+                        if (arena.isAlive(id)) {
+                            alive++;
+                            length += arena.getBody(id).size();
+                        }
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LOGGER.info(String.format("%d snakes on %dx%d: %.0f ticks/s, %.0f snake ticks/s, %.0f alive, average "
+                            + "length %.1f", snakes, size, size, ticks / seconds, (double) ticks * snakes / seconds,
+                    alive / Math.ceil(ticks / 100.0), alive == 0 ? 0.0 : (double) length / alive));
+            if (snakes >= maxSnakes)
+                break;
+        }
+    }
+}
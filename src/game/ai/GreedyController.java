@@ -0,0 +1,87 @@
+package game.ai;
+
+import game.core.BoardAnalyzer;
+import game.core.GameEngine;
+import game.core.TickListener;
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.awt.Point;
+
+/**
+ * A simple scripted player that heads straight for the nearest food while avoiding moves that would trap the snake. Before every
+ * tick each direction is scored with a {@link BoardAnalyzer}: moves that leave at least as much free space as the
+ * snake is long are safe, and among the safe moves the one closest to the food wins. If no move is safe the one leaving
+ * the most space is taken.
+ * <p>
+ *     It needs no trained policy, which makes it a cheap opponent for bot ladders and a steady load for benchmarks.
+ *     A controller is not thread safe; each game should have its own.
+ * </p>
+ * @see GameEngine#addTickListener(TickListener)
+ */
+public class GreedyController implements TickListener {
+    /** Shared direction values to avoid copying the array on every tick. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Scores the candidate moves. */
+    private final BoardAnalyzer analyzer = new BoardAnalyzer();
+
+    /**
+     * Chooses the next direction and queues it on the snake.
+     * @param gameEngine the engine that is about to tick.
+     */
+    @Override
+    public void beforeTick(GameEngine gameEngine) {
+        analyzer.load(gameEngine);
+        int length = gameEngine.getSnake().getSnake().size();
+        Point head = gameEngine.getSnake().getSnake().get(0);
+        int food = gameEngine.getFood().getNearestCell();
+        int foodX = food < 0 ? head.x : food % Constants.NUM_COLS;
+        int foodY = food < 0 ? head.y : food / Constants.NUM_COLS;
+
+        Direction best = null;
+        boolean bestSafe = false;
+        int bestDistance = Integer.MAX_VALUE;
+        int bestRegion = -1;
+        for (Direction dir : DIRECTIONS) {
+            int region = analyzer.regionSizeAfter(dir);
+            if (region < 0)
+                continue;
+            boolean safe = region >= length;
+            int distance = Math.abs(head.x + dx(dir) - foodX) + Math.abs(head.y + dy(dir) - foodY);
+            boolean better = safe != bestSafe ? safe
+                    : safe ? distance < bestDistance : region > bestRegion;
+            if (best == null || better) {
+                best = dir;
+                bestSafe = safe;
+                bestDistance = distance;
+                bestRegion = region;
+            }
+        }
+        if (best != null)
+            gameEngine.getSnake().changeDirection(best);
+    }
+
+    /**
+     * Not used.
+     * @param gameEngine the engine that has just ticked.
+     */
+    @Override
+    public void afterTick(GameEngine gameEngine) {}
+
+    /**
+     * @return the change in column when moving in the given direction.
+     * @hidden
+     */
+    private static int dx(Direction dir) {
+        return dir == Direction.LEFT ? -1 : dir == Direction.RIGHT ? 1 : 0;
+    }
+
+    /**
+     * @return the change in row when moving in the given direction.
+     * @hidden
+     */
+    private static int dy(Direction dir) {
+        return dir == Direction.UP ? -1 : dir == Direction.DOWN ? 1 : 0;
+    }
+}
@@ -0,0 +1,312 @@
+package game.ai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A small fully connected neural network that picks an action from a {@link SnakeEnv} observation. Hidden layers use a
+ * ReLU activation and the action with the largest output is chosen.
+ * <p>
+ *     All parameters live in a single {@code float[]}. Each layer stores its weights input-major, so the inner loop of
+ *     a layer adds one input times a contiguous row of weights to the outputs. That loop has no reduction and no
+ *     branches, which lets the JIT vectorize it, and inputs equal to zero are skipped entirely, which matters because
+ *     observations are mostly empty cells. Activation buffers are allocated up front and only grow if a larger batch
+ *     is requested, so inference does not create garbage.
+ * </p><p>
+ *     Policies are stored in a big-endian binary file containing {@link #MAGIC}, {@link #VERSION}, the number of layer
+ *     sizes, each layer size and then every parameter in order.
+ * </p>
+ * A policy is not thread safe because of its activation buffers; use {@link #copy()} to get one per thread.
+ */
+public class MlpPolicy {
+    /** Marks the start of a policy file. The bytes spell "SNKP". */
+    public static final int MAGIC = 0x534E4B50;
+
+    /** Version of the policy file format. */
+    public static final int VERSION = 1;
+
+    /** Most layers a policy file may declare, including the input and output layers. */
+    static final int MAX_LAYERS = 64;
+
+    /** Most neurons a layer in a policy file may declare. */
+    static final int MAX_LAYER_SIZE = 1 << 16;
+
+    /** Number of neurons in each layer, starting with the input layer. */
+    private final int[] sizes;
+
+    /** Weights and biases of every layer. May be shared with a trainer that updates them in place. */
+    private final float[] params;
+
+    /** Index in {@code params} of the weights of each layer. */
+    private final int[] weightOffsets;
+
+    /** Index in {@code params} of the biases of each layer. */
+    private final int[] biasOffsets;
+
+    /** Largest number of neurons in any layer after the input layer. */
+    private final int maxWidth;
+
+    /** Activation buffers that layers alternate between. */
+    private float[] front;
+    private float[] back;
+
+    /** Number of samples the activation buffers have room for. */
+    private int batchCapacity;
+
+    /**
+     * Creates a policy that uses the given parameters without copying them.
+     * @param sizes the number of neurons in each layer, starting with the input layer. At least two layers are needed.
+     * @param params the weights and biases of every layer. Must have {@link #parameterCount(int[])} values.
+     * @throws IllegalArgumentException if the sizes are invalid or the parameter count does not match.
+     */
+    public MlpPolicy(int[] sizes, float[] params) {
+        if (sizes == null || sizes.length < 2) {
+            throw new IllegalArgumentException("A policy needs an input and an output layer");
+        }
+        if (params == null || params.length != parameterCount(sizes)) {
+            throw new IllegalArgumentException("Expected " + parameterCount(sizes) + " parameters");
+        }
+        this.sizes = sizes.clone();
+        this.params = params;
+        weightOffsets = new int[sizes.length - 1];
+        biasOffsets = new int[sizes.length - 1];
+        int offset = 0;
+        int widest = 0;
+        for (int l = 0; l < sizes.length - 1; l++) {
+            weightOffsets[l] = offset;
+            offset += sizes[l] * sizes[l + 1];
+            biasOffsets[l] = offset;
+            offset += sizes[l + 1];
+            widest = Math.max(widest, sizes[l + 1]);
+        }
+        maxWidth = widest;
+        ensureBatch(1);
+    }
+
+    /**
+     * Counts the parameters needed by a network with the given layer sizes.
+     * @param sizes the number of neurons in each layer, starting with the input layer.
+     * @return the number of weights and biases.
+     * @throws IllegalArgumentException if any size is not positive or there are more parameters than fit in an array.
+     */
+    public static int parameterCount(int[] sizes) {
+        long count = 0;
+        for (int l = 0; l < sizes.length; l++) {
+            if (sizes[l] <= 0) {
+                throw new IllegalArgumentException("Layer sizes must be positive");
+            }
+            if (l > 0)
+                count += (long) sizes[l - 1] * sizes[l] + sizes[l];
+            if (count > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many parameters");
+            }
+        }
+        return (int) count;
+    }
+
+    /**
+     * Reads the number of layers and each layer size from a policy or checkpoint file, rejecting values no valid file
+     * holds before anything is allocated from them.
+     * @param in the stream, positioned at the number of layers.
+     * @return the layer sizes, starting with the input layer.
+     * @throws IOException if the stream ends early or the number of layers or a layer size is out of range.
+     */
+    static int[] readLayerSizes(DataInputStream in) throws IOException {
+        int layers = in.readInt();
+        if (layers < 2 || layers > MAX_LAYERS) {
+            throw new IOException("Invalid number of layers: " + layers);
+        }
+        int[] sizes = new int[layers];
+        for (int i = 0; i < layers; i++) {
+            sizes[i] = in.readInt();
+            if (sizes[i] <= 0 || sizes[i] > MAX_LAYER_SIZE) {
+                throw new IOException("Invalid layer size: " + sizes[i]);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Gets the number of parameters of the given layer sizes for a file being read, after checking that the rest of
+     * the file is long enough to hold that many parameters the given number of times.
+     * @param sizes the layer sizes read from the file.
+     * @param copies the number of parameter sets the file holds.
+     * @param remainingBytes the number of bytes left in the file.
+     * @return the number of parameters of one set.
+     * @throws IOException if the parameters do not fit in an array or the file is too short to hold them.
+     */
+    static int parameterCount(int[] sizes, int copies, long remainingBytes) throws IOException {
+        int count;
+        try {
+            count = parameterCount(sizes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid layer sizes", e);
+        }
+        if (count <= 0 || copies <= 0 || count > remainingBytes / Float.BYTES / copies) {
+            throw new IOException("Expected " + (long) count * copies + " parameters but the file holds "
+                    + remainingBytes / Float.BYTES);
+        }
+        return count;
+    }
+
+    /**
+     * Loads a policy from a file written by {@link #save(Path)}.
+     * @param path the file to read.
+     * @return the loaded policy.
+     * @throws IOException if the file cannot be read or is not a policy file.
+     */
+    public static MlpPolicy load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a policy file: " + path);
+            }
+            int[] sizes = readLayerSizes(in);
+            // The magic number, version and number of layers come before the layer sizes
+            long remaining = Files.size(path) - 3L * Integer.BYTES - (long) sizes.length * Integer.BYTES;
+            float[] params = new float[parameterCount(sizes, 1, remaining)];
+            for (int i = 0; i < params.length; i++)
+                params[i] = in.readFloat();
+            return new MlpPolicy(sizes, params);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid policy file: " + path, e);
+        }
+    }
+
+    /**
+     * Writes this policy to a file.
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sizes.length);
+            for (int size : sizes)
+                out.writeInt(size);
+            for (float p : params)
+                out.writeFloat(p);
+        }
+    }
+
+    /**
+     * Creates a policy with the same layers and its own copy of the parameters and buffers.
+     * @return a new independent policy.
+     */
+    public MlpPolicy copy() {
+        return new MlpPolicy(sizes, params.clone());
+    }
+
+    /**
+     * Chooses an action for a single observation.
+     * @param observation the buffer holding the observation.
+     * @param offset the index of the observation in {@code observation}.
+     * @return the index of the output with the largest value.
+     */
+    public int act(float[] observation, int offset) {
+        float[] out = forward(observation, offset, 1);
+        return argmax(out, 0, sizes[sizes.length - 1]);
+    }
+
+    /**
+     * Chooses an action for each of several consecutive observations.
+     * @param observations the buffer holding the observations back to back.
+     * @param count the number of observations.
+     * @param actions the array to write the chosen actions into.
+     */
+    public void act(float[] observations, int count, int[] actions) {
+        float[] out = forward(observations, 0, count);
+        int outputs = sizes[sizes.length - 1];
+        for (int b = 0; b < count; b++)
+            actions[b] = argmax(out, b * outputs, outputs);
+    }
+
+    /**
+     * Runs the network on consecutive inputs. The returned array is reused by the next call.
+     * @param input the buffer holding the inputs back to back.
+     * @param offset the index of the first input in {@code input}.
+     * @param count the number of inputs.
+     * @return a buffer holding the outputs of each input back to back, starting at index {@code 0}.
+     */
+    public float[] forward(float[] input, int offset, int count) {
+        ensureBatch(count);
+        float[] in = input;
+        int inBase = offset;
+        for (int l = 0; l < sizes.length - 1; l++) {
+            int inSize = sizes[l];
+            int outSize = sizes[l + 1];
+            int weights = weightOffsets[l];
+            int biases = biasOffsets[l];
+            boolean hidden = l < sizes.length - 2;
+            float[] out = back;
+            for (int b = 0; b < count; b++) {
+                int x = inBase + b * inSize;
+                int y = b * outSize;
+                System.arraycopy(params, biases, out, y, outSize);
+                for (int k = 0; k < inSize; k++) {
+                    float v = in[x + k];
+                    if (v == 0f)
+                        continue;
+                    int row = weights + k * outSize;
+                    for (int j = 0; j < outSize; j++)
+                        out[y + j] += v * params[row + j];
+                }
+                if (hidden) {
+                    for (int j = 0; j < outSize; j++)
+                        out[y + j] = Math.max(out[y + j], 0f);
+                }
+            }
+            back = front;
+            front = out;
+            in = out;
+            inBase = 0;
+        }
+        return front;
+    }
+
+    /**
+     * Gets the number of neurons in each layer.
+     * @return a copy of the layer sizes, starting with the input layer.
+     */
+    public int[] getLayerSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * Gets the parameters used by this policy. Changes to the array are seen by the policy.
+     * @return the shared parameter array.
+     */
+    public float[] getParameters() {
+        return params;
+    }
+
+    /**
+     * Makes sure the activation buffers can hold the given number of samples.
+     * @hidden
+     */
+    private void ensureBatch(int count) {
+        if (count > batchCapacity) {
+            batchCapacity = count;
+            front = new float[count * maxWidth];
+            back = new float[count * maxWidth];
+        }
+    }
+
+    /**
+     * Finds the index of the largest value in a range.
+     * @hidden
+     */
+    private static int argmax(float[] values, int offset, int length) {
+        int best = 0;
+        for (int i = 1; i < length; i++) {
+            if (values[offset + i] > values[offset + best])
+                best = i;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,454 @@
+package game.ai;
+
+import game.LoggerSetup;
+import game.core.GameEngine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Logger;
+
+/**
+ * Trains {@link MlpPolicy} controllers with a genetic algorithm. Every generation, each genome plays the same set of
+ * seeded headless games, and its fitness is computed from the score and the number of ticks survived as reported by the
+ * {@link GameEngine}. The best genomes are kept unchanged, and the rest of the next generation is bred from tournament
+ * winners with single point crossover and gaussian mutation.
+ * <p>
+ *     Genomes are plain {@code float[]} parameter arrays. The next generation is written into a second set of arrays
+ *     that is swapped with the current one, so breeding never allocates. Games are played in parallel on a work
+ *     stealing {@link ForkJoinPool}, where each worker thread reuses its own environment and policy.
+ * </p>
+ * Running {@link #main(String[])} trains from scratch or from a checkpoint and reports games per second, which makes the
+ * trainer a sustained CPU bound workload.
+ */
+public class NeuroEvolution {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(NeuroEvolution.class.getName());
+
+    /** Marks the start of a checkpoint file. The bytes spell "SNKE". */
+    public static final int MAGIC = 0x534E4B45;
+
+    /** Version of the checkpoint file format. */
+    public static final int VERSION = 1;
+
+    /** Largest population a checkpoint file may declare. */
+    static final int MAX_POPULATION = 1 << 20;
+
+    /** Fitness awarded for each food eaten. Survival adds one per tick. */
+    public static final double FOOD_FITNESS = 100;
+
+    /** Number of genomes that compete in each tournament. */
+    private static final int TOURNAMENT_SIZE = 3;
+
+    /** Number of genomes evaluated by the smallest task handed to the pool. */
+    private static final int GENOMES_PER_TASK = 2;
+
+    /** Default layer sizes used by {@link #main(String[])}. */
+    private static final int[] DEFAULT_LAYERS = {SnakeEnv.OBSERVATION_SIZE, 32, SnakeEnv.ACTIONS};
+
+    /** Number of neurons in each layer of every genome. */
+    private final int[] layerSizes;
+
+    /** Number of genomes kept unchanged each generation. */
+    private final int eliteCount;
+
+    /** Number of games each genome plays per generation. */
+    private final int gamesPerGenome;
+
+    /** Probability that a single parameter is mutated. */
+    private final double mutationRate;
+
+    /** Standard deviation of a mutation. */
+    private final double mutationStrength;
+
+    /** The pool that plays the games. */
+    private final ForkJoinPool pool;
+
+    /** The genomes of the current generation. */
+    private float[][] population;
+
+    /** The genomes of the next generation, swapped with {@code population} after breeding. */
+    private float[][] offspring;
+
+    /** Fitness of each genome of the current generation. */
+    private final double[] fitness;
+
+    /** Index of each genome sorted from the fittest to the least fit. */
+    private final int[] ranking;
+
+    /** Random generator used for breeding and for choosing the game seeds. */
+    private SplittableRandom rand;
+
+    /**
+     * Seed {@code rand} was reset to at the start of the current generation. Checkpoints save it, so a restored run
+     * continues the same random stream as one that was never interrupted.
+     */
+    private long generationSeed;
+
+    /** Number of generations evaluated so far. */
+    private int generation;
+
+    /** Each worker thread's environment and policy. */
+    private final ThreadLocal<Worker> workers;
+
+    /**
+     * Creates a trainer with a randomly initialised population.
+     * @param layerSizes the layer sizes of every policy. Must start with {@link SnakeEnv#OBSERVATION_SIZE} and end with
+     *                   {@link SnakeEnv#ACTIONS}.
+     * @param populationSize the number of genomes per generation.
+     * @param eliteCount the number of genomes kept unchanged each generation. At least one is always kept.
+     * @param gamesPerGenome the number of games each genome plays per generation.
+     * @param seed the seed of the trainer's random generator.
+     * @param pool the pool used to play games.
+     * @throws IllegalArgumentException if any of the settings are invalid.
+     */
+    public NeuroEvolution(int[] layerSizes, int populationSize, int eliteCount, int gamesPerGenome, long seed,
+                          ForkJoinPool pool) {
+        this(layerSizes, new float[populationSize][MlpPolicy.parameterCount(layerSizes)], eliteCount, gamesPerGenome,
+                seed, 0, pool);
+        float scale = (float) Math.sqrt(2.0 / layerSizes[0]);
+        for (float[] genome : population) {
+            for (int i = 0; i < genome.length; i++)
+                genome[i] = (float) (rand.nextGaussian() * scale);
+        }
+        reseed();
+    }
+
+    /**
+     * Creates a trainer from an existing population.
+     * @hidden
+     */
+    private NeuroEvolution(int[] layerSizes, float[][] population, int eliteCount, int gamesPerGenome,
+                           long generationSeed, int generation, ForkJoinPool pool) {
+        if (layerSizes[0] != SnakeEnv.OBSERVATION_SIZE || layerSizes[layerSizes.length - 1] != SnakeEnv.ACTIONS) {
+            throw new IllegalArgumentException("The layers do not match the observation and action sizes");
+        }
+        if (population.length < 2 || eliteCount < 1 || eliteCount >= population.length || gamesPerGenome <= 0) {
+            throw new IllegalArgumentException("Invalid population settings");
+        }
+        this.layerSizes = layerSizes.clone();
+        this.population = population;
+        this.offspring = new float[population.length][population[0].length];
+        this.fitness = new double[population.length];
+        this.ranking = new int[population.length];
+        this.eliteCount = eliteCount;
+        this.gamesPerGenome = gamesPerGenome;
+        this.mutationRate = 0.02;
+        this.mutationStrength = 0.1;
+        this.generationSeed = generationSeed;
+        this.rand = new SplittableRandom(generationSeed);
+        this.generation = generation;
+        this.pool = pool;
+        this.workers = ThreadLocal.withInitial(() -> new Worker(this.layerSizes));
+    }
+
+    /**
+     * Evaluates the current generation and breeds the next one.
+     * @return the best fitness of the evaluated generation.
+     */
+    public double evolve() {
+        long seed = rand.nextLong();
+        pool.invoke(new EvaluateTask(0, population.length, seed));
+        rank();
+
+        for (int i = 0; i < eliteCount; i++)
+            System.arraycopy(population[ranking[i]], 0, offspring[i], 0, offspring[i].length);
+        for (int i = eliteCount; i < offspring.length; i++) {
+            crossover(population[tournament()], population[tournament()], offspring[i]);
+            mutate(offspring[i]);
+        }
+
+        // The champion is the first elite, so it sits at index 0 after the swap
+        float[][] previous = population;
+        population = offspring;
+        offspring = previous;
+        generation++;
+        reseed();
+        return fitness[ranking[0]];
+    }
+
+    /**
+     * Draws the seed of the next generation and resets the random generator to it, so the generator's state at a
+     * generation boundary is fully described by {@code generationSeed}.
+     * @hidden
+     */
+    private void reseed() {
+        generationSeed = rand.nextLong();
+        rand = new SplittableRandom(generationSeed);
+    }
+
+    /**
+     * Gets the average fitness of the last evaluated generation.
+     * @return the mean fitness.
+     */
+    public double getMeanFitness() {
+        double sum = 0;
+        for (double f : fitness)
+            sum += f;
+        return sum / fitness.length;
+    }
+
+    /**
+     * Gets the number of generations evaluated so far.
+     * @return the generation count.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Creates a policy from the best genome of the last evaluated generation.
+     * @return a new policy with its own copy of the parameters.
+     */
+    public MlpPolicy getBestPolicy() {
+        return new MlpPolicy(layerSizes, population[0].clone());
+    }
+
+    /**
+     * Writes the whole population to a file so training can be resumed with {@link #restore(Path, ForkJoinPool)}. The
+     * file is written next to the target first and then moved into place, so an interrupted write never leaves a broken
+     * checkpoint behind.
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void checkpoint(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(generation);
+            out.writeLong(generationSeed);
+            out.writeInt(eliteCount);
+            out.writeInt(gamesPerGenome);
+            out.writeInt(layerSizes.length);
+            for (int size : layerSizes)
+                out.writeInt(size);
+            out.writeInt(population.length);
+            for (float[] genome : population) {
+                for (float p : genome)
+                    out.writeFloat(p);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.fine("Saved checkpoint of generation " + generation + " to " + path);
+    }
+
+    /**
+     * Resumes training from a file written by {@link #checkpoint(Path)}.
+     * @param path the file to read.
+     * @param pool the pool used to play games.
+     * @return a trainer holding the saved population.
+     * @throws IOException if the file cannot be read or is not a checkpoint.
+     */
+    public static NeuroEvolution restore(Path path, ForkJoinPool pool) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            int generation = in.readInt();
+            if (generation < 0) {
+                throw new IOException("Invalid generation: " + generation);
+            }
+            long seed = in.readLong();
+            int eliteCount = in.readInt();
+            int gamesPerGenome = in.readInt();
+            int[] sizes = MlpPolicy.readLayerSizes(in);
+            int populationSize = in.readInt();
+            if (populationSize < 2 || populationSize > MAX_POPULATION) {
+                throw new IOException("Invalid population size: " + populationSize);
+            }
+            // Six ints and the seed come before the layer sizes, and the population size after them
+            long remaining = Files.size(path) - 6L * Integer.BYTES - Long.BYTES
+                    - (long) (sizes.length + 1) * Integer.BYTES;
+            float[][] population = new float[populationSize][MlpPolicy.parameterCount(sizes, populationSize,
+                    remaining)];
+            for (float[] genome : population) {
+                for (int i = 0; i < genome.length; i++)
+                    genome[i] = in.readFloat();
+            }
+            return new NeuroEvolution(sizes, population, eliteCount, gamesPerGenome, seed, generation, pool);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid checkpoint file: " + path, e);
+        }
+    }
+
+    /**
+     * Sorts the genomes from the fittest to the least fit using an insertion sort on {@code ranking}.
+     * @hidden
+     */
+    private void rank() {
+        for (int i = 0; i < ranking.length; i++) {
+            int j = i;
+            while (j > 0 && fitness[ranking[j - 1]] < fitness[i]) {
+                ranking[j] = ranking[j - 1];
+                j--;
+            }
+            ranking[j] = i;
+        }
+    }
+
+    /**
+     * Picks the fittest of {@value #TOURNAMENT_SIZE} random genomes.
+     * @return the index of the winner.
+     */
+    private int tournament() {
+        int best = rand.nextInt(population.length);
+        for (int i = 1; i < TOURNAMENT_SIZE; i++) {
+            int challenger = rand.nextInt(population.length);
+            if (fitness[challenger] > fitness[best])
+                best = challenger;
+        }
+        return best;
+    }
+
+    /**
+     * Writes a child made of the start of one parent and the end of the other.
+     * @hidden
+     */
+    private void crossover(float[] a, float[] b, float[] child) {
+        int cut = rand.nextInt(child.length + 1);
+        System.arraycopy(a, 0, child, 0, cut);
+        System.arraycopy(b, cut, child, cut, child.length - cut);
+    }
+
+    /**
+     * Adds gaussian noise to a random subset of parameters. The gap between mutated parameters is drawn from a
+     * geometric distribution so the cost depends on the number of mutations rather than the number of parameters.
+     * @hidden
+     */
+    private void mutate(float[] genome) {
+        double logKeep = Math.log(1 - mutationRate);
+        int i = -1;
+        while (true) {
+            i += 1 + (int) (Math.log(1 - rand.nextDouble()) / logKeep);
+            if (i < 0 || i >= genome.length)
+                return;
+            genome[i] += (float) (rand.nextGaussian() * mutationStrength);
+        }
+    }
+
+    /**
+     * Trains a population and logs the progress of every generation. Arguments, all optional, are the number of
+     * generations, the population size, the number of games per genome and the output directory. If a checkpoint exists
+     * in the output directory training resumes from it. The checkpoint and best policy are saved every generation.
+     * @param args command line arguments.
+     * @throws IOException if a checkpoint cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        int generations = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int populationSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        Path dir = Path.of(args.length > 3 ? args[3] : "src/resources/data");
+        Path checkpoint = dir.resolve("evolution.bin");
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        NeuroEvolution trainer = Files.exists(checkpoint)
+                ? restore(checkpoint, pool)
+                : new NeuroEvolution(DEFAULT_LAYERS, populationSize, Math.max(1, populationSize / 20), games,
+                        System.nanoTime(), pool);
+        LOGGER.info("Training on " + pool.getParallelism() + " threads from generation " + trainer.getGeneration());
+
+        for (int g = 0; g < generations; g++) {
+            long start = System.nanoTime();
+            double best = trainer.evolve();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LOGGER.info(String.format("Generation %d: best %.0f, mean %.1f, %.0f games/s", trainer.getGeneration(),
+                    best, trainer.getMeanFitness(), trainer.population.length * trainer.gamesPerGenome / seconds));
+            trainer.checkpoint(checkpoint);
+            trainer.getBestPolicy().save(dir.resolve("policy.bin"));
+        }
+    }
+
+    /**
+     * Evaluates a range of genomes, splitting it in half until it is small enough to play directly.
+     */
+    @SuppressWarnings("serial") // Tasks only live inside the pool and are never serialized
+    private class EvaluateTask extends RecursiveAction {
+        /** First genome to evaluate. */
+        private final int from;
+
+        /** One past the last genome to evaluate. */
+        private final int to;
+
+        /** Seed of the first game every genome plays. */
+        private final long seed;
+
+        /**
+         * Creates a task for the genomes in {@code [from, to)}.
+         * @hidden
+         */
+        EvaluateTask(int from, int to, long seed) {
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        /**
+         * Plays the games of every genome in the range.
+         */
+        @Override
+        protected void compute() {
+            if (to - from > GENOMES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EvaluateTask(from, mid, seed), new EvaluateTask(mid, to, seed));
+                return;
+            }
+            Worker worker = workers.get();
+            for (int i = from; i < to; i++)
+                fitness[i] = worker.evaluate(population[i], gamesPerGenome, seed);
+        }
+    }
+
+    /**
+     * The environment and policy reused by a single worker thread.
+     */
+    private static class Worker {
+        /** The environment games are played in. */
+        private final SnakeEnv env = new SnakeEnv();
+
+        /** The policy that genomes are copied into. */
+        private final MlpPolicy policy;
+
+        /** Reused buffer holding the current observation. */
+        private final float[] observation = new float[SnakeEnv.OBSERVATION_SIZE];
+
+        /**
+         * Creates a worker for policies with the given layers.
+         * @hidden
+         */
+        Worker(int[] layerSizes) {
+            policy = new MlpPolicy(layerSizes, new float[MlpPolicy.parameterCount(layerSizes)]);
+        }
+
+        /**
+         * Plays the given number of games with a genome.
+         * @param genome the parameters to play with.
+         * @param games the number of games to play.
+         * @param seed the seed of the first game.
+         * @return the total fitness over every game.
+         */
+        double evaluate(float[] genome, int games, long seed) {
+            System.arraycopy(genome, 0, policy.getParameters(), 0, genome.length);
+            double total = 0;
+            for (int g = 0; g < games; g++) {
+                env.reset(seed + g, observation, 0);
+                while (!env.isDone())
+                    env.step(policy.act(observation, 0), observation, 0);
+                GameEngine gameEngine = env.getGameEngine();
+                total += gameEngine.getScore() * FOOD_FITNESS + gameEngine.getTicks();
+            }
+            return total;
+        }
+    }
+}
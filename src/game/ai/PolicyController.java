@@ -0,0 +1,53 @@
+package game.ai;
+
+import game.core.GameEngine;
+import game.core.TickListener;
+import game.utils.Direction;
+
+/**
+ * Lets an {@link MlpPolicy} steer the snake. Before every tick the board is observed and the chosen direction is passed
+ * to {@link game.core.Snake#changeDirection(Direction)}, the same way a key press would be, so the policy can drive
+ * both the Swing game and headless games.
+ * @see GameEngine#addTickListener(TickListener)
+ */
+public class PolicyController implements TickListener {
+    /** Shared direction values to avoid copying the array on every tick. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The policy that chooses each move. */
+    private final MlpPolicy policy;
+
+    /** Reused buffer holding the current observation. */
+    private final float[] observation = new float[SnakeEnv.OBSERVATION_SIZE];
+
+    /**
+     * Creates a controller driven by the given policy.
+     * @param policy the policy to use. Its input layer must match {@link SnakeEnv#OBSERVATION_SIZE} and its output
+     *               layer must match {@link SnakeEnv#ACTIONS}.
+     * @throws IllegalArgumentException if the policy does not fit the game.
+     */
+    public PolicyController(MlpPolicy policy) {
+        int[] sizes = policy.getLayerSizes();
+        if (sizes[0] != SnakeEnv.OBSERVATION_SIZE || sizes[sizes.length - 1] != SnakeEnv.ACTIONS) {
+            throw new IllegalArgumentException("The policy does not match the observation and action sizes");
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * Chooses the next direction and queues it on the snake.
+     * @param gameEngine the engine that is about to tick.
+     */
+    @Override
+    public void beforeTick(GameEngine gameEngine) {
+        SnakeEnv.observe(gameEngine, observation, 0);
+        gameEngine.getSnake().changeDirection(DIRECTIONS[policy.act(observation, 0)]);
+    }
+
+    /**
+     * Not used.
+     * @param gameEngine the engine that has just ticked.
+     */
+    @Override
+    public void afterTick(GameEngine gameEngine) {}
+}
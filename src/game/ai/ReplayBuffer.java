@@ -0,0 +1,331 @@
+package game.ai;
+
+import game.core.Food;
+import game.core.GameEngine;
+import game.utils.Constants;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+/**
+ * A fixed capacity store of (state, action, reward, done) transitions kept outside of the Java heap, either in direct
+ * memory or in a memory-mapped file for datasets larger than RAM. Once full, new transitions overwrite the oldest ones.
+ * <p>
+ *     Every transition is a fixed width record of {@value #RECORD_SIZE} bytes: a sequence number, the board packed at
+ *     2 bits per cell and the action, done flag and reward. Any number of threads may {@link #append} at the same time
+ *     without locking; each append takes the next sequence number with a single atomic increment, locks the record of
+ *     its slot by setting the record's sequence word to an odd value with a compare-and-set, and publishes it by
+ *     writing its even sequence word last. Two appends a full ring apart can reach the same slot at once, so one that
+ *     finds the record locked or already holding a newer transition drops its transition rather than write over it.
+ *     {@link #sample} copies random records straight into caller supplied arrays and skips records that are being
+ *     written while it reads them.
+ * </p>
+ * Large stores are split into several buffers because a single {@code ByteBuffer} cannot exceed 2 GB.
+ */
+public class ReplayBuffer implements AutoCloseable {
+    /** Number of {@code long} words used to store a packed board. */
+    public static final int BOARD_WORDS = (2 * Constants.NUM_COLS * Constants.NUM_ROWS + Long.SIZE - 1) / Long.SIZE;
+
+    /** Cell code of an empty cell. */
+    public static final int EMPTY = 0;
+
+    /** Cell code of a body segment. */
+    public static final int BODY = 1;
+
+    /** Cell code of the head. */
+    public static final int HEAD = 2;
+
+    /** Cell code of the food. */
+    public static final int FOOD = 3;
+
+    /** Size of a single record in bytes. */
+    public static final int RECORD_SIZE = Long.BYTES * (2 + BOARD_WORDS);
+
+    /** Offset of the packed board within a record. */
+    private static final int BOARD_OFFSET = Long.BYTES;
+
+    /** Offset of the action, done flag and reward within a record. */
+    private static final int TAIL_OFFSET = BOARD_OFFSET + BOARD_WORDS * Long.BYTES;
+
+    /** Largest number of records stored in a single buffer. */
+    private static final int RECORDS_PER_CHUNK = (1 << 30) / RECORD_SIZE;
+
+    /** Number of attempts made to find a stable record before a sample gives up. */
+    private static final int MAX_SAMPLE_ATTEMPTS = 64;
+
+    /**
+     * Gives atomic access to the sequence word at the start of each record: {@code 0} for an empty record, twice the
+     * transition's sequence number plus two once it is published, and that value plus one while it is being written.
+     */
+    private static final VarHandle SEQUENCE =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /** The buffers holding the records. */
+    private final ByteBuffer[] chunks;
+
+    /** The maximum number of records stored. */
+    private final long capacity;
+
+    /** The total number of records ever claimed by appenders. */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /** The file channel backing a memory-mapped store, or {@code null} for direct memory. */
+    private final FileChannel channel;
+
+    /**
+     * Creates a store from already allocated buffers.
+     * @hidden
+     */
+    private ReplayBuffer(ByteBuffer[] chunks, long capacity, FileChannel channel) {
+        this.chunks = chunks;
+        this.capacity = capacity;
+        this.channel = channel;
+    }
+
+    /**
+     * Allocates a store in direct memory.
+     * @param capacity the maximum number of transitions to keep.
+     * @return a new empty store.
+     * @throws IllegalArgumentException if {@code capacity} is not positive.
+     */
+    public static ReplayBuffer allocate(long capacity) {
+        checkCapacity(capacity);
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(capacity)];
+        for (int i = 0; i < chunks.length; i++) {
+            int bytes = chunkRecords(capacity, i) * RECORD_SIZE;
+            chunks[i] = ByteBuffer.allocateDirect(bytes + Long.BYTES).alignedSlice(Long.BYTES)
+                    .order(ByteOrder.nativeOrder());
+        }
+        return new ReplayBuffer(chunks, capacity, null);
+    }
+
+    /**
+     * Maps a store onto a file, creating or growing the file as needed. The operating system pages records in and out,
+     * so the store may be much larger than the available memory. Existing records in the file are treated as empty.
+     * @param file the file to map.
+     * @param capacity the maximum number of transitions to keep.
+     * @return a new empty store.
+     * @throws IOException if the file cannot be opened or mapped.
+     * @throws IllegalArgumentException if {@code capacity} is not positive.
+     */
+    public static ReplayBuffer map(Path file, long capacity) throws IOException {
+        checkCapacity(capacity);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            // Mapping extends the file with zeros, which read as empty records without touching a page, so only a
+            // reused file needs emptying. Clearing it record by record would pull the whole file into memory.
+            if (channel.size() > 0)
+                channel.truncate(0);
+            ByteBuffer[] chunks = new ByteBuffer[chunkCount(capacity)];
+            long position = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                int bytes = chunkRecords(capacity, i) * RECORD_SIZE;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+                chunks[i] = mapped.order(ByteOrder.nativeOrder());
+                position += bytes;
+            }
+            return new ReplayBuffer(chunks, capacity, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Packs the current board of a game into {@link #BOARD_WORDS} words at 2 bits per cell.
+     * @param gameEngine the engine to encode.
+     * @param dst the array to write the packed board into.
+     * @param offset the index in {@code dst} to start writing at.
+     */
+    public static void encode(GameEngine gameEngine, long[] dst, int offset) {
+        for (int w = 0; w < BOARD_WORDS; w++)
+            dst[offset + w] = 0;
+        List<Point> body = gameEngine.getSnake().getSnake();
+        for (int i = body.size() - 1; i >= 0; i--)
+            setCell(dst, offset, body.get(i), i == 0 ? HEAD : BODY);
+        Food food = gameEngine.getFood();
+        for (int i = 0; i < food.getCount(); i++)
+            setCell(dst, offset, food.getCell(i), FOOD);
+    }
+
+    /**
+     * Unpacks a board into the observation planes used by {@link SnakeEnv}.
+     * @param src the array holding the packed board.
+     * @param srcOffset the index of the packed board in {@code src}.
+     * @param observation the buffer to write the observation into.
+     * @param offset the index in {@code observation} to start writing at.
+     */
+    public static void decode(long[] src, int srcOffset, float[] observation, int offset) {
+        for (int cell = 0; cell < SnakeEnv.PLANE_SIZE; cell++) {
+            int code = (int) (src[srcOffset + (cell >>> 5)] >>> ((cell & 31) << 1)) & 3;
+            observation[offset + cell] = (code == BODY || code == HEAD) ? 1f : 0f;
+            observation[offset + SnakeEnv.PLANE_SIZE + cell] = code == HEAD ? 1f : 0f;
+            observation[offset + 2 * SnakeEnv.PLANE_SIZE + cell] = code == FOOD ? 1f : 0f;
+        }
+    }
+
+    /**
+     * Appends a transition. Safe to call from many threads at once.
+     * @param board the packed board the action was taken from.
+     * @param boardOffset the index of the packed board in {@code board}.
+     * @param action the action that was taken.
+     * @param reward the reward that was received.
+     * @param done {@code true} if the transition ended the episode.
+     * @return the sequence number of the transition, or {@code -1} if it was dropped because another append was writing
+     *         the same slot or had already stored a newer transition there.
+     */
+    public long append(long[] board, int boardOffset, int action, float reward, boolean done) {
+        long index = cursor.getAndIncrement();
+        long slot = index % capacity;
+        ByteBuffer chunk = chunks[(int) (slot / RECORDS_PER_CHUNK)];
+        int base = (int) (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+
+        // Lock the record before touching its contents, unless another append holds it or got there with a newer one
+        long published = (index + 1) << 1;
+        long current;
+        do {
+            current = (long) SEQUENCE.getVolatile(chunk, base);
+            if ((current & 1) != 0 || current >= published)
+                return -1;
+        } while (!SEQUENCE.compareAndSet(chunk, base, current, published | 1));
+        for (int w = 0; w < BOARD_WORDS; w++)
+            chunk.putLong(base + BOARD_OFFSET + w * Long.BYTES, board[boardOffset + w]);
+        chunk.put(base + TAIL_OFFSET, (byte) action);
+        chunk.put(base + TAIL_OFFSET + 1, (byte) (done ? 1 : 0));
+        chunk.putFloat(base + TAIL_OFFSET + 4, reward);
+        SEQUENCE.setRelease(chunk, base, published);
+        return index;
+    }
+
+    /**
+     * Copies randomly chosen transitions into the given arrays. Transition {@code i} of the batch uses
+     * {@code boards[i * BOARD_WORDS]} to {@code boards[(i + 1) * BOARD_WORDS - 1]}.
+     * @param rng the generator used to choose transitions.
+     * @param batch the number of transitions to copy.
+     * @param boards the array to copy packed boards into.
+     * @param actions the array to copy actions into.
+     * @param rewards the array to copy rewards into.
+     * @param dones the array to copy done flags into.
+     * @return the number of transitions copied, which is less than {@code batch} only if the store is empty or is
+     *         being overwritten faster than it can be read.
+     */
+    public int sample(RandomGenerator rng, int batch, long[] boards, int[] actions, float[] rewards, boolean[] dones) {
+        long available = size();
+        if (available == 0)
+            return 0;
+        int copied = 0;
+        for (int attempt = 0; copied < batch && attempt < batch * MAX_SAMPLE_ATTEMPTS; attempt++) {
+            long slot = rng.nextLong(available);
+            ByteBuffer chunk = chunks[(int) (slot / RECORDS_PER_CHUNK)];
+            int base = (int) (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+
+            long before = (long) SEQUENCE.getAcquire(chunk, base);
+            // Skip empty records and records that are being written
+            if (before == 0 || (before & 1) != 0)
+                continue;
+            int boardBase = copied * BOARD_WORDS;
+            for (int w = 0; w < BOARD_WORDS; w++)
+                boards[boardBase + w] = chunk.getLong(base + BOARD_OFFSET + w * Long.BYTES);
+            int action = chunk.get(base + TAIL_OFFSET);
+            boolean done = chunk.get(base + TAIL_OFFSET + 1) != 0;
+            float reward = chunk.getFloat(base + TAIL_OFFSET + 4);
+            VarHandle.acquireFence();
+            if ((long) SEQUENCE.getVolatile(chunk, base) != before)
+                continue;
+
+            actions[copied] = action;
+            rewards[copied] = reward;
+            dones[copied] = done;
+            copied++;
+        }
+        return copied;
+    }
+
+    /**
+     * Gets the number of transitions currently stored.
+     * @return the number of transitions, at most {@link #capacity()}.
+     */
+    public long size() {
+        return Math.min(cursor.get(), capacity);
+    }
+
+    /**
+     * Gets the number of transitions ever appended, including ones that have been overwritten.
+     * @return the total number of appends.
+     */
+    public long appended() {
+        return cursor.get();
+    }
+
+    /**
+     * Gets the maximum number of transitions stored.
+     * @return the capacity of the store.
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Flushes a memory-mapped store to disk and closes its file. Direct memory is released once the store is no longer
+     * referenced.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            for (ByteBuffer chunk : chunks)
+                ((MappedByteBuffer) chunk).force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the code of a single cell into a packed board.
+     * @hidden
+     */
+    private static void setCell(long[] dst, int offset, Point p, int code) {
+        setCell(dst, offset, p.y * Constants.NUM_COLS + p.x, code);
+    }
+
+    /**
+     * Writes the 2 bit code of a cell given by its index.
+     * @hidden
+     */
+    private static void setCell(long[] dst, int offset, int cell, int code) {
+        int shift = (cell & 31) << 1;
+        int word = offset + (cell >>> 5);
+        dst[word] = (dst[word] & ~(3L << shift)) | ((long) code << shift);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the capacity is not positive.
+     * @hidden
+     */
+    private static void checkCapacity(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+    }
+
+    /** @hidden */
+    private static int chunkCount(long capacity) {
+        return (int) ((capacity + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK);
+    }
+
+    /** @hidden */
+    private static int chunkRecords(long capacity, int chunk) {
+        return (int) Math.min(RECORDS_PER_CHUNK, capacity - (long) chunk * RECORDS_PER_CHUNK);
+    }
+}
@@ -0,0 +1,59 @@
+package game.ai;
+
+import game.core.GameEngine;
+import game.core.TickListener;
+
+/**
+ * Records every tick of a {@link GameEngine} into a {@link ReplayBuffer}. The board is packed before the snake moves,
+ * and the action, reward and done flag are filled in once the tick has finished, using the same rewards as
+ * {@link SnakeEnv}.
+ * <p>
+ *     A recorder keeps a small scratch buffer for the board it is packing, so each engine needs its own recorder while
+ *     many recorders on different threads can share one {@code ReplayBuffer}.
+ * </p>
+ * @see GameEngine#addTickListener(TickListener)
+ */
+public class ReplayRecorder implements TickListener {
+    /** The store transitions are appended to. */
+    private final ReplayBuffer buffer;
+
+    /** The packed board from before the current tick. */
+    private final long[] board = new long[ReplayBuffer.BOARD_WORDS];
+
+    /** The score before the current tick. */
+    private int score;
+
+    /**
+     * Creates a recorder that appends to the given store.
+     * @param buffer the store to append to.
+     * @throws IllegalArgumentException if {@code buffer} is null.
+     */
+    public ReplayRecorder(ReplayBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException();
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * Packs the board the snake is about to move from.
+     * @param gameEngine the engine that is about to tick.
+     */
+    @Override
+    public void beforeTick(GameEngine gameEngine) {
+        ReplayBuffer.encode(gameEngine, board, 0);
+        score = gameEngine.getScore();
+    }
+
+    /**
+     * Appends the finished transition.
+     * @param gameEngine the engine that has just ticked.
+     */
+    @Override
+    public void afterTick(GameEngine gameEngine) {
+        boolean done = gameEngine.hasEnded();
+        float reward = done ? SnakeEnv.DEATH_REWARD
+                : gameEngine.getScore() > score ? SnakeEnv.FOOD_REWARD : SnakeEnv.STEP_REWARD;
+        buffer.append(board, 0, gameEngine.getSnake().getDirection().ordinal(), reward, done);
+    }
+}
@@ -0,0 +1,215 @@
+package game.ai;
+
+import game.core.Food;
+import game.core.GameEngine;
+import game.core.Snake;
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reinforcement learning environment built on a headless {@link GameEngine}. An agent calls {@link #reset(long)} to
+ * start an episode and then {@link #step(int)} once per tick until {@link #isDone()} returns {@code true}.
+ * <p>
+ *     Actions are the ordinals of {@link Direction}. Observations are written into buffers supplied by the caller as
+ *     {@value #CHANNELS} planes of {@code NUM_ROWS * NUM_COLS} cells in row-major order: the snake's body, the snake's
+ *     head and the food. Stepping and observing do not allocate, so long training runs are limited by the simulation
+ *     rather than by the garbage collector.
+ * </p>
+ * An episode ends when the snake dies or when it goes {@code maxIdleTicks} ticks without eating, which stops agents
+ * that circle forever from stalling training.
+ */
+public class SnakeEnv {
+    /** Number of actions an agent can choose from. */
+    public static final int ACTIONS = Direction.values().length;
+
+    /** Number of planes in an observation. */
+    public static final int CHANNELS = 3;
+
+    /** Number of cells in a single plane of an observation. */
+    public static final int PLANE_SIZE = Constants.NUM_COLS * Constants.NUM_ROWS;
+
+    /** Number of values in a single observation. */
+    public static final int OBSERVATION_SIZE = CHANNELS * PLANE_SIZE;
+
+    /** Reward given for eating food. */
+    public static final float FOOD_REWARD = 1f;
+
+    /** Reward given when the snake dies. */
+    public static final float DEATH_REWARD = -1f;
+
+    /** Reward given for every other tick. */
+    public static final float STEP_REWARD = 0f;
+
+    /** Shared direction values to avoid copying the array on every step. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The headless engine that runs the game. */
+    private final GameEngine gameEngine;
+
+    /** Number of ticks without eating after which an episode is cut short. */
+    private final int maxIdleTicks;
+
+    /** Number of ticks since the snake last ate. */
+    private int idleTicks;
+
+    /** {@code true} if the current episode has finished. */
+    private boolean done;
+
+    /**
+     * Creates an environment that cuts an episode short after the snake has gone twice the number of cells on the
+     * board without eating.
+     */
+    public SnakeEnv() {
+        this(2 * PLANE_SIZE);
+    }
+
+    /**
+     * Creates an environment with the given idle limit.
+     * @param maxIdleTicks number of ticks without eating after which an episode ends.
+     * @throws IllegalArgumentException if {@code maxIdleTicks} is not positive.
+     */
+    public SnakeEnv(int maxIdleTicks) {
+        if (maxIdleTicks <= 0) {
+            throw new IllegalArgumentException("maxIdleTicks must be positive");
+        }
+        this.maxIdleTicks = maxIdleTicks;
+        this.gameEngine = new GameEngine(0L);
+        this.done = true;
+    }
+
+    /**
+     * Starts a new episode. Episodes started with the same seed and given the same actions play out identically.
+     * @param seed the seed used to spawn food.
+     */
+    public void reset(long seed) {
+        gameEngine.startGame(seed);
+        idleTicks = 0;
+        done = false;
+    }
+
+    /**
+     * Starts a new episode and writes its first observation.
+     * @param seed the seed used to spawn food.
+     * @param observation the buffer to write the observation into.
+     * @param offset the index in {@code observation} to start writing at.
+     */
+    public void reset(long seed, float[] observation, int offset) {
+        reset(seed);
+        observe(observation, offset);
+    }
+
+    /**
+     * Advances the game by one tick.
+     * @param action the ordinal of the {@link Direction} to turn towards. Turning back on itself is ignored.
+     * @return the reward for this tick.
+     * @throws IllegalStateException if the episode is already done.
+     * @throws IllegalArgumentException if the action is not a valid direction.
+     */
+    public float step(int action) {
+        if (done) {
+            throw new IllegalStateException("reset must be called before stepping a finished episode");
+        }
+        if (action < 0 || action >= ACTIONS) {
+            throw new IllegalArgumentException("Invalid action: " + action);
+        }
+        int score = gameEngine.getScore();
+        gameEngine.getSnake().changeDirection(DIRECTIONS[action]);
+        gameEngine.updateGame();
+
+        if (gameEngine.hasEnded()) {
+            done = true;
+            return DEATH_REWARD;
+        }
+        if (gameEngine.getScore() > score) {
+            idleTicks = 0;
+            return FOOD_REWARD;
+        }
+        if (++idleTicks >= maxIdleTicks)
+            done = true;
+        return STEP_REWARD;
+    }
+
+    /**
+     * Advances the game by one tick and writes the resulting observation.
+     * @param action the ordinal of the {@link Direction} to turn towards.
+     * @param observation the buffer to write the observation into.
+     * @param offset the index in {@code observation} to start writing at.
+     * @return the reward for this tick.
+     */
+    public float step(int action, float[] observation, int offset) {
+        float reward = step(action);
+        observe(observation, offset);
+        return reward;
+    }
+
+    /**
+     * Returns {@code true} if the current episode has finished.
+     * @return true if the snake died or went too long without eating, false otherwise.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Writes the current observation as {@code 0f}/{@code 1f} values.
+     * @param dst the buffer to write into. Must have room for {@link #OBSERVATION_SIZE} values after {@code offset}.
+     * @param offset the index in {@code dst} to start writing at.
+     */
+    public void observe(float[] dst, int offset) {
+        observe(gameEngine, dst, offset);
+    }
+
+    /**
+     * Writes the observation of any engine as {@code 0f}/{@code 1f} values, using the same layout as an environment.
+     * This lets a trained policy drive a game that is not running inside an environment.
+     * @param gameEngine the engine to observe.
+     * @param dst the buffer to write into. Must have room for {@link #OBSERVATION_SIZE} values after {@code offset}.
+     * @param offset the index in {@code dst} to start writing at.
+     */
+    public static void observe(GameEngine gameEngine, float[] dst, int offset) {
+        Arrays.fill(dst, offset, offset + OBSERVATION_SIZE, 0f);
+        List<Point> body = gameEngine.getSnake().getSnake();
+        for (int i = 0; i < body.size(); i++)
+            dst[offset + cell(body.get(i))] = 1f;
+        dst[offset + PLANE_SIZE + cell(body.get(0))] = 1f;
+        Food food = gameEngine.getFood();
+        for (int i = 0; i < food.getCount(); i++)
+            dst[offset + 2 * PLANE_SIZE + food.getCell(i)] = 1f;
+    }
+
+    /**
+     * Writes the current observation as {@code 0}/{@code 1} bytes.
+     * @param dst the buffer to write into. Must have room for {@link #OBSERVATION_SIZE} values after {@code offset}.
+     * @param offset the index in {@code dst} to start writing at.
+     */
+    public void observe(byte[] dst, int offset) {
+        Arrays.fill(dst, offset, offset + OBSERVATION_SIZE, (byte) 0);
+        List<Point> body = gameEngine.getSnake().getSnake();
+        for (int i = 0; i < body.size(); i++)
+            dst[offset + cell(body.get(i))] = 1;
+        dst[offset + PLANE_SIZE + cell(body.get(0))] = 1;
+        Food food = gameEngine.getFood();
+        for (int i = 0; i < food.getCount(); i++)
+            dst[offset + 2 * PLANE_SIZE + food.getCell(i)] = 1;
+    }
+
+    /**
+     * Gets the engine that runs this environment. Useful for reading the score or the {@link Snake} directly.
+     * @return the headless {@code GameEngine}.
+     */
+    public GameEngine getGameEngine() {
+        return gameEngine;
+    }
+
+    /**
+     * Converts a point on the grid into an index within a plane.
+     * @hidden
+     */
+    private static int cell(Point p) {
+        return p.y * Constants.NUM_COLS + p.x;
+    }
+}
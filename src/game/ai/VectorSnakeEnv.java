@@ -0,0 +1,92 @@
+package game.ai;
+
+/**
+ * Steps several {@link SnakeEnv}s together so an agent can act on a whole batch of games with one call. Observations,
+ * rewards and done flags are written into flat arrays supplied by the caller, where environment {@code i} uses the
+ * observation slice starting at {@code i * SnakeEnv.OBSERVATION_SIZE}.
+ * <p>
+ *     When an episode finishes, its environment is reset immediately with the next seed in the sequence. The done flag
+ *     and final reward of the finished episode are reported, while the observation written is the first one of the
+ *     new episode. No objects are allocated while stepping.
+ * </p>
+ */
+public class VectorSnakeEnv {
+    /** Increment between the seeds of consecutive episodes. */
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+
+    /** The environments stepped by this batch. */
+    private final SnakeEnv[] envs;
+
+    /** The seed used for the next episode that is started. */
+    private long nextSeed;
+
+    /**
+     * Creates a batch of environments with the default idle limit.
+     * @param count the number of environments.
+     * @throws IllegalArgumentException if {@code count} is not positive.
+     */
+    public VectorSnakeEnv(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        envs = new SnakeEnv[count];
+        for (int i = 0; i < count; i++)
+            envs[i] = new SnakeEnv();
+    }
+
+    /**
+     * Resets every environment, deriving each episode's seed from the given one, and writes the first observations.
+     * @param seed the seed of the first environment.
+     * @param observations the buffer to write all observations into.
+     */
+    public void reset(long seed, float[] observations) {
+        nextSeed = seed;
+        for (int i = 0; i < envs.length; i++)
+            resetEnv(i, observations);
+    }
+
+    /**
+     * Advances every environment by one tick, automatically resetting the ones whose episode finished.
+     * @param actions the action for each environment.
+     * @param observations the buffer to write all observations into.
+     * @param rewards the buffer to write each reward into.
+     * @param dones the buffer to write each done flag into.
+     */
+    public void step(int[] actions, float[] observations, float[] rewards, boolean[] dones) {
+        for (int i = 0; i < envs.length; i++) {
+            SnakeEnv env = envs[i];
+            rewards[i] = env.step(actions[i]);
+            dones[i] = env.isDone();
+            if (dones[i])
+                resetEnv(i, observations);
+            else
+                env.observe(observations, i * SnakeEnv.OBSERVATION_SIZE);
+        }
+    }
+
+    /**
+     * Gets the number of environments in this batch.
+     * @return the number of environments.
+     */
+    public int size() {
+        return envs.length;
+    }
+
+    /**
+     * Gets a single environment of this batch.
+     * @param index the index of the environment.
+     * @return the environment at {@code index}.
+     */
+    public SnakeEnv getEnv(int index) {
+        return envs[index];
+    }
+
+    /**
+     * Starts a new episode for one environment and writes its first observation.
+     * @hidden
+     */
+    private void resetEnv(int index, float[] observations) {
+        envs[index].reset(nextSeed, observations, index * SnakeEnv.OBSERVATION_SIZE);
+        nextSeed += SEED_STEP;
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Contains headless interfaces for training and running automated players. Environments in this package drive a
+ * {@link game.core.GameEngine} without a timer or any gui, so games can be simulated as fast as the hardware allows.
+ * <p>
+ *     Buffers are supplied by the caller and reused between ticks so that long running simulations do not create
+ *     garbage.
+ * </p>
+ * @see game.core.GameEngine
+ */
+package game.ai;
@@ -0,0 +1,512 @@
+package game.core;
+
+import game.LoggerSetup;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * A board shared by several snakes, one per player, competing for the same food. Every tick all snakes move at once and
+ * then collisions are resolved together: a snake dies if its head leaves the board or lands on any body, including
+ * another head, so two snakes meeting head on both die. Dead snakes are removed from the board and their players
+ * respawn at a random free spot after {@link #RESPAWN_TICKS} ticks.
+ * <p>
+ *     The arena keeps one owner grid for the whole board holding the player whose snake covers each cell, and a
+ *     {@link FoodField} holding the food. A tick only touches the cells that change: every snake frees the cell its tail left and
+ *     claims the cell its head entered, so wall, body, head to head and food checks are a single lookup per snake. The
+ *     cost of a tick grows linearly with the number of snakes, plus the length of any snake that dies.
+ * </p><p>
+ *     Changes made by a tick are reported to an {@link ArenaListener}, which lets a server send clients only what
+ *     changed instead of the whole board.
+ * </p>
+ * An arena is not thread safe; all calls must come from the thread that ticks it.
+ */
+public class Arena {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(Arena.class.getName());
+
+    /** Number of ticks a player waits after dying before their snake respawns. */
+    public static final int RESPAWN_TICKS = 10;
+
+    /** Number of segments a snake spawns with. */
+    public static final int SPAWN_LENGTH = 3;
+
+    /** Number of random positions tried when spawning a snake or food before giving up for this tick. */
+    private static final int SPAWN_ATTEMPTS = 64;
+
+    /** Number of ring buffer slots each snake starts with. */
+    private static final int SNAKE_CAPACITY = 16;
+
+    /** Shared direction values to avoid copying the array on every spawn. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Player slot is not in use. */
+    private static final byte EMPTY = 0;
+
+    /** Player is waiting to spawn. */
+    private static final byte WAITING = 1;
+
+    /** Player's snake is on the board. */
+    private static final byte ALIVE = 2;
+
+    /** Player has left and their snake is removed on the next tick. */
+    private static final byte LEAVING = 3;
+
+    /** Number of columns on the board. */
+    private final int cols;
+
+    /** Number of rows on the board. */
+    private final int rows;
+
+    /** Player whose snake covers each cell, or {@code -1} for empty cells. */
+    private final int[] owner;
+
+    /** Food on the board. */
+    private final FoodField food;
+
+    /** Number of food items kept on the board. */
+    private final int maxFood;
+
+    /** State of each player slot. */
+    private final byte[] state;
+
+    /** Snake of each player that is alive. */
+    private final Snake[] snakes;
+
+    /** Ticks left before each waiting player spawns. */
+    private final int[] respawnIn;
+
+    /** Score of each player's current snake. */
+    private final int[] scores;
+
+    /** Cell of each snake's tail before the current move. */
+    private final int[] oldTail;
+
+    /** Cell of each snake's head after the current move, or {@code -1} if it left the board. */
+    private final int[] newHead;
+
+    /** Snakes that die in the current tick. */
+    private final boolean[] dying;
+
+    /** Snakes that eat in the current tick. */
+    private final boolean[] eating;
+
+    /** Places snakes and food. */
+    private final Random rand;
+
+    /** Number of players that have joined and not left. */
+    private int players;
+
+    /** Number of ticks played. */
+    private int ticks;
+
+    /**
+     * Creates an empty arena with a single food item.
+     * @param cols number of columns on the board.
+     * @param rows number of rows on the board.
+     * @param maxPlayers the largest number of players that can join.
+     * @param seed the seed used to place snakes and food.
+     * @throws IllegalArgumentException if any dimension or the player limit is not positive.
+     */
+    public Arena(int cols, int rows, int maxPlayers, long seed) {
+        this(cols, rows, maxPlayers, 1, seed);
+    }
+
+    /**
+     * Creates an empty arena that keeps the given number of food items on the board, replacing each one as it is eaten.
+     * @param cols number of columns on the board.
+     * @param rows number of rows on the board.
+     * @param maxPlayers the largest number of players that can join.
+     * @param food the number of food items on the board.
+     * @param seed the seed used to place snakes and food.
+     * @throws IllegalArgumentException if any dimension, the player limit or the food count is not positive, or if
+     *                                  there is more food than cells.
+     */
+    public Arena(int cols, int rows, int maxPlayers, int food, long seed) {
+        if (cols <= 0 || rows <= 0 || maxPlayers <= 0 || food <= 0) {
+            throw new IllegalArgumentException("Arena dimensions, player limit and food count must be positive");
+        }
+        if (food > cols * rows) {
+            throw new IllegalArgumentException("There is more food than cells on the board");
+        }
+        this.cols = cols;
+        this.rows = rows;
+        owner = new int[cols * rows];
+        this.food = new FoodField(cols, rows);
+        this.maxFood = food;
+        Arrays.fill(owner, -1);
+        state = new byte[maxPlayers];
+        snakes = new Snake[maxPlayers];
+        respawnIn = new int[maxPlayers];
+        scores = new int[maxPlayers];
+        oldTail = new int[maxPlayers];
+        newHead = new int[maxPlayers];
+        dying = new boolean[maxPlayers];
+        eating = new boolean[maxPlayers];
+        rand = new Random(seed);
+        while (this.food.size() < food)
+            placeFood(null);
+    }
+
+    /**
+     * Adds a player. Their snake spawns on the next tick.
+     * @return the id of the new player, or {@code -1} if the arena is full.
+     */
+    public int join() {
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] == EMPTY) {
+                state[id] = WAITING;
+                respawnIn[id] = 0;
+                players++;
+                LOGGER.fine("Player " + id + " joined.");
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a player. If their snake is on the board it is removed on the next tick.
+     * @param id the player to remove.
+     */
+    public void leave(int id) {
+        if (state[id] == ALIVE) {
+            state[id] = LEAVING;
+        } else if (state[id] == WAITING) {
+            state[id] = EMPTY;
+        } else {
+            return;
+        }
+        players--;
+        LOGGER.fine("Player " + id + " left.");
+    }
+
+    /**
+     * Queues a turn for a player's snake. Ignored if the player has no snake on the board.
+     * @param id the player steering.
+     * @param direction the direction to turn towards.
+     */
+    public void steer(int id, Direction direction) {
+        if (state[id] == ALIVE)
+            snakes[id].changeDirection(direction);
+    }
+
+    /**
+     * Advances the arena by one tick and reports every change to the listener.
+     * @param listener receives the changes made by this tick.
+     */
+    public void tick(ArenaListener listener) {
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] == LEAVING) {
+                remove(id);
+                state[id] = EMPTY;
+                listener.died(id);
+            }
+        }
+
+        // Snakes that eat keep their tail, so it still blocks its cell when the heads are placed
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] != ALIVE)
+                continue;
+            List<Point> body = snakes[id].getSnake();
+            Point tail = body.get(body.size() - 1);
+            oldTail[id] = tail.y * cols + tail.x;
+            snakes[id].move();
+            Point head = body.get(0);
+            newHead[id] = inBounds(head.x, head.y) ? head.y * cols + head.x : -1;
+            eating[id] = newHead[id] >= 0 && food.contains(newHead[id]);
+            if (eating[id])
+                snakes[id].grow();
+            else
+                owner[oldTail[id]] = -1;
+        }
+
+        // A head landing on a cell another head claimed this tick kills both snakes
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] != ALIVE)
+                continue;
+            int cell = newHead[id];
+            dying[id] = cell < 0;
+            if (cell < 0)
+                continue;
+            int other = owner[cell];
+            if (other < 0) {
+                owner[cell] = id;
+            } else {
+                dying[id] = true;
+                if (newHead[other] == cell)
+                    dying[other] = true;
+            }
+        }
+
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] != ALIVE)
+                continue;
+            int head = newHead[id];
+            if (dying[id]) {
+                remove(id);
+                state[id] = WAITING;
+                respawnIn[id] = RESPAWN_TICKS;
+                listener.died(id);
+            } else if (eating[id]) {
+                scores[id]++;
+                food.remove(head);
+                listener.foodRemoved(head % cols, head / cols);
+                listener.moved(id, head % cols, head / cols, -1, -1);
+            } else {
+                listener.moved(id, head % cols, head / cols, oldTail[id] % cols, oldTail[id] / cols);
+            }
+        }
+
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] == WAITING && respawnIn[id]-- <= 0 && spawn(id))
+                listener.spawned(id, snakes[id].getSnake());
+        }
+
+        while (food.size() < maxFood && placeFood(listener))
+            ;
+        ticks++;
+    }
+
+    /**
+     * Reports the whole board to the listener as if every snake and food item had just appeared. Used to bring a new
+     * observer up to date before it starts following changes.
+     * @param listener receives every snake and food item.
+     */
+    public void snapshot(ArenaListener listener) {
+        for (int id = 0; id < state.length; id++) {
+            if (state[id] == ALIVE || state[id] == LEAVING)
+                listener.spawned(id, snakes[id].getSnake());
+        }
+        for (int i = 0; i < food.size(); i++)
+            listener.foodAdded(food.get(i) % cols, food.get(i) / cols);
+    }
+
+    /**
+     * Frees every cell a snake owns and drops the snake. A head that lost a collision never claimed its cell, so only
+     * cells the snake still owns are freed.
+     * @hidden
+     */
+    private void remove(int id) {
+        for (Point p : snakes[id].getSnake()) {
+            if (inBounds(p.x, p.y) && owner[p.y * cols + p.x] == id)
+                owner[p.y * cols + p.x] = -1;
+        }
+        snakes[id] = null;
+    }
+
+    /**
+     * Tries to place a player's snake in a random straight line with room to move in front of it.
+     * @return true if the snake was placed, false if no spot was found this tick.
+     * @hidden
+     */
+    private boolean spawn(int id) {
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS; attempt++) {
+            Direction dir = DIRECTIONS[rand.nextInt(DIRECTIONS.length)];
+            int x = rand.nextInt(cols);
+            int y = rand.nextInt(rows);
+            int dx = dir == Direction.RIGHT ? 1 : dir == Direction.LEFT ? -1 : 0;
+            int dy = dir == Direction.DOWN ? 1 : dir == Direction.UP ? -1 : 0;
+            boolean clear = true;
+            // The body goes behind the head and the same number of cells in front are kept clear
+            for (int i = -SPAWN_LENGTH; i < SPAWN_LENGTH && clear; i++) {
+                int cx = x - i * dx;
+                int cy = y - i * dy;
+                clear = inBounds(cx, cy) && isFree(cy * cols + cx);
+            }
+            if (clear) {
+                snakes[id] = new Snake(SNAKE_CAPACITY, new Point(x, y), dir, SPAWN_LENGTH);
+                for (int i = 0; i < SPAWN_LENGTH; i++)
+                    owner[(y - i * dy) * cols + x - i * dx] = id;
+                scores[id] = 0;
+                state[id] = ALIVE;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a food item on a random free cell. Random cells are tried first since the board is usually sparse, falling
+     * back to the first free cell.
+     * @param listener notified of the new food, or {@code null}.
+     * @return true if the food was placed, false if the board is full.
+     * @hidden
+     */
+    private boolean placeFood(ArenaListener listener) {
+        int cell = -1;
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS && cell < 0; attempt++) {
+            int c = rand.nextInt(cols * rows);
+            if (isFree(c))
+                cell = c;
+        }
+        for (int c = 0; c < owner.length && cell < 0; c++) {
+            if (isFree(c))
+                cell = c;
+        }
+        if (cell < 0)
+            return false;
+        food.add(cell);
+        if (listener != null)
+            listener.foodAdded(cell % cols, cell / cols);
+        return true;
+    }
+
+    /**
+     * Checks whether a cell has neither a snake nor food on it.
+     * @hidden
+     */
+    private boolean isFree(int cell) {
+        return owner[cell] < 0 && !food.contains(cell);
+    }
+
+    /**
+     * Checks whether a cell is on the board.
+     * @hidden
+     */
+    private boolean inBounds(int x, int y) {
+        return x >= 0 && x < cols && y >= 0 && y < rows;
+    }
+
+    /**
+     * Checks whether any snake covers the given cell.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if a snake is on the cell, false otherwise. Cells off the board count as occupied.
+     */
+    public boolean isOccupied(int x, int y) {
+        return !inBounds(x, y) || owner[y * cols + x] >= 0;
+    }
+
+    /**
+     * Finds the player whose snake covers the given cell.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return the id of the player, or {@code -1} if the cell is empty or off the board.
+     */
+    public int ownerAt(int x, int y) {
+        return inBounds(x, y) ? owner[y * cols + x] : -1;
+    }
+
+    /**
+     * Checks whether a cell holds food.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if the cell is on the board and has food, false otherwise.
+     */
+    public boolean isFood(int x, int y) {
+        return inBounds(x, y) && food.contains(y * cols + x);
+    }
+
+    /**
+     * Finds the food closest to a cell, measured in moves.
+     * @param x the column to search from.
+     * @param y the row to search from.
+     * @return the cell of the nearest food as {@code y * cols + x}, or {@code -1} if there is no food.
+     */
+    public int nearestFood(int x, int y) {
+        return food.nearest(x, y);
+    }
+
+    /**
+     * Gets the number of food items on the board.
+     * @return the number of food items.
+     */
+    public int getFoodCount() {
+        return food.size();
+    }
+
+    /**
+     * Gets the number of food items the arena keeps on the board.
+     * @return the food count the arena was created with.
+     */
+    public int getMaxFood() {
+        return maxFood;
+    }
+
+    /**
+     * Gets the cell of a food item as {@code y * cols + x}. Indices are not stable: eating a food item moves another
+     * into its index.
+     * @param i the index of the food item, less than {@link #getFoodCount()}.
+     * @return the cell of the food.
+     */
+    public int getFoodCell(int i) {
+        return food.get(i);
+    }
+
+    /**
+     * Returns {@code true} if the player has a snake on the board.
+     * @param id the player.
+     * @return true if the player's snake is alive, false otherwise.
+     */
+    public boolean isAlive(int id) {
+        return state[id] == ALIVE;
+    }
+
+    /**
+     * Gets the body of a player's snake.
+     * @param id the player.
+     * @return a live view of the body ordered from head to tail, or an empty list if the player has no snake on the
+     *         board. The snake of a player that just left stays on the board until the next tick.
+     */
+    public List<Point> getBody(int id) {
+        return state[id] == ALIVE || state[id] == LEAVING ? snakes[id].getSnake() : Collections.emptyList();
+    }
+
+    /**
+     * Gets the score of a player's current snake.
+     * @param id the player.
+     * @return the number of food items eaten since the snake last spawned.
+     */
+    public int getScore(int id) {
+        return scores[id];
+    }
+
+    /**
+     * Gets the number of columns on the board.
+     * @return the number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the largest number of players that can join.
+     * @return the player limit.
+     */
+    public int getMaxPlayers() {
+        return state.length;
+    }
+
+    /**
+     * Gets the number of players that have joined and not left.
+     * @return the number of players.
+     */
+    public int getPlayerCount() {
+        return players;
+    }
+
+    /**
+     * Gets the number of ticks played.
+     * @return the number of ticks.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,49 @@
+package game.core;
+
+import java.awt.Point;
+import java.util.List;
+
+/**
+ * Receives the changes an {@link Arena} makes to the board during a tick. Listeners see only what changed, such as a
+ * head entering a cell and a tail leaving one, so the cost of following the board does not grow with the length of the
+ * snakes. Within a tick, moves and deaths are reported before spawns and new food.
+ * @see Arena#tick(ArenaListener)
+ */
+public interface ArenaListener {
+    /**
+     * A snake has entered the board.
+     * @param id the player the snake belongs to.
+     * @param body the cells of the snake ordered from head to tail. Only valid during the call.
+     */
+    void spawned(int id, List<Point> body);
+
+    /**
+     * A snake has moved one cell.
+     * @param id the player the snake belongs to.
+     * @param headX the column of the new head.
+     * @param headY the row of the new head.
+     * @param tailX the column of the cell the tail left, or {@code -1} if the snake grew.
+     * @param tailY the row of the cell the tail left, or {@code -1} if the snake grew.
+     */
+    void moved(int id, int headX, int headY, int tailX, int tailY);
+
+    /**
+     * A snake has died or its player has left, and its whole body has been removed from the board.
+     * @param id the player the snake belonged to.
+     */
+    void died(int id);
+
+    /**
+     * A food item has been placed on a cell.
+     * @param x the column of the food.
+     * @param y the row of the food.
+     */
+    void foodAdded(int x, int y);
+
+    /**
+     * A food item has been eaten and removed from its cell.
+     * @param x the column of the food.
+     * @param y the row of the food.
+     */
+    void foodRemoved(int x, int y);
+}
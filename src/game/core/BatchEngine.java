@@ -0,0 +1,356 @@
+package game.core;
+
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The {@code BatchEngine} simulates many independent games at once in lockstep. Instead of one {@link GameEngine},
+ * {@link Snake} and {@link Food} per game, every piece of state is held in flat primitive arrays indexed by game:
+ * <ul>
+ *     <li>{@code bodies} holds a ring buffer of cell indices for every game, one after another.</li>
+ *     <li>{@code occupancy} holds a bitset of the cells each snake covers, one after another.</li>
+ *     <li>head, length, direction, food, score, tick, done and random state each have their own array.</li>
+ * </ul>
+ * A game on the default board takes a little over one kilobyte, and stepping a range of games walks these arrays
+ * sequentially, so large batches are limited by memory bandwidth rather than by pointer chasing.
+ * <p>
+ *     The rules are the same as {@link GameEngine#updateGame()}: a reverse turn is ignored, the tail is removed before
+ *     collisions are checked, hitting a wall or the body ends the game without moving the snake, and eating food grows
+ *     the snake and spawns new food. Food is placed with the same seeded generator as {@link GameState}, so game
+ *     {@code i} reset with seed {@code s} plays out exactly like {@code GameState.initial(s)} given the same moves.
+ * </p>
+ * Different games can be stepped from different threads as long as the index ranges do not overlap.
+ */
+public class BatchEngine {
+    /** Increment used by the SplitMix64 generator that places food. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** Number of games stepped by each task in {@link #stepParallel(int[])}. */
+    private static final int PARALLEL_CHUNK = 1024;
+
+    /** Number of columns on the board. */
+    private final int cols;
+
+    /** Number of rows on the board. */
+    private final int rows;
+
+    /** Number of cells on the board, which is also the capacity of each body ring buffer. */
+    private final int cells;
+
+    /** Number of {@code long} words in each game's occupancy bitset. */
+    private final int words;
+
+    /** Number of games in the batch. */
+    private final int games;
+
+    /** Ring buffers of body cells. Game {@code g} uses {@code [g * cells, (g + 1) * cells)}. */
+    private final int[] bodies;
+
+    /** Occupancy bitsets. Game {@code g} uses {@code [g * words, (g + 1) * words)}. */
+    private final long[] occupancy;
+
+    /** Ring buffer index of each head. */
+    private final int[] head;
+
+    /** Length of each snake. */
+    private final int[] length;
+
+    /** Ordinal of the {@link Direction} each snake last moved in. */
+    private final byte[] direction;
+
+    /** Cell index of each food, or {@code -1} if the board is full. */
+    private final int[] food;
+
+    /** Score of each game. */
+    private final int[] score;
+
+    /** Number of ticks played in each game. */
+    private final int[] ticks;
+
+    /** {@code true} for every game that has ended. */
+    private final boolean[] done;
+
+    /** State of each game's food generator. */
+    private final long[] seeds;
+
+    /**
+     * Creates a batch of games on a board of the size defined in {@link Constants}. Every game starts ended and must be
+     * reset before it is stepped.
+     * @param games the number of games in the batch.
+     * @throws IllegalArgumentException if {@code games} is not positive.
+     */
+    public BatchEngine(int games) {
+        if (games <= 0) {
+            throw new IllegalArgumentException("games must be positive");
+        }
+        this.cols = Constants.NUM_COLS;
+        this.rows = Constants.NUM_ROWS;
+        this.cells = cols * rows;
+        this.words = (cells + Long.SIZE - 1) / Long.SIZE;
+        this.games = games;
+        bodies = new int[games * cells];
+        occupancy = new long[games * words];
+        head = new int[games];
+        length = new int[games];
+        direction = new byte[games];
+        food = new int[games];
+        score = new int[games];
+        ticks = new int[games];
+        done = new boolean[games];
+        seeds = new long[games];
+        Arrays.fill(done, true);
+    }
+
+    /**
+     * Resets every game, giving game {@code i} the seed {@code seed + i}.
+     * @param seed the seed of the first game.
+     */
+    public void resetAll(long seed) {
+        for (int g = 0; g < games; g++)
+            reset(g, seed + g);
+    }
+
+    /**
+     * Resets one game to the starting state defined in {@link Constants}.
+     * @param game the index of the game.
+     * @param seed the seed used to place food after the first one is eaten.
+     */
+    public void reset(int game, long seed) {
+        int base = game * cells;
+        int wordBase = game * words;
+        for (int w = 0; w < words; w++)
+            occupancy[wordBase + w] = 0;
+        for (int i = 0; i < Constants.SNAKE_INITIAL_LENGTH; i++) {
+            int cell = Constants.SNAKE_INITIAL_POSITION.y * cols + Constants.SNAKE_INITIAL_POSITION.x - i;
+            bodies[base + i] = cell;
+            occupancy[wordBase + (cell >>> 6)] |= 1L << cell;
+        }
+        head[game] = 0;
+        length[game] = Constants.SNAKE_INITIAL_LENGTH;
+        direction[game] = (byte) Direction.RIGHT.ordinal();
+        food[game] = Constants.FOOD_INITIAL_POSITION.y * cols + Constants.FOOD_INITIAL_POSITION.x;
+        score[game] = 0;
+        ticks[game] = 0;
+        done[game] = false;
+        seeds[game] = seed;
+    }
+
+    /**
+     * Advances every game by one tick on the calling thread.
+     * @param actions the ordinal of the {@link Direction} each snake should turn towards, or {@code -1} to keep going.
+     */
+    public void step(int[] actions) {
+        step(actions, 0, games);
+    }
+
+    /**
+     * Advances every game by one tick, splitting the batch into ranges that run on the common fork join pool.
+     * @param actions the ordinal of the {@link Direction} each snake should turn towards, or {@code -1} to keep going.
+     */
+    public void stepParallel(int[] actions) {
+        int chunks = (games + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(c ->
+                step(actions, c * PARALLEL_CHUNK, Math.min(games, (c + 1) * PARALLEL_CHUNK)));
+    }
+
+    /**
+     * Advances the games in {@code [from, to)} by one tick. Games that have ended are skipped.
+     * @param actions the ordinal of the {@link Direction} each snake should turn towards, or {@code -1} to keep going.
+     * @param from the first game to step.
+     * @param to one past the last game to step.
+     */
+    public void step(int[] actions, int from, int to) {
+        for (int g = from; g < to; g++) {
+            if (done[g])
+                continue;
+
+            // Direction ordinals pair up as UP/DOWN and LEFT/RIGHT, so flipping the low bit gives the opposite
+            int dir = actions[g];
+            if (dir < 0 || dir == (direction[g] ^ 1))
+                dir = direction[g];
+            direction[g] = (byte) dir;
+            ticks[g]++;
+
+            int base = g * cells;
+            int wordBase = g * words;
+            int h = head[g];
+            int len = length[g];
+            int cur = bodies[base + h];
+            int x = cur % cols;
+            int y = cur / cols;
+            switch (dir) {
+                case 0 -> y--;
+                case 1 -> y++;
+                case 2 -> x--;
+                default -> x++;
+            }
+            if (x < 0 || x >= cols || y < 0 || y >= rows) {
+                done[g] = true;
+                continue;
+            }
+
+            int next = y * cols + x;
+            boolean eats = next == food[g];
+            int tailCell = bodies[base + (h + len - 1) % cells];
+            long tailMask = 1L << tailCell;
+            if (!eats)
+                occupancy[wordBase + (tailCell >>> 6)] &= ~tailMask;
+            if ((occupancy[wordBase + (next >>> 6)] & (1L << next)) != 0) {
+                if (!eats)
+                    occupancy[wordBase + (tailCell >>> 6)] |= tailMask;
+                done[g] = true;
+                continue;
+            }
+            occupancy[wordBase + (next >>> 6)] |= 1L << next;
+            h = h == 0 ? cells - 1 : h - 1;
+            bodies[base + h] = next;
+            head[g] = h;
+
+            if (eats) {
+                length[g] = ++len;
+                score[g]++;
+                spawn(g, len);
+            }
+        }
+    }
+
+    /**
+     * Moves the food of a game onto a random free cell, using the same generator and cell order as {@link GameState}.
+     * @param g the index of the game.
+     * @param len the length of the snake.
+     */
+    private void spawn(int g, int len) {
+        long seed = seeds[g] + GOLDEN_GAMMA;
+        seeds[g] = seed;
+        int free = cells - len;
+        if (free <= 0)
+            return;
+        int k = (int) Long.remainderUnsigned(mix(seed), free);
+        int wordBase = g * words;
+        for (int w = 0; w < words; w++) {
+            long empty = ~occupancy[wordBase + w];
+            int valid = Math.min(Long.SIZE, cells - w * Long.SIZE);
+            if (valid < Long.SIZE)
+                empty &= (1L << valid) - 1;
+            int count = Long.bitCount(empty);
+            if (k >= count) {
+                k -= count;
+                continue;
+            }
+            for (; k > 0; k--)
+                empty &= empty - 1;
+            food[g] = w * Long.SIZE + Long.numberOfTrailingZeros(empty);
+            return;
+        }
+    }
+
+    /**
+     * Gets the number of games in the batch.
+     * @return the number of games.
+     */
+    public int size() {
+        return games;
+    }
+
+    /**
+     * Returns {@code true} if the given game has ended.
+     * @param game the index of the game.
+     * @return true if the game has ended, false otherwise.
+     */
+    public boolean isDone(int game) {
+        return done[game];
+    }
+
+    /**
+     * Counts the games that have ended.
+     * @return the number of finished games.
+     */
+    public int countDone() {
+        int count = 0;
+        for (int g = 0; g < games; g++)
+            if (done[g]) count++;
+        return count;
+    }
+
+    /**
+     * Gets the score of a game.
+     * @param game the index of the game.
+     * @return the number of food items eaten.
+     */
+    public int getScore(int game) {
+        return score[game];
+    }
+
+    /**
+     * Gets the number of ticks played in a game.
+     * @param game the index of the game.
+     * @return the number of ticks.
+     */
+    public int getTicks(int game) {
+        return ticks[game];
+    }
+
+    /**
+     * Gets the length of a snake.
+     * @param game the index of the game.
+     * @return the number of segments in the snake.
+     */
+    public int getLength(int game) {
+        return length[game];
+    }
+
+    /**
+     * Gets the cell index ({@code y * NUM_COLS + x}) of a snake's head.
+     * @param game the index of the game.
+     * @return the cell of the head.
+     */
+    public int getHeadCell(int game) {
+        return bodies[game * cells + head[game]];
+    }
+
+    /**
+     * Gets the cell index ({@code y * NUM_COLS + x}) of a game's food.
+     * @param game the index of the game.
+     * @return the cell of the food.
+     */
+    public int getFoodCell(int game) {
+        return food[game];
+    }
+
+    /**
+     * Gets the direction a snake last moved in.
+     * @param game the index of the game.
+     * @return the current direction.
+     */
+    public Direction getDirection(int game) {
+        return Direction.values()[direction[game]];
+    }
+
+    /**
+     * Copies the body cells of a snake from head to tail into the given array.
+     * @param game the index of the game.
+     * @param dst the array to copy into. Must have room for {@link #getLength(int)} cells.
+     * @return the number of cells copied.
+     */
+    public int copyBody(int game, int[] dst) {
+        int base = game * cells;
+        int h = head[game];
+        int len = length[game];
+        for (int i = 0; i < len; i++)
+            dst[i] = bodies[base + (h + i) % cells];
+        return len;
+    }
+
+    /**
+     * The SplitMix64 output function.
+     * @hidden
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
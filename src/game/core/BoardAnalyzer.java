@@ -0,0 +1,383 @@
+package game.core;
+
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code BoardAnalyzer} answers reachability questions about the board, such as how much free space the snake can
+ * still reach and whether it can follow its own tail. These checks are used by bots and by the danger overlay to spot
+ * states where the snake is about to trap itself.
+ * <p>
+ *     The board is stored as a bitboard of {@code long} words where bit {@code y * cols + x} represents a cell. Flood
+ *     fills grow the reached region by shifting whole words at once and masking out cells that would wrap around a row,
+ *     so every step of the fill processes 64 cells at a time instead of visiting cells one by one with a queue. All
+ *     buffers are allocated once so an analyzer can be reused every tick without creating garbage.
+ * </p>
+ * An analyzer is not thread safe; each thread should use its own instance.
+ */
+public class BoardAnalyzer {
+    /** Shared direction values to avoid copying the array on every query. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Number of columns on the board. */
+    private final int cols;
+
+    /** Number of rows on the board. */
+    private final int rows;
+
+    /** Number of {@code long} words used by each bitboard. */
+    private final int words;
+
+    /** Mask of every cell that is not in the first column. */
+    private final long[] notFirstCol;
+
+    /** Mask of every cell that is not in the last column. */
+    private final long[] notLastCol;
+
+    /** Cells that are not occupied by the snake. */
+    private final long[] free;
+
+    /** Cells reached by the last flood fill. */
+    private final long[] region;
+
+    /** Scratch bitboard used while filling. */
+    private final long[] scratch;
+
+    /** Scratch bitboard holding the passable cells of a hypothetical move. */
+    private final long[] passable;
+
+    /** Cell index of the head. */
+    private int head;
+
+    /** Cell index of the tail. */
+    private int tail;
+
+    /** Cells holding food. */
+    private final long[] food;
+
+    /** Number of segments in the snake. */
+    private int length;
+
+    /** Direction the snake is currently moving. */
+    private Direction direction;
+
+    /**
+     * Creates an analyzer for a board of the size defined in {@link Constants}.
+     */
+    public BoardAnalyzer() {
+        this(Constants.NUM_COLS, Constants.NUM_ROWS);
+    }
+
+    /**
+     * Creates an analyzer for a board of the given size.
+     * @param cols number of columns on the board.
+     * @param rows number of rows on the board.
+     * @throws IllegalArgumentException if either dimension is not positive.
+     */
+    public BoardAnalyzer(int cols, int rows) {
+        if (cols <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Board dimensions must be positive");
+        }
+        this.cols = cols;
+        this.rows = rows;
+        this.words = (cols * rows + Long.SIZE - 1) / Long.SIZE;
+        notFirstCol = new long[words];
+        notLastCol = new long[words];
+        free = new long[words];
+        food = new long[words];
+        region = new long[words];
+        scratch = new long[words];
+        passable = new long[words];
+        for (int cell = 0; cell < cols * rows; cell++) {
+            if (cell % cols != 0) setBit(notFirstCol, cell);
+            if (cell % cols != cols - 1) setBit(notLastCol, cell);
+        }
+    }
+
+    /**
+     * Loads the current snake and food of the given engine.
+     * @param gameEngine the engine to analyze.
+     */
+    public void load(GameEngine gameEngine) {
+        load(gameEngine.getSnake().getSnake(), gameEngine.getSnake().getDirection(), null);
+        clearWalls(gameEngine.getLevel());
+        Food items = gameEngine.getFood();
+        for (int i = 0; i < items.getCount(); i++)
+            setBit(food, items.getCell(i));
+    }
+
+    /**
+     * Loads the snake and food of the given state.
+     * @param state the state to analyze.
+     */
+    public void load(GameState state) {
+        load(state.getBody(), state.getDirection(), state.getFood());
+    }
+
+    /**
+     * Loads the snake and food of the given snapshot.
+     * @param snapshot the snapshot to analyze.
+     */
+    public void load(GameSnapshot snapshot) {
+        for (int w = 0; w < words; w++)
+            free[w] = ~0L;
+        clearPadding(free);
+        length = snapshot.getLength();
+        for (int i = 0; i < length; i++)
+            clearBit(free, snapshot.getY(i) * cols + snapshot.getX(i));
+        head = snapshot.getY(0) * cols + snapshot.getX(0);
+        tail = snapshot.getY(length - 1) * cols + snapshot.getX(length - 1);
+        this.direction = snapshot.getDirection();
+        Arrays.fill(food, 0L);
+        for (int i = 0; i < snapshot.getFoodCount(); i++)
+            setBit(food, snapshot.getFoodCell(i));
+        clearWalls(snapshot.getLevel());
+    }
+
+    /**
+     * Loads a snake body and food position.
+     * @param body the cells of the snake ordered from head to tail.
+     * @param direction the direction the snake is moving in.
+     * @param foodPosition the position of the food.
+     */
+    public void load(List<Point> body, Direction direction, Point foodPosition) {
+        for (int w = 0; w < words; w++)
+            free[w] = ~0L;
+        clearPadding(free);
+        length = 0;
+        for (Point p : body) {
+            int cell = p.y * cols + p.x;
+            if (length == 0) head = cell;
+            tail = cell;
+            clearBit(free, cell);
+            length++;
+        }
+        this.direction = direction;
+        Arrays.fill(food, 0L);
+        if (foodPosition != null)
+            setBit(food, foodPosition.y * cols + foodPosition.x);
+    }
+
+    /**
+     * Counts the free cells the head can currently reach. After this call {@link #isReachable(int, int)} reports the
+     * cells that were reached.
+     * @return the number of free cells reachable from the head.
+     */
+    public int reachableArea() {
+        System.arraycopy(free, 0, passable, 0, words);
+        return fill(head, passable);
+    }
+
+    /**
+     * Counts the free cells the head would be able to reach after moving one cell in the given direction. The tail
+     * moves out of the way unless the move eats food, matching the order used by {@link GameEngine#updateGame()}.
+     * @param dir the candidate direction.
+     * @return the size of the region around the new head, or {@code -1} if the move is fatal or reverses the snake.
+     */
+    public int regionSizeAfter(Direction dir) {
+        if (length > 1 && dir == opposite(direction))
+            return -1;
+        int target = neighbour(head, dir);
+        if (target < 0)
+            return -1;
+
+        System.arraycopy(free, 0, passable, 0, words);
+        if (!testBit(food, target))
+            setBit(passable, tail);
+        if (!testBit(passable, target))
+            return -1;
+        clearBit(passable, target);
+        return fill(target, passable);
+    }
+
+    /**
+     * Checks whether the head can reach the tail through free cells. A snake that can reach its tail can always keep
+     * following it, so this is a simple way to tell that a state is safe.
+     * @return true if the tail is reachable from the head, false otherwise.
+     */
+    public boolean isTailReachable() {
+        System.arraycopy(free, 0, passable, 0, words);
+        setBit(passable, tail);
+        fill(head, passable);
+        return testBit(region, tail);
+    }
+
+    /**
+     * Checks whether every possible move leaves the snake in a region smaller than its body and out of reach of its
+     * tail.
+     * @return true if the snake is about to trap itself, false otherwise.
+     */
+    public boolean isTrapped() {
+        if (isTailReachable())
+            return false;
+        for (Direction dir : DIRECTIONS) {
+            if (regionSizeAfter(dir) >= length)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a cell was reached by the most recent query.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if the cell was reached, false otherwise.
+     */
+    public boolean isReachable(int x, int y) {
+        return x >= 0 && x < cols && y >= 0 && y < rows && testBit(region, y * cols + x);
+    }
+
+    /**
+     * Checks whether a cell is free of the snake.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if the cell is on the board and not part of the snake, false otherwise.
+     */
+    public boolean isFree(int x, int y) {
+        return x >= 0 && x < cols && y >= 0 && y < rows && testBit(free, y * cols + x);
+    }
+
+    /**
+     * Flood fills from the given cell through the passable cells and stores the result in {@code region}.
+     * @param start the cell to start from. It is included in the region but not counted.
+     * @param open the cells the fill may enter.
+     * @return the number of passable cells reached.
+     */
+    private int fill(int start, long[] open) {
+        for (int w = 0; w < words; w++)
+            region[w] = 0;
+        setBit(region, start);
+        setBit(open, start);
+
+        boolean changed = true;
+        while (changed) {
+            expand(region, scratch);
+            changed = false;
+            for (int w = 0; w < words; w++) {
+                long grown = (region[w] | scratch[w]) & open[w];
+                if (grown != region[w]) {
+                    region[w] = grown;
+                    changed = true;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int w = 0; w < words; w++)
+            count += Long.bitCount(region[w]);
+        return count - 1;
+    }
+
+    /**
+     * Writes the four-neighbourhood of {@code src} into {@code dst}.
+     * @param src the cells to expand.
+     * @param dst the expanded cells, not including {@code src} itself.
+     */
+    private void expand(long[] src, long[] dst) {
+        int wordShift = cols / Long.SIZE;
+        int bitShift = cols % Long.SIZE;
+        for (int w = 0; w < words; w++) {
+            long cur = src[w];
+            long lower = w > 0 ? src[w - 1] : 0;
+            long upper = w < words - 1 ? src[w + 1] : 0;
+            // x + 1 and x - 1, masking out cells that wrapped onto the neighbouring row
+            long right = ((cur << 1) | (lower >>> 63)) & notFirstCol[w];
+            long left = ((cur >>> 1) | (upper << 63)) & notLastCol[w];
+            dst[w] = right | left | shiftNextRow(src, w, wordShift, bitShift) | shiftPrevRow(src, w, wordShift, bitShift);
+        }
+    }
+
+    /**
+     * Returns word {@code w} of {@code src} shifted one row down, towards higher cell indices.
+     * @hidden
+     */
+    private long shiftNextRow(long[] src, int w, int wordShift, int bitShift) {
+        int from = w - wordShift;
+        if (from < 0) return 0;
+        long value = src[from] << bitShift;
+        if (bitShift != 0 && from > 0)
+            value |= src[from - 1] >>> (Long.SIZE - bitShift);
+        return value;
+    }
+
+    /**
+     * Returns word {@code w} of {@code src} shifted one row up, towards lower cell indices.
+     * @hidden
+     */
+    private long shiftPrevRow(long[] src, int w, int wordShift, int bitShift) {
+        int from = w + wordShift;
+        if (from >= words) return 0;
+        long value = src[from] >>> bitShift;
+        if (bitShift != 0 && from + 1 < words)
+            value |= src[from + 1] << (Long.SIZE - bitShift);
+        return value;
+    }
+
+    /**
+     * Returns the cell next to the given one, or {@code -1} if it would be outside of the board.
+     * @hidden
+     */
+    private int neighbour(int cell, Direction dir) {
+        int x = cell % cols;
+        int y = cell / cols;
+        return switch (dir) {
+            case UP -> y > 0 ? cell - cols : -1;
+            case DOWN -> y < rows - 1 ? cell + cols : -1;
+            case LEFT -> x > 0 ? cell - 1 : -1;
+            case RIGHT -> x < cols - 1 ? cell + 1 : -1;
+        };
+    }
+
+    /**
+     * @return the opposite direction to the given direction.
+     * @param dir the given direction.
+     */
+    private static Direction opposite(Direction dir) {
+        return switch (dir) {
+            case UP -> Direction.DOWN;
+            case DOWN -> Direction.UP;
+            case LEFT -> Direction.RIGHT;
+            case RIGHT -> Direction.LEFT;
+        };
+    }
+
+    /**
+     * Clears the bits of the last word that are past the end of the board.
+     * @hidden
+     */
+    private void clearPadding(long[] bits) {
+        int used = (cols * rows) % Long.SIZE;
+        if (used != 0)
+            bits[words - 1] &= (1L << used) - 1;
+    }
+
+    /**
+     * Marks the walls of a level as blocked. Levels of a different size are ignored.
+     * @hidden
+     */
+    private void clearWalls(LevelMap level) {
+        if (level == null || level.getCols() != cols || level.getRows() != rows)
+            return;
+        for (int w = 0; w < words; w++)
+            free[w] &= ~level.getWallWord(w);
+    }
+
+    /** @hidden */
+    private static void setBit(long[] bits, int cell) {
+        bits[cell >>> 6] |= 1L << cell;
+    }
+
+    /** @hidden */
+    private static void clearBit(long[] bits, int cell) {
+        bits[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /** @hidden */
+    private static boolean testBit(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+}
@@ -1,16 +1,22 @@
 package game.core;
 
 import game.LoggerSetup;
+import game.metrics.FoodSpawnEvent;
+import game.metrics.GameMetrics;
 import game.utils.Constants;
 
 import java.awt.Point;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The {@code Food} class is responsible for managing the spawning and storing of the current food on the screen.
+ * The {@code Food} class is responsible for managing the spawning and storing of the current food on the screen. Up to
+ * {@link Constants#FOOD_COUNT} food items can be on the board at once. They are kept in a {@link FoodField}, so
+ * checking whether the snake is eating is a single grid lookup and the food nearest to the head is found through a
+ * spatial index instead of by checking every item.
  */
 public class Food {
     /**
@@ -20,9 +26,14 @@ public class Food {
     private static final Logger LOGGER = LoggerSetup.getLogger(Food.class.getName());
 
     /**
-     * Represents the current {@code position} of the {@code Food}.
+     * Holds the cells of every food item on the board.
      */
-    private Point position;
+    private final FoodField field;
+
+    /**
+     * The walls of the board. Food never spawns on a wall.
+     */
+    private final LevelMap level;
 
     /**
      * Used to generate a random position for the food.
@@ -34,6 +45,11 @@ public class Food {
      */
     private final Snake snake;
 
+    /**
+     * Marks the cells occupied by the snake while spawning. Kept between spawns to avoid allocating a new grid.
+     */
+    private final boolean[] occupied;
+
     /**
      * Creates the initial {@code Food} object based off the {@link Constants} file.
      * @param snake A reference to the current snake object. Must not be {@code null}.
@@ -41,37 +57,162 @@ public class Food {
      *                                  This exception is caught and logged at {@code Level.SEVERE}.
      */
     Food(Snake snake) {
+        this(snake, new Random());
+    }
+
+    /**
+     * Creates the initial {@code Food} object with {@link Constants#FOOD_COUNT} food items using the given random
+     * generator to spawn food. Sharing a seeded generator allows games to be replayed exactly.
+     * @param snake A reference to the current snake object. Must not be {@code null}.
+     * @param rand The random generator used to pick spawn positions. Must not be {@code null}.
+     * @throws IllegalArgumentException if the {@code snake} or {@code rand} is null.
+     *                                  This exception is caught and logged at {@code Level.SEVERE}.
+     */
+    Food(Snake snake, Random rand) {
+        this(snake, rand, Constants.FOOD_COUNT, LevelMap.empty(Constants.NUM_COLS, Constants.NUM_ROWS));
+    }
+
+    /**
+     * Creates the initial {@code Food} object with the given number of food items on a level. The first is placed at
+     * {@link Constants#FOOD_INITIAL_POSITION} unless that cell is blocked, and the rest are spawned at random.
+     * @param snake A reference to the current snake object. Must not be {@code null}.
+     * @param rand The random generator used to pick spawn positions. Must not be {@code null}.
+     * @param count The number of food items kept on the board. Must be positive.
+     * @param level The walls food must not spawn on. Must not be {@code null} and must match the board size.
+     * @throws IllegalArgumentException if the {@code snake}, {@code rand} or {@code level} is null or {@code count} is
+     *                                  not positive. This exception is caught and logged at {@code Level.SEVERE}.
+     */
+    Food(Snake snake, Random rand, int count, LevelMap level) {
         validateConstructor(snake);
+        if(rand == null) {
+            LOGGER.log(Level.SEVERE, "null parameter for rand");
+            throw new IllegalArgumentException();
+        }
+        if(level == null) {
+            LOGGER.log(Level.SEVERE, "null parameter for level");
+            throw new IllegalArgumentException();
+        }
+        if(count <= 0) {
+            LOGGER.log(Level.SEVERE, "food count must be positive");
+            throw new IllegalArgumentException();
+        }
         this.snake = snake;
-        this.rand = new Random();
-        this.position = Constants.FOOD_INITIAL_POSITION;
+        this.rand = rand;
+        this.occupied = new boolean[Constants.NUM_COLS * Constants.NUM_ROWS];
+        this.field = new FoodField(Constants.NUM_COLS, Constants.NUM_ROWS);
+        this.level = level;
+        Point initial = Constants.FOOD_INITIAL_POSITION;
+        int first = initial.y * Constants.NUM_COLS + initial.x;
+        boolean blocked = level.isWall(first) || snake.getSnake().contains(initial);
+        if(!blocked) {
+            field.add(first);
+        }
+        for(int i = blocked ? 0 : 1; i < count; i++) {
+            spawn();
+        }
     }
 
     /**
      * Creates food at a random position. The food is spawned at a random point in the grid that is not currently
-     * occupied by the snake.
+     * occupied by the snake, a wall or other food. The free cells are counted on a reusable grid and the chosen one is
+     * found by scanning it, so no list of candidate points has to be built. Walls and other food are checked through
+     * the level's wall bitmap and the {@link FoodField}, so the cost depends on neither. Nothing is spawned if the
+     * board is full.
      */
     public void spawn() {
-        ArrayList<Point> availableSpaces = new ArrayList<>();
-        for(int i = 0; i < Constants.NUM_COLS; i++)
-            for(int j = 0; j < Constants.NUM_ROWS; j++)
-                availableSpaces.add(new Point(i,j));
+        long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+        FoodSpawnEvent event = new FoodSpawnEvent();
+        event.begin();
+        Arrays.fill(occupied, false);
+        List<Point> body = snake.getSnake();
+        int taken = 0;
+        for(int i = 0; i < body.size(); i++) {
+            Point node = body.get(i);
+            int cell = node.y * Constants.NUM_COLS + node.x;
+            if(!occupied[cell]) {
+                occupied[cell] = true;
+                if(!level.isWall(cell)) {
+                    taken++;
+                }
+            }
+        }
 
-        for(Point node:snake.getSnake())
-            availableSpaces.remove(node);
+        // Food never lies under the snake, so the two counts do not overlap
+        int available = occupied.length - taken - field.size() - level.getWallCount();
+        int scanned = 0;
+        if(available > 0) {
+            int k = rand.nextInt(available);
+            for(int cell = 0; cell < occupied.length; cell++) {
+                if(!occupied[cell] && !level.isWall(cell) && !field.contains(cell) && k-- == 0) {
+                    field.add(cell);
+                    scanned = cell + 1;
+                    break;
+                }
+            }
+        }
+        if (GameMetrics.ENABLED)
+            GameMetrics.recordSpawn(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.cellsScanned = body.size() + scanned;
+            event.freeCells = Math.max(available, 0);
+            event.commit();
+        }
+    }
 
-        if(availableSpaces.size() > 0) {
-            position = availableSpaces.get(rand.nextInt(availableSpaces.size()));
+    /**
+     * Removes the food at the given position and spawns a replacement.
+     * @param position the position of the food that was eaten.
+     */
+    public void eat(Point position) {
+        if(field.remove(position.y * Constants.NUM_COLS + position.x)) {
+            spawn();
         }
+    }
 
+    /**
+     * Checks whether there is food at the given position.
+     * @param position the position to check.
+     * @return true if a food item is at the position, false otherwise.
+     */
+    public boolean isAt(Point position) {
+        return position.x >= 0 && position.x < Constants.NUM_COLS && position.y >= 0 && position.y < Constants.NUM_ROWS
+                && field.contains(position.y * Constants.NUM_COLS + position.x);
     }
 
     /**
-     * Gets the {@code Point} representing the {@code position} of the food.
-     * @return The {@code Point} representing the current position.
+     * Gets the {@code Point} representing the position of the food closest to the snake's head. With a single food
+     * item this is always that item.
+     * @return The {@code Point} representing the position, or {@code null} if there is no food on the board.
      */
     public Point getPosition() {
-        return position;
+        int cell = getNearestCell();
+        return cell < 0 ? null : new Point(cell % Constants.NUM_COLS, cell / Constants.NUM_COLS);
+    }
+
+    /**
+     * Gets the cell index ({@code y * NUM_COLS + x}) of the food closest to the snake's head.
+     * @return The cell of the nearest food, or {@code -1} if there is no food on the board.
+     */
+    public int getNearestCell() {
+        Point head = snake.getSnake().get(0);
+        return field.nearest(head.x, head.y);
+    }
+
+    /**
+     * Gets the number of food items on the board.
+     * @return The number of food items.
+     */
+    public int getCount() {
+        return field.size();
+    }
+
+    /**
+     * Gets the cell index ({@code y * NUM_COLS + x}) of a food item.
+     * @param i The index of the food item, less than {@link #getCount()}.
+     * @return The cell of the food.
+     */
+    public int getCell(int i) {
+        return field.get(i);
     }
 
     /**
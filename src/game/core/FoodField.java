@@ -0,0 +1,193 @@
+package game.core;
+
+import java.util.Arrays;
+
+/**
+ * A set of food cells on a board with constant time lookup and a spatial index for finding the nearest food.
+ * <p>
+ *     Each cell stores the index of its food in a dense list, so adding, removing and checking a cell are single array
+ *     accesses and the food can be listed without scanning the board. The board is also split into square buckets of
+ *     {@link #BUCKET_SIZE} cells a side, each holding a linked list of its food threaded through per cell arrays.
+ *     {@link #nearest(int, int)} searches the buckets in rings around the query and stops as soon as no farther ring
+ *     can hold anything closer, so its cost depends on how far away the nearest food is rather than on how much food
+ *     there is.
+ * </p>
+ * Cells are numbered {@code y * cols + x}. A field is not thread safe.
+ */
+public class FoodField {
+    /** Number of cells along each side of a bucket. */
+    public static final int BUCKET_SIZE = 8;
+
+    /** Number of columns on the board. */
+    private final int cols;
+
+    /** Number of columns of buckets. */
+    private final int bucketCols;
+
+    /** Number of rows of buckets. */
+    private final int bucketRows;
+
+    /** Index in {@code cells} of the food on each cell, or {@code -1} if the cell has no food. */
+    private final int[] index;
+
+    /** Cells holding food. The first {@code count} entries are used. */
+    private final int[] cells;
+
+    /** First food cell of each bucket, or {@code -1} if the bucket is empty. */
+    private final int[] bucketHead;
+
+    /** Next food cell in the same bucket, indexed by cell. */
+    private final int[] next;
+
+    /** Previous food cell in the same bucket, indexed by cell. */
+    private final int[] prev;
+
+    /** Number of food items. */
+    private int count;
+
+    /**
+     * Creates an empty field for a board of the given size.
+     * @param cols number of columns on the board.
+     * @param rows number of rows on the board.
+     * @throws IllegalArgumentException if either dimension is not positive.
+     */
+    public FoodField(int cols, int rows) {
+        if (cols <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Board dimensions must be positive");
+        }
+        this.cols = cols;
+        this.bucketCols = (cols + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        this.bucketRows = (rows + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        index = new int[cols * rows];
+        cells = new int[cols * rows];
+        next = new int[cols * rows];
+        prev = new int[cols * rows];
+        bucketHead = new int[bucketCols * bucketRows];
+        Arrays.fill(index, -1);
+        Arrays.fill(bucketHead, -1);
+    }
+
+    /**
+     * Adds food to a cell.
+     * @param cell the cell to add food to.
+     * @return true if the food was added, false if the cell already had food.
+     */
+    public boolean add(int cell) {
+        if (index[cell] >= 0)
+            return false;
+        index[cell] = count;
+        cells[count++] = cell;
+        int b = bucket(cell);
+        prev[cell] = -1;
+        next[cell] = bucketHead[b];
+        if (bucketHead[b] >= 0)
+            prev[bucketHead[b]] = cell;
+        bucketHead[b] = cell;
+        return true;
+    }
+
+    /**
+     * Removes the food on a cell. The last food item in the list takes its index.
+     * @param cell the cell to clear.
+     * @return true if the food was removed, false if the cell had no food.
+     */
+    public boolean remove(int cell) {
+        int i = index[cell];
+        if (i < 0)
+            return false;
+        int last = cells[--count];
+        cells[i] = last;
+        index[last] = i;
+        index[cell] = -1;
+        if (prev[cell] >= 0)
+            next[prev[cell]] = next[cell];
+        else
+            bucketHead[bucket(cell)] = next[cell];
+        if (next[cell] >= 0)
+            prev[next[cell]] = prev[cell];
+        return true;
+    }
+
+    /**
+     * Removes all food.
+     */
+    public void clear() {
+        for (int i = 0; i < count; i++)
+            index[cells[i]] = -1;
+        Arrays.fill(bucketHead, -1);
+        count = 0;
+    }
+
+    /**
+     * Checks whether a cell has food.
+     * @param cell the cell to check.
+     * @return true if the cell has food, false otherwise.
+     */
+    public boolean contains(int cell) {
+        return index[cell] >= 0;
+    }
+
+    /**
+     * Gets the number of food items.
+     * @return the number of food items.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the cell of a food item. Indices are not stable: removing food moves the last item into the freed index.
+     * @param i the index of the food item, less than {@link #size()}.
+     * @return the cell of the food.
+     */
+    public int get(int i) {
+        return cells[i];
+    }
+
+    /**
+     * Finds the food closest to a cell on the board, measured in moves.
+     * @param x the column to search from.
+     * @param y the row to search from.
+     * @return the cell of the nearest food, or {@code -1} if there is none.
+     */
+    public int nearest(int x, int y) {
+        if (count == 0)
+            return -1;
+        int bx = Math.min(Math.max(x / BUCKET_SIZE, 0), bucketCols - 1);
+        int by = Math.min(Math.max(y / BUCKET_SIZE, 0), bucketRows - 1);
+        int maxRing = Math.max(Math.max(bx, bucketCols - 1 - bx), Math.max(by, bucketRows - 1 - by));
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int r = 0; r <= maxRing; r++) {
+            // Every cell in ring r is at least this many columns or rows away from the query
+            if (r > 0 && bestDistance <= (r - 1) * BUCKET_SIZE + 1)
+                break;
+            for (int cy = by - r; cy <= by + r; cy++) {
+                if (cy < 0 || cy >= bucketRows)
+                    continue;
+                // Rows inside the ring only have buckets at its left and right edges
+                int step = cy == by - r || cy == by + r ? 1 : 2 * r;
+                for (int cx = bx - r; cx <= bx + r; cx += step) {
+                    if (cx < 0 || cx >= bucketCols)
+                        continue;
+                    for (int cell = bucketHead[cy * bucketCols + cx]; cell >= 0; cell = next[cell]) {
+                        int distance = Math.abs(cell % cols - x) + Math.abs(cell / cols - y);
+                        if (distance < bestDistance) {
+                            best = cell;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the bucket a cell belongs to.
+     * @hidden
+     */
+    private int bucket(int cell) {
+        return cell / cols / BUCKET_SIZE * bucketCols + cell % cols / BUCKET_SIZE;
+    }
+}
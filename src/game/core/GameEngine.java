@@ -1,8 +1,17 @@
 package game.core;
 
 import game.LoggerSetup;
+import game.metrics.GameMetrics;
+import game.metrics.TickEvent;
 import game.utils.CollisionDetector;
+import game.utils.Constants;
+import game.utils.Direction;
 import javax.swing.*;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -13,17 +22,62 @@ public class GameEngine {
     private static final Logger LOGGER = LoggerSetup.getLogger(GameEngine.class.getName());
     private boolean isRunning;
     private Snake snake;
+    /** Input queue of the current snake, published to the thread that handles key presses. */
+    private volatile InputQueue inputs;
     private Food food;
     private CollisionDetector cd;
     private int score;
-    private final Timer timer;
+    private int ticks;
+    private final GameLoop loop;
+    private final Random rand;
+    private final Level lifecycleLevel;
+    private final List<TickListener> tickListeners = new ArrayList<>();
+    private LevelMap level = LevelMap.empty(Constants.NUM_COLS, Constants.NUM_ROWS);
 
     /**
      * Constructs the game engine
      * @param timer Manages game updates
      */
     public GameEngine(Timer timer) {
-        this.timer = timer;
+        this(new GameLoop() {
+            @Override
+            public void start() {
+                timer.start();
+            }
+
+            @Override
+            public void stop() {
+                timer.stop();
+            }
+
+            @Override
+            public boolean isRunning() {
+                return timer.isRunning();
+            }
+        });
+    }
+
+    /**
+     * Constructs a game engine that is advanced by the given loop, such as a {@link SimulationThread}.
+     * @param loop Manages game updates
+     */
+    public GameEngine(GameLoop loop) {
+        this.loop = loop;
+        this.rand = new Random();
+        this.lifecycleLevel = Level.INFO;
+        setGameComponents();
+    }
+
+    /**
+     * Constructs a headless game engine that has no loop. The game only advances when {@link #updateGame()} is
+     * called, which allows simulations and training environments to run as fast as possible. Game start and end
+     * messages are logged at {@code Level.FINE} instead of {@code Level.INFO} to keep the console quiet.
+     * @param seed the seed used to spawn food, allowing games to be replayed exactly.
+     */
+    public GameEngine(long seed) {
+        this.loop = null;
+        this.rand = new Random(seed);
+        this.lifecycleLevel = Level.FINE;
         setGameComponents();
     }
 
@@ -33,10 +87,19 @@ public class GameEngine {
     private void setGameComponents() {
         isRunning = true;
         score = 0;
-        snake = new Snake();
-        food = new Food(snake);
-        cd = new CollisionDetector(snake, food);
-        timer.start();
+        ticks = 0;
+        if (level.getSpawnCount() > 0) {
+            int spawn = level.getSpawnCell(0);
+            snake = new Snake(Constants.NUM_COLS * Constants.NUM_ROWS + 1,
+                    new Point(spawn % Constants.NUM_COLS, spawn / Constants.NUM_COLS), level.getSpawnDirection(0),
+                    Constants.SNAKE_INITIAL_LENGTH);
+        } else {
+            snake = new Snake();
+        }
+        inputs = snake.getInputQueue();
+        food = new Food(snake, rand, Constants.FOOD_COUNT, level);
+        cd = new CollisionDetector(snake, food, level);
+        if (loop != null) loop.start();
     }
 
     /**
@@ -45,8 +108,18 @@ public class GameEngine {
     public void startGame() {
         setGameComponents();
         isRunning = true;
-        timer.start();
-        LOGGER.info("Game has started.");
+        if (loop != null) loop.start();
+        LOGGER.log(lifecycleLevel, "Game has started.");
+    }
+
+    /**
+     * Reseeds the food spawner, then starts the game and resets all states. Two games started with the same seed and
+     * given the same inputs play out identically.
+     * @param seed the seed used to spawn food.
+     */
+    public void startGame(long seed) {
+        rand.setSeed(seed);
+        startGame();
     }
 
     /**
@@ -56,21 +129,78 @@ public class GameEngine {
     public void updateGame() {
         if (!isRunning) return;
 
+        // Headless games tick in about a microsecond, so only a sample of their ticks is timed
+        boolean measured = GameMetrics.ENABLED && (loop != null || (ticks & GameMetrics.HEADLESS_SAMPLE_MASK) == 0);
+        long start = measured ? System.nanoTime() : 0;
+        long allocated = measured ? GameMetrics.allocatedBytes() : 0;
+        TickEvent event = new TickEvent();
+        event.begin();
+        for (int i = 0; i < tickListeners.size(); i++)
+            tickListeners.get(i).beforeTick(this);
         snake.move();
-        handleCollisions();
+        ticks++;
+        String collision = handleCollisions();
+        for (int i = 0; i < tickListeners.size(); i++)
+            tickListeners.get(i).afterTick(this);
+        if (event.shouldCommit()) {
+            event.tick = ticks;
+            event.snakeLength = snake.getSnake().size();
+            event.collision = collision;
+            event.commit();
+        }
+        if (measured)
+            GameMetrics.recordTick(System.nanoTime() - start, GameMetrics.allocatedBytes() - allocated);
+        else if (GameMetrics.ENABLED)
+            GameMetrics.countTick();
+    }
+
+    /**
+     * Queues a turn for the current snake from the thread that handles input, which need not be the thread running the
+     * game. The queue is read through a volatile field, so once a new game has started every later turn reaches the new
+     * snake. Only one thread may queue turns at a time.
+     * @param direction the direction to turn towards.
+     */
+    public void queueTurn(Direction direction) {
+        if (!inputs.offer(direction, System.nanoTime()))
+            LOGGER.finer(() -> "Input queue full, dropped " + direction);
+    }
+
+    /**
+     * Registers a listener that is notified around every call to {@link #updateGame()} that advances the game.
+     * @param listener the listener to add.
+     */
+    public void addTickListener(TickListener listener)
+    {
+        tickListeners.add(listener);
+    }
+
+    /**
+     * Removes a previously registered tick listener.
+     * @param listener the listener to remove.
+     */
+    public void removeTickListener(TickListener listener)
+    {
+        tickListeners.remove(listener);
     }
 
     /**
      * Checks for collisions and does the necessary actions
+     * @return what the head ran into: {@code "none"}, {@code "food"}, {@code "wall"} or {@code "body"}.
      */
-    private void handleCollisions() {
-        if (cd.wallCollision() || cd.bodyCollision()) {
+    private String handleCollisions() {
+        if (cd.wallCollision()) {
+            endGame();
+            return "wall";
+        } else if (cd.bodyCollision()) {
             endGame();
+            return "body";
         } else if (cd.foodCollision()) {
             snake.grow();
             score++;
-            food.spawn();
+            food.eat(snake.getSnake().get(0));
+            return "food";
         }
+        return "none";
     }
 
     /**
@@ -80,20 +210,34 @@ public class GameEngine {
         if (isRunning) {
             snake.moveBackwards();
             isRunning = false;
-            timer.stop();
-            LOGGER.info("Score: " + score);
+            if (loop != null) loop.stop();
+            LOGGER.log(lifecycleLevel, "Score: " + score);
+            logInputLatency();
         }
     }
 
+    /**
+     * Logs how long inputs waited before being applied during the game that just ended. Headless games are skipped
+     * since their inputs are applied on the same thread right away.
+     */
+    private void logInputLatency() {
+        InputQueue inputs = snake.getInputQueue();
+        if (loop == null || (inputs.getAcceptedCount() == 0 && inputs.getDroppedCount() == 0)) return;
+        LOGGER.fine(String.format("Input latency: %d inputs, avg %.1f ms, max %.1f ms, %d dropped",
+                inputs.getAcceptedCount(), inputs.getAverageLatencyNanos() / 1e6,
+                inputs.getMaxLatencyNanos() / 1e6, inputs.getDroppedCount()));
+    }
+
     /**
      * Pause and unpause game
      */
     public void togglePause() {
-        if (timer.isRunning()) {
-            timer.stop();
+        if (loop == null) return;
+        if (loop.isRunning()) {
+            loop.stop();
             LOGGER.info("Game Paused");
         } else {
-            timer.start();
+            loop.start();
             LOGGER.info("Game Resumed");
         }
 
@@ -123,6 +267,49 @@ public class GameEngine {
     {
         return food;
     }
+    /**
+     * Gets the level of the current game loop.
+     * @return The current {@code level}.
+     */
+    public LevelMap getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Sets the level used from the next game on. The snake starts at the level's first spawn point if it has one.
+     * @param level The level to play. Must match the board size in {@link Constants}.
+     * @throws IllegalArgumentException if the level is null or its size differs from the board.
+     */
+    public void setLevel(LevelMap level)
+    {
+        if (level == null || level.getCols() != Constants.NUM_COLS || level.getRows() != Constants.NUM_ROWS) {
+            throw new IllegalArgumentException("Level does not match the board size");
+        }
+        this.level = level;
+    }
+
+    /**
+     * Gets the number of ticks the snake has moved in the current game loop.
+     * @return The number of ticks played.
+     */
+    public int getTicks()
+    {
+        return ticks;
+    }
+
+    /**
+     * Creates an immutable {@link GameState} of the current game loop. The returned state can be advanced with
+     * {@link GameState#apply} to look ahead without affecting this engine.
+     * @param seed the seed used by the state to place food after the current one is eaten.
+     * @return a new state matching the current game.
+     */
+    public GameState fork(long seed)
+    {
+        return GameState.of(snake.getSnake(), snake.getDirection(), food.getPosition(), score, !isRunning, ticks,
+                seed);
+    }
+
     /**
      * Gets the {@code score} of the current game loop.
      * @return The current score.
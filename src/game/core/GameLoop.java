@@ -0,0 +1,24 @@
+package game.core;
+
+/**
+ * Drives a {@link GameEngine} by calling {@link GameEngine#updateGame()} at a steady rate. The engine only uses the
+ * loop to start, stop and query it, so the game can be run by a Swing timer, by a dedicated simulation thread or by
+ * anything else that ticks.
+ */
+public interface GameLoop {
+    /**
+     * Starts or resumes ticking. Calling this while the loop is running has no effect.
+     */
+    void start();
+
+    /**
+     * Stops ticking until {@link #start()} is called again. Calling this while the loop is stopped has no effect.
+     */
+    void stop();
+
+    /**
+     * Returns {@code true} if the loop is currently ticking.
+     * @return true if the loop is running, false otherwise.
+     */
+    boolean isRunning();
+}
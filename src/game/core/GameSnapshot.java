@@ -0,0 +1,260 @@
+package game.core;
+
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A copy of everything needed to draw one frame of the game: the body cells, the food, the score and whether the game
+ * has ended. Snapshots are filled in by the simulation thread and then handed to the user interface through a
+ * {@link SnapshotBuffer}, so painting never reads the live {@link Snake} or {@link Food}.
+ * <p>
+ *     Snapshots are pooled rather than created every tick. Once published, a snapshot is not changed again until the
+ *     reader has handed it back, so from the reader's point of view it is immutable.
+ * </p>
+ */
+public class GameSnapshot {
+    /** Column of each body cell, ordered from head to tail. */
+    private final int[] bodyX;
+
+    /** Row of each body cell, ordered from head to tail. */
+    private final int[] bodyY;
+
+    /** Number of body cells in use. */
+    private int length;
+
+    /** Cells holding food. The first {@code foodCount} entries are used. */
+    private final int[] foodCells;
+
+    /** Number of food items. */
+    private int foodCount;
+
+    /** Column of the food nearest to the head. */
+    private int foodX;
+
+    /** Row of the food nearest to the head. */
+    private int foodY;
+
+    /** Level of the game, shared with the engine since levels never change. */
+    private LevelMap level;
+
+    /** Score of the game. */
+    private int score;
+
+    /** Number of ticks played. */
+    private int ticks;
+
+    /** {@code true} if the game has ended. */
+    private boolean ended;
+
+    /** Direction the snake is moving in. */
+    private Direction direction = Direction.RIGHT;
+
+    /** {@code true} if this snapshot was published and not yet picked up by the reader. */
+    boolean fresh;
+
+    /**
+     * Creates an empty snapshot with room for a snake covering the whole board.
+     */
+    GameSnapshot() {
+        bodyX = new int[Constants.NUM_COLS * Constants.NUM_ROWS];
+        bodyY = new int[Constants.NUM_COLS * Constants.NUM_ROWS];
+        foodCells = new int[Constants.NUM_COLS * Constants.NUM_ROWS];
+    }
+
+    /**
+     * Creates a snapshot of a made up game, for drawing snakes that could not occur on the real board, such as when
+     * benchmarking the renderers. The body may extend past the board; the food must lie on it.
+     * @param bodyX the column of each body cell, ordered from head to tail.
+     * @param bodyY the row of each body cell, ordered from head to tail.
+     * @param length the number of body cells, at least {@code 2}.
+     * @param foodCells the cells ({@code y * cols + x}, see {@link #getCols()}) holding food.
+     * @param level the level to draw, or {@code null} for none.
+     * @return a snapshot of the made up game.
+     * @throws IllegalArgumentException if the snake is shorter than two cells or longer than the arrays.
+     */
+    public static GameSnapshot of(int[] bodyX, int[] bodyY, int length, int[] foodCells, LevelMap level) {
+        if (length < 2 || length > bodyX.length || length > bodyY.length) {
+            throw new IllegalArgumentException("The snake must have between 2 and " + bodyX.length + " cells");
+        }
+        GameSnapshot snapshot = new GameSnapshot(Arrays.copyOf(bodyX, length), Arrays.copyOf(bodyY, length),
+                foodCells.clone());
+        snapshot.length = length;
+        snapshot.foodCount = foodCells.length;
+        snapshot.level = level;
+        int best = Integer.MAX_VALUE;
+        snapshot.foodX = bodyX[0];
+        snapshot.foodY = bodyY[0];
+        int cols = snapshot.getCols();
+        for (int cell : foodCells) {
+            int x = cell % cols;
+            int y = cell / cols;
+            int distance = Math.abs(x - bodyX[0]) + Math.abs(y - bodyY[0]);
+            if (distance < best) {
+                best = distance;
+                snapshot.foodX = x;
+                snapshot.foodY = y;
+            }
+        }
+        int dx = bodyX[0] - bodyX[1];
+        int dy = bodyY[0] - bodyY[1];
+        snapshot.direction = dx > 0 ? Direction.RIGHT : dx < 0 ? Direction.LEFT : dy > 0 ? Direction.DOWN : Direction.UP;
+        return snapshot;
+    }
+
+    /**
+     * Creates a snapshot around the given arrays.
+     * @hidden
+     */
+    private GameSnapshot(int[] bodyX, int[] bodyY, int[] foodCells) {
+        this.bodyX = bodyX;
+        this.bodyY = bodyY;
+        this.foodCells = foodCells;
+    }
+
+    /**
+     * Copies the current state of the engine into this snapshot. Must be called on the thread that updates the engine.
+     * @param gameEngine the engine to copy.
+     */
+    void copyFrom(GameEngine gameEngine) {
+        Snake snake = gameEngine.getSnake();
+        List<Point> body = snake.getSnake();
+        length = body.size();
+        for (int i = 0; i < length; i++) {
+            Point p = body.get(i);
+            bodyX[i] = p.x;
+            bodyY[i] = p.y;
+        }
+        Food food = gameEngine.getFood();
+        foodCount = food.getCount();
+        for (int i = 0; i < foodCount; i++)
+            foodCells[i] = food.getCell(i);
+        // The nearest food is found here so that painting the eyes needs no search
+        int nearest = food.getNearestCell();
+        foodX = nearest < 0 ? bodyX[0] : nearest % Constants.NUM_COLS;
+        foodY = nearest < 0 ? bodyY[0] : nearest / Constants.NUM_COLS;
+        level = gameEngine.getLevel();
+        score = gameEngine.getScore();
+        ticks = gameEngine.getTicks();
+        ended = gameEngine.hasEnded();
+        direction = snake.getDirection();
+    }
+
+    /**
+     * Gets the number of segments in the snake.
+     * @return the length of the snake.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the column of a body segment.
+     * @param i the index of the segment, where {@code 0} is the head.
+     * @return the column of the segment.
+     */
+    public int getX(int i) {
+        return bodyX[i];
+    }
+
+    /**
+     * Gets the row of a body segment.
+     * @param i the index of the segment, where {@code 0} is the head.
+     * @return the row of the segment.
+     */
+    public int getY(int i) {
+        return bodyY[i];
+    }
+
+    /**
+     * Gets the column of the food nearest to the head.
+     * @return the column of the food, or of the head if there is no food.
+     */
+    public int getFoodX() {
+        return foodX;
+    }
+
+    /**
+     * Gets the row of the food nearest to the head.
+     * @return the row of the food, or of the head if there is no food.
+     */
+    public int getFoodY() {
+        return foodY;
+    }
+
+    /**
+     * Gets the number of food items on the board.
+     * @return the number of food items.
+     */
+    public int getFoodCount() {
+        return foodCount;
+    }
+
+    /**
+     * Gets the cell index ({@code y * cols + x}, see {@link #getCols()}) of a food item.
+     * @param i the index of the food item, less than {@link #getFoodCount()}.
+     * @return the cell of the food.
+     */
+    public int getFoodCell(int i) {
+        return foodCells[i];
+    }
+
+    /**
+     * Gets the level of the game.
+     * @return the level, or {@code null} if nothing has been published yet.
+     */
+    public LevelMap getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the number of columns on the board, which is what food cells are numbered by.
+     * @return the number of columns of the level, or {@link Constants#NUM_COLS} if there is none.
+     */
+    public int getCols() {
+        return level == null ? Constants.NUM_COLS : level.getCols();
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     * @return the number of rows of the level, or {@link Constants#NUM_ROWS} if there is none.
+     */
+    public int getRows() {
+        return level == null ? Constants.NUM_ROWS : level.getRows();
+    }
+
+    /**
+     * Gets the score of the game.
+     * @return the number of food items eaten.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the number of ticks played.
+     * @return the number of ticks.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Returns {@code true} if the game had ended when this snapshot was taken.
+     * @return true if the game has ended, false otherwise.
+     */
+    public boolean hasEnded() {
+        return ended;
+    }
+
+    /**
+     * Gets the direction the snake is moving in.
+     * @return the current direction.
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+}
@@ -0,0 +1,402 @@
+package game.core;
+
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable snapshot of a game that can be advanced without touching the live {@link GameEngine}. Every call to
+ * {@link #apply(Direction)} returns a new {@code GameState} and leaves the original untouched, which allows search
+ * based controllers to explore "what if" moves from the same starting point.
+ * <p>
+ *     The board is stored as a two level persistent array of 4-bit cells. A cell is either empty, the head, or a body
+ *     segment that holds the direction towards the next segment closer to the head. Advancing a state only copies the
+ *     small root array and the pages that hold the new head, the old head and the old tail, so a fork costs a handful
+ *     of words no matter how long the snake is. All states produced from one another share every untouched page.
+ * </p><p>
+ *     The rules match {@link GameEngine#updateGame()}: the tail is removed before collisions are checked, a collision
+ *     ends the game without moving the snake, and eating food grows the snake, increments the score and spawns new food
+ *     on a random free cell. Food placement uses a random generator carried inside the state so the same state and
+ *     direction always produce the same result.
+ * </p>
+ */
+public final class GameState {
+    /** Number of bits used to store each cell. */
+    private static final int CELL_BITS = 4;
+
+    /** Number of cells stored in a single {@code long}. */
+    private static final int CELLS_PER_WORD = Long.SIZE / CELL_BITS;
+
+    /** Number of {@code long} words held by each page. */
+    private static final int WORDS_PER_PAGE = 8;
+
+    /** Number of cells stored in a single page. */
+    private static final int CELLS_PER_PAGE = CELLS_PER_WORD * WORDS_PER_PAGE;
+
+    /** Cell value of an empty cell. Body cells use {@code 1 + Direction.ordinal()} as the link to the next segment. */
+    private static final int EMPTY = 0;
+
+    /** Cell value of the snake's head. */
+    private static final int HEAD = 5;
+
+    /** Total number of cells on the board. */
+    private static final int NUM_CELLS = Constants.NUM_COLS * Constants.NUM_ROWS;
+
+    /** Increment used by the SplitMix64 generator that places food. */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** Shared direction values to avoid copying the array on every lookup. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Pages of packed cells. Pages are never modified once a state has been published. */
+    private final long[][] pages;
+
+    /** Cell index of the head. */
+    private final int head;
+
+    /** Cell index of the last segment of the body. */
+    private final int tail;
+
+    /** Number of segments in the body. */
+    private final int length;
+
+    /** Direction the snake moved on the last tick. */
+    private final Direction direction;
+
+    /** Cell index of the food, or {@code -1} if the board is full. */
+    private final int food;
+
+    /** Score of the game. */
+    private final int score;
+
+    /** {@code true} if the snake has collided with a wall or itself. */
+    private final boolean ended;
+
+    /** Number of ticks that have been applied since the start of the game. */
+    private final int ticks;
+
+    /** State of the random generator used to place the next food. */
+    private final long seed;
+
+    /**
+     * Creates a new state from already computed components.
+     * @hidden
+     */
+    private GameState(long[][] pages, int head, int tail, int length, Direction direction, int food, int score,
+                      boolean ended, int ticks, long seed) {
+        this.pages = pages;
+        this.head = head;
+        this.tail = tail;
+        this.length = length;
+        this.direction = direction;
+        this.food = food;
+        this.score = score;
+        this.ended = ended;
+        this.ticks = ticks;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the starting state of a game based on the values in the {@link Constants} class.
+     * @param seed the seed used to place food after the first one is eaten.
+     * @return a new game ready state.
+     */
+    public static GameState initial(long seed) {
+        List<Point> body = new ArrayList<>();
+        for (int i = 0; i < Constants.SNAKE_INITIAL_LENGTH; i++)
+            body.add(new Point(Constants.SNAKE_INITIAL_POSITION.x - i, Constants.SNAKE_INITIAL_POSITION.y));
+        return of(body, Direction.RIGHT, Constants.FOOD_INITIAL_POSITION, 0, false, 0, seed);
+    }
+
+    /**
+     * Creates a state from the components of a live game.
+     * @param body the cells of the snake ordered from head to tail. Must contain at least one cell.
+     * @param direction the direction the snake is currently moving in.
+     * @param food the position of the food.
+     * @param score the current score.
+     * @param ended {@code true} if the game has ended.
+     * @param ticks the number of ticks played so far.
+     * @param seed the seed used to place the next food.
+     * @return a state matching the given components.
+     * @throws IllegalArgumentException if the body is empty or any of its cells are outside the board.
+     */
+    static GameState of(List<Point> body, Direction direction, Point food, int score, boolean ended, int ticks,
+                        long seed) {
+        if (body.isEmpty())
+            throw new IllegalArgumentException("The body must contain at least one cell");
+
+        long[][] pages = new long[(NUM_CELLS + CELLS_PER_PAGE - 1) / CELLS_PER_PAGE][WORDS_PER_PAGE];
+        int prev = -1;
+        for (Point p : body) {
+            if (!inBounds(p.x, p.y))
+                throw new IllegalArgumentException("Body cell outside of the board: " + p);
+            int cell = index(p.x, p.y);
+            // Each segment links towards the segment in front of it
+            set(pages, cell, prev == -1 ? HEAD : 1 + linkTowards(cell, prev).ordinal());
+            prev = cell;
+        }
+        Point first = body.get(0);
+        int foodCell = food == null ? -1 : index(food.x, food.y);
+        return new GameState(pages, index(first.x, first.y), prev, body.size(), direction, foodCell, score, ended,
+                ticks, seed);
+    }
+
+    /**
+     * Advances the game by one tick in the given direction and returns the resulting state. The current state is not
+     * modified. A direction opposite to the current one is ignored, the same way {@link Snake#changeDirection} ignores
+     * it, and a {@code null} direction keeps the current one.
+     * @param desiredDirection the direction to attempt to move in.
+     * @return the state after the tick, or this state if the game has already ended.
+     */
+    public GameState apply(Direction desiredDirection) {
+        if (ended)
+            return this;
+
+        Direction dir = (desiredDirection == null || desiredDirection == opposite(direction))
+                ? direction : desiredDirection;
+        int x = head % Constants.NUM_COLS;
+        int y = head / Constants.NUM_COLS;
+        switch (dir) {
+            case UP -> y -= 1;
+            case DOWN -> y += 1;
+            case LEFT -> x -= 1;
+            case RIGHT -> x += 1;
+        }
+
+        // A collision leaves the body where it was, matching Snake#moveBackwards
+        if (!inBounds(x, y))
+            return new GameState(pages, head, tail, length, dir, food, score, true, ticks + 1, seed);
+        int newHead = index(x, y);
+        if (newHead != tail && get(pages, newHead) != EMPTY)
+            return new GameState(pages, head, tail, length, dir, food, score, true, ticks + 1, seed);
+
+        boolean eats = newHead == food;
+        long[][] next = pages.clone();
+        int newTail = tail;
+        set(copyPage(next, head), head, 1 + dir.ordinal());
+        if (!eats) {
+            newTail = length == 1 ? newHead : step(tail, DIRECTIONS[get(pages, tail) - 1]);
+            set(copyPage(next, tail), tail, EMPTY);
+        }
+        set(copyPage(next, newHead), newHead, HEAD);
+
+        if (!eats)
+            return new GameState(next, newHead, newTail, length, dir, food, score, false, ticks + 1, seed);
+
+        long nextSeed = seed + GOLDEN_GAMMA;
+        int newLength = length + 1;
+        int newFood = pickFreeCell(next, NUM_CELLS - newLength, mix(nextSeed));
+        return new GameState(next, newHead, newTail, newLength, dir, newFood == -1 ? food : newFood, score + 1,
+                false, ticks + 1, nextSeed);
+    }
+
+    /**
+     * Returns {@code true} if the game has ended.
+     * @return true if the snake has collided with a wall or itself, false otherwise.
+     */
+    public boolean hasEnded() {
+        return ended;
+    }
+
+    /**
+     * Gets the score of this state.
+     * @return the number of food items eaten.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the number of ticks applied since the start of the game.
+     * @return the number of ticks.
+     */
+    public int getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the number of segments in the snake's body.
+     * @return the length of the snake.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the direction the snake is currently moving in.
+     * @return the current direction.
+     */
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Gets the position of the snake's head.
+     * @return a new {@code Point} at the head.
+     */
+    public Point getHead() {
+        return new Point(head % Constants.NUM_COLS, head / Constants.NUM_COLS);
+    }
+
+    /**
+     * Gets the position of the last segment of the snake's body.
+     * @return a new {@code Point} at the tail.
+     */
+    public Point getTail() {
+        return new Point(tail % Constants.NUM_COLS, tail / Constants.NUM_COLS);
+    }
+
+    /**
+     * Gets the position of the food.
+     * @return a new {@code Point} at the food.
+     */
+    public Point getFood() {
+        return new Point(food % Constants.NUM_COLS, food / Constants.NUM_COLS);
+    }
+
+    /**
+     * Checks whether the given cell is part of the snake's body.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if the snake occupies the cell, false if it is empty or outside of the board.
+     */
+    public boolean isOccupied(int x, int y) {
+        return inBounds(x, y) && get(pages, index(x, y)) != EMPTY;
+    }
+
+    /**
+     * Builds the list of cells occupied by the snake ordered from head to tail. This walks the whole body so it should
+     * not be used inside a search loop.
+     * @return a new list representing the snake.
+     */
+    public List<Point> getBody() {
+        Point[] cells = new Point[length];
+        int cell = tail;
+        for (int i = length - 1; i >= 0; i--) {
+            cells[i] = new Point(cell % Constants.NUM_COLS, cell / Constants.NUM_COLS);
+            int value = get(pages, cell);
+            if (value != HEAD)
+                cell = step(cell, DIRECTIONS[value - 1]);
+        }
+        return List.of(cells);
+    }
+
+    /**
+     * Selects the {@code k}-th free cell where {@code k} is derived from the given random value.
+     * @param pages the pages to search.
+     * @param free the number of free cells on the board.
+     * @param random a random value.
+     * @return the index of the chosen cell, or {@code -1} if the board is full.
+     */
+    private static int pickFreeCell(long[][] pages, int free, long random) {
+        if (free <= 0)
+            return -1;
+        int k = (int) Long.remainderUnsigned(random, free);
+        for (int cell = 0; cell < NUM_CELLS; cell++) {
+            if (get(pages, cell) == EMPTY && k-- == 0)
+                return cell;
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the page holding the given cell with a private copy, unless it has already been copied for this tick.
+     * @param pages the root array of the state being built.
+     * @param cell the cell that is about to be written.
+     * @return the root array, for chaining.
+     */
+    private long[][] copyPage(long[][] pages, int cell) {
+        int page = cell / CELLS_PER_PAGE;
+        if (pages[page] == this.pages[page])
+            pages[page] = pages[page].clone();
+        return pages;
+    }
+
+    /**
+     * Reads the value of a cell.
+     * @hidden
+     */
+    private static int get(long[][] pages, int cell) {
+        long word = pages[cell / CELLS_PER_PAGE][(cell % CELLS_PER_PAGE) / CELLS_PER_WORD];
+        return (int) (word >>> ((cell % CELLS_PER_WORD) * CELL_BITS)) & 0xF;
+    }
+
+    /**
+     * Writes the value of a cell in place.
+     * @hidden
+     */
+    private static void set(long[][] pages, int cell, int value) {
+        long[] page = pages[cell / CELLS_PER_PAGE];
+        int word = (cell % CELLS_PER_PAGE) / CELLS_PER_WORD;
+        int shift = (cell % CELLS_PER_WORD) * CELL_BITS;
+        page[word] = (page[word] & ~(0xFL << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * Finds the direction that leads from one cell to an adjacent one.
+     * @hidden
+     */
+    private static Direction linkTowards(int from, int to) {
+        int diff = to - from;
+        if (diff == 1) return Direction.RIGHT;
+        if (diff == -1) return Direction.LEFT;
+        if (diff == Constants.NUM_COLS) return Direction.DOWN;
+        if (diff == -Constants.NUM_COLS) return Direction.UP;
+        throw new IllegalArgumentException("Body cells must be adjacent");
+    }
+
+    /**
+     * Returns the index of the cell next to the given one in the given direction.
+     * @hidden
+     */
+    private static int step(int cell, Direction dir) {
+        return switch (dir) {
+            case UP -> cell - Constants.NUM_COLS;
+            case DOWN -> cell + Constants.NUM_COLS;
+            case LEFT -> cell - 1;
+            case RIGHT -> cell + 1;
+        };
+    }
+
+    /**
+     * @return the opposite direction to the given direction.
+     * @param direction the given direction.
+     */
+    private static Direction opposite(Direction direction) {
+        return switch (direction) {
+            case UP -> Direction.DOWN;
+            case DOWN -> Direction.UP;
+            case LEFT -> Direction.RIGHT;
+            case RIGHT -> Direction.LEFT;
+        };
+    }
+
+    /**
+     * Returns {@code true} if the given coordinates are on the board.
+     * @hidden
+     */
+    private static boolean inBounds(int x, int y) {
+        return x >= 0 && x < Constants.NUM_COLS && y >= 0 && y < Constants.NUM_ROWS;
+    }
+
+    /**
+     * Converts a column and row into a cell index.
+     * @hidden
+     */
+    private static int index(int x, int y) {
+        return y * Constants.NUM_COLS + x;
+    }
+
+    /**
+     * The SplitMix64 output function.
+     * @hidden
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
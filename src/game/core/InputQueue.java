@@ -0,0 +1,166 @@
+package game.core;
+
+import game.utils.Direction;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of timestamped direction inputs for exactly one producer thread and one consumer thread.
+ * Key presses are offered by the thread that handles input and drained by the thread that runs the game loop, so the
+ * two never wait on each other. If the queue is full, the newest input is dropped and counted.
+ * <p>
+ *     Each input keeps the {@link System#nanoTime()} at which it was offered. When the consumer accepts an input it
+ *     records how long the input waited, which gives the input-to-tick latency of the game.
+ * </p>
+ * Slots are plain arrays. The producer publishes a slot by advancing {@code tail} with a release store after writing
+ * it, and the consumer frees a slot by advancing {@code head} the same way after reading it.
+ */
+public class InputQueue {
+    /** Shared direction values to avoid copying the array on every poll. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Used to wrap sequence numbers into slot indices. */
+    private final int mask;
+
+    /** Direction ordinal of each slot. */
+    private final byte[] directions;
+
+    /** Time each slot was offered at, in nanoseconds. */
+    private final long[] timestamps;
+
+    /** Sequence number of the next slot to read. Only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Sequence number of the next slot to write. Only written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Number of inputs dropped because the queue was full. Only written by the producer. */
+    private volatile long dropped;
+
+    /** Number of inputs accepted by the consumer. */
+    private long accepted;
+
+    /** Total time accepted inputs spent waiting, in nanoseconds. */
+    private long totalLatency;
+
+    /** Longest time an accepted input spent waiting, in nanoseconds. */
+    private long maxLatency;
+
+    /** Time the last polled input was offered at, in nanoseconds. */
+    private long polledTimestamp;
+
+    /**
+     * Creates a queue that holds up to the given number of inputs.
+     * @param capacity the maximum number of pending inputs. Must be a power of two.
+     * @throws IllegalArgumentException if {@code capacity} is not a positive power of two.
+     */
+    public InputQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a positive power of two");
+        }
+        mask = capacity - 1;
+        directions = new byte[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Adds an input to the queue. Must only be called from the producer thread.
+     * @param direction the direction that was pressed.
+     * @param timestamp the {@link System#nanoTime()} at which it was pressed.
+     * @return true if the input was queued, false if the queue was full and it was dropped.
+     */
+    public boolean offer(Direction direction, long timestamp) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) t & mask;
+        directions[slot] = (byte) direction.ordinal();
+        timestamps[slot] = timestamp;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest input from the queue. Must only be called from the consumer thread. The time the input was
+     * offered at can be read with {@link #polledTimestamp()}.
+     * @return the oldest direction, or {@code null} if the queue is empty.
+     */
+    public Direction poll() {
+        long h = head.get();
+        if (h == tail.get())
+            return null;
+        int slot = (int) h & mask;
+        Direction direction = DIRECTIONS[directions[slot]];
+        polledTimestamp = timestamps[slot];
+        head.lazySet(h + 1);
+        return direction;
+    }
+
+    /**
+     * Gets the time the input returned by the last {@link #poll()} was offered at.
+     * @return the timestamp in nanoseconds.
+     */
+    public long polledTimestamp() {
+        return polledTimestamp;
+    }
+
+    /**
+     * Records that the last polled input was applied at the given time. Must only be called from the consumer thread.
+     * @param now the current {@link System#nanoTime()}.
+     */
+    public void recordAccepted(long now) {
+        long latency = now - polledTimestamp;
+        accepted++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+    }
+
+    /**
+     * Removes every pending input. Must only be called from the consumer thread.
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    /**
+     * Gets the number of inputs waiting in the queue.
+     * @return the number of pending inputs.
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Gets the number of inputs dropped because the queue was full.
+     * @return the number of dropped inputs.
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Gets the number of inputs that were applied to the snake.
+     * @return the number of accepted inputs.
+     */
+    public long getAcceptedCount() {
+        return accepted;
+    }
+
+    /**
+     * Gets the average time between an input being offered and it being applied.
+     * @return the average latency in nanoseconds, or {@code 0} if no input has been applied.
+     */
+    public long getAverageLatencyNanos() {
+        return accepted == 0 ? 0 : totalLatency / accepted;
+    }
+
+    /**
+     * Gets the longest time between an input being offered and it being applied.
+     * @return the maximum latency in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatency;
+    }
+}
@@ -0,0 +1,536 @@
+package game.core;
+
+import game.LoggerSetup;
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * The layout of a board: its size, the walls inside it and the cells snakes start on. A level is compiled into a wall
+ * bitmap when it is loaded, with bit {@code y * cols + x} of the {@code long} words set for every wall, so checking a
+ * cell is a single bit test and collision checks, food spawning and the background renderer all share the same bitmap.
+ * Levels are immutable and may be shared between threads.
+ * <p>
+ *     Levels are stored in a big-endian binary file containing {@link #MAGIC}, {@link #VERSION}, the number of columns
+ *     and rows, the number of spawn points, each spawn point as a cell index and a direction ordinal, an encoding byte
+ *     and then the walls. With {@link #ENCODING_RUNS} the walls are run lengths alternating between open cells and
+ *     walls in row order, starting with open cells, each written as an unsigned variable length integer of 7 bits per
+ *     byte. With {@link #ENCODING_BITMAP} they are the words of the bitmap itself. {@link #save(Path)} picks whichever
+ *     is smaller, so open arenas take a few bytes and dense mazes at most one bit per cell. {@link #load(Path)} maps
+ *     the file into memory and either fills whole words per run or copies the bitmap in bulk, so even very large maps
+ *     load in milliseconds.
+ * </p>
+ */
+public final class LevelMap {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(LevelMap.class.getName());
+
+    /** Marks the start of a level file. The bytes spell "SNKL". */
+    public static final int MAGIC = 0x534E4B4C;
+
+    /** Version of the level file format. */
+    public static final int VERSION = 1;
+
+    /** Walls are stored as alternating runs of open cells and walls. */
+    public static final byte ENCODING_RUNS = 0;
+
+    /** Walls are stored as the words of the bitmap. */
+    public static final byte ENCODING_BITMAP = 1;
+
+    /** Shared direction values to avoid copying the array for every spawn point. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** Number of columns on the board. */
+    private final int cols;
+
+    /** Number of rows on the board. */
+    private final int rows;
+
+    /** Wall bitmap with one bit per cell. */
+    private final long[] walls;
+
+    /** Number of wall cells. */
+    private final int wallCount;
+
+    /** Cell of each spawn point. */
+    private final int[] spawnCells;
+
+    /** Direction a snake faces at each spawn point. */
+    private final Direction[] spawnDirections;
+
+    /**
+     * Creates a level from a compiled wall bitmap.
+     * @hidden
+     */
+    private LevelMap(int cols, int rows, long[] walls, int[] spawnCells, Direction[] spawnDirections) {
+        this.cols = cols;
+        this.rows = rows;
+        this.walls = walls;
+        this.spawnCells = spawnCells;
+        this.spawnDirections = spawnDirections;
+        int count = 0;
+        for (long word : walls)
+            count += Long.bitCount(word);
+        this.wallCount = count;
+    }
+
+    /**
+     * Creates a level with no walls and no spawn points.
+     * @param cols number of columns on the board.
+     * @param rows number of rows on the board.
+     * @return an open level.
+     * @throws IllegalArgumentException if either dimension is not positive.
+     */
+    public static LevelMap empty(int cols, int rows) {
+        checkSize(cols, rows);
+        return new LevelMap(cols, rows, new long[words(cols, rows)], new int[0], new Direction[0]);
+    }
+
+    /**
+     * Creates a level from text, one string per row. {@code '#'} marks a wall, {@code '^'}, {@code 'v'}, {@code '<'}
+     * and {@code '>'} mark spawn points facing up, down, left and right, and any other character is an open cell.
+     * Spawn points are numbered in row order.
+     * @param lines the rows of the level, all of the same length.
+     * @return the level.
+     * @throws IllegalArgumentException if there are no rows, the rows differ in length or a spawn point has no room for
+     *                                  a new snake.
+     */
+    public static LevelMap parse(String... lines) {
+        if (lines.length == 0 || lines[0].isEmpty()) {
+            throw new IllegalArgumentException("A level needs at least one row and column");
+        }
+        int cols = lines[0].length();
+        int rows = lines.length;
+        long[] walls = new long[words(cols, rows)];
+        List<Integer> cells = new ArrayList<>();
+        List<Direction> directions = new ArrayList<>();
+        for (int y = 0; y < rows; y++) {
+            if (lines[y].length() != cols) {
+                throw new IllegalArgumentException("Row " + y + " has " + lines[y].length() + " cells, expected " + cols);
+            }
+            for (int x = 0; x < cols; x++) {
+                int cell = y * cols + x;
+                Direction dir = switch (lines[y].charAt(x)) {
+                    case '^' -> Direction.UP;
+                    case 'v' -> Direction.DOWN;
+                    case '<' -> Direction.LEFT;
+                    case '>' -> Direction.RIGHT;
+                    default -> null;
+                };
+                if (lines[y].charAt(x) == '#') {
+                    walls[cell >>> 6] |= 1L << cell;
+                } else if (dir != null) {
+                    cells.add(cell);
+                    directions.add(dir);
+                }
+            }
+        }
+        int[] spawnCells = cells.stream().mapToInt(Integer::intValue).toArray();
+        Direction[] spawnDirections = directions.toArray(new Direction[0]);
+        checkSpawns(cols, rows, walls, spawnCells, spawnDirections);
+        return new LevelMap(cols, rows, walls, spawnCells, spawnDirections);
+    }
+
+    /**
+     * Maps a level file into memory and compiles it.
+     * @param path the file to load.
+     * @return the level.
+     * @throws IOException if the file cannot be read or is not a valid level file.
+     */
+    public static LevelMap load(Path path) throws IOException {
+        long start = System.nanoTime();
+        LevelMap level;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            level = read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Invalid level file: " + path, e);
+        }
+        LOGGER.fine(String.format("Loaded %dx%d level with %d walls from %s in %.2f ms", level.cols, level.rows,
+                level.wallCount, path, (System.nanoTime() - start) / 1e6));
+        return level;
+    }
+
+    /**
+     * Compiles a level from the contents of a level file.
+     * @hidden
+     */
+    private static LevelMap read(ByteBuffer in) {
+        if (in.remaining() < 2 * Integer.BYTES || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IllegalArgumentException("Not a level file");
+        }
+        int cols = in.getInt();
+        int rows = in.getInt();
+        checkSize(cols, rows);
+        int cells = cols * rows;
+        int spawnCount = in.getInt();
+        if (spawnCount < 0 || spawnCount > cells) {
+            throw new IllegalArgumentException("Invalid number of spawn points " + spawnCount);
+        }
+        int[] spawnCells = new int[spawnCount];
+        Direction[] spawnDirections = new Direction[spawnCells.length];
+        for (int i = 0; i < spawnCells.length; i++) {
+            spawnCells[i] = in.getInt();
+            int ordinal = in.get();
+            if (spawnCells[i] < 0 || spawnCells[i] >= cells || ordinal < 0 || ordinal >= DIRECTIONS.length) {
+                throw new IllegalArgumentException("Invalid spawn point " + i);
+            }
+            spawnDirections[i] = DIRECTIONS[ordinal];
+        }
+
+        long[] walls = new long[words(cols, rows)];
+        byte encoding = in.get();
+        if (encoding == ENCODING_BITMAP) {
+            in.asLongBuffer().get(walls);
+            int used = cells % Long.SIZE;
+            if (used != 0 && (walls[walls.length - 1] & (-1L << used)) != 0) {
+                throw new IllegalArgumentException("Walls extend past the board");
+            }
+            checkSpawns(cols, rows, walls, spawnCells, spawnDirections);
+            return new LevelMap(cols, rows, walls, spawnCells, spawnDirections);
+        } else if (encoding != ENCODING_RUNS) {
+            throw new IllegalArgumentException("Unknown wall encoding " + encoding);
+        }
+        int cell = 0;
+        boolean wall = false;
+        while (cell < cells) {
+            int run = readRun(in);
+            // A five byte run can decode to a negative length
+            if (run < 0 || run > cells - cell) {
+                throw new IllegalArgumentException("Wall runs extend past the board");
+            }
+            if (wall)
+                fill(walls, cell, cell + run);
+            cell += run;
+            wall = !wall;
+        }
+        checkSpawns(cols, rows, walls, spawnCells, spawnDirections);
+        return new LevelMap(cols, rows, walls, spawnCells, spawnDirections);
+    }
+
+    /**
+     * Checks that a new snake fits at every spawn point: the head and the {@link Constants#SNAKE_INITIAL_LENGTH} cells
+     * of the body laid out behind it, against the spawn direction, must be on the board and clear of walls, and so must
+     * the cell the snake moves into first.
+     * @throws IllegalArgumentException if a spawn point has no room for a snake.
+     * @hidden
+     */
+    private static void checkSpawns(int cols, int rows, long[] walls, int[] spawnCells, Direction[] spawnDirections) {
+        for (int i = 0; i < spawnCells.length; i++) {
+            Direction dir = spawnDirections[i];
+            int dx = dir == Direction.RIGHT ? 1 : dir == Direction.LEFT ? -1 : 0;
+            int dy = dir == Direction.DOWN ? 1 : dir == Direction.UP ? -1 : 0;
+            int x = spawnCells[i] % cols;
+            int y = spawnCells[i] / cols;
+            // Step -1 is the cell ahead of the head, step 0 the head and the rest the body
+            for (int step = -1; step < Constants.SNAKE_INITIAL_LENGTH; step++) {
+                int cx = x - step * dx;
+                int cy = y - step * dy;
+                int cell = cy * cols + cx;
+                if (cx < 0 || cx >= cols || cy < 0 || cy >= rows || (walls[cell >>> 6] & 1L << cell) != 0) {
+                    throw new IllegalArgumentException("Spawn point " + i + " has no room for a snake facing " + dir);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the level in the binary level format, storing the walls as runs or as a bitmap, whichever is smaller.
+     * @param path the file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(cols);
+            out.writeInt(rows);
+            out.writeInt(spawnCells.length);
+            for (int i = 0; i < spawnCells.length; i++) {
+                out.writeInt(spawnCells[i]);
+                out.writeByte(spawnDirections[i].ordinal());
+            }
+            if (runBytes() > (long) walls.length * Long.BYTES) {
+                out.writeByte(ENCODING_BITMAP);
+                for (long word : walls)
+                    out.writeLong(word);
+                return;
+            }
+            out.writeByte(ENCODING_RUNS);
+            int cell = 0;
+            boolean wall = false;
+            while (cell < cols * rows) {
+                int end = runEnd(cell, wall);
+                writeRun(out, end - cell);
+                cell = end;
+                wall = !wall;
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes needed to store the walls as runs.
+     * @hidden
+     */
+    private long runBytes() {
+        long bytes = 0;
+        int cell = 0;
+        boolean wall = false;
+        while (cell < cols * rows) {
+            int end = runEnd(cell, wall);
+            bytes += (Integer.SIZE - Integer.numberOfLeadingZeros(end - cell) + 6) / 7 + (end == cell ? 1 : 0);
+            cell = end;
+            wall = !wall;
+        }
+        return bytes;
+    }
+
+    /**
+     * Finds the end of the run starting at {@code from}, a word at a time.
+     * @hidden
+     * @param wall {@code true} if the run is made of walls, {@code false} if it is made of open cells.
+     * @return the first cell after the run.
+     */
+    private int runEnd(int from, boolean wall) {
+        int cells = cols * rows;
+        if (from >= cells)
+            return cells;
+        int w = from >>> 6;
+        long word = (wall ? ~walls[w] : walls[w]) & (-1L << from);
+        while (word == 0) {
+            if (++w == walls.length)
+                return cells;
+            word = wall ? ~walls[w] : walls[w];
+        }
+        return Math.min(cells, w * Long.SIZE + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Checks whether a cell is a wall. Cells off the board count as walls.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if the cell is a wall or off the board, false otherwise.
+     */
+    public boolean isWall(int x, int y) {
+        return x < 0 || x >= cols || y < 0 || y >= rows || isWall(y * cols + x);
+    }
+
+    /**
+     * Checks whether a cell on the board is a wall.
+     * @param cell the cell index, {@code y * cols + x}.
+     * @return true if the cell is a wall, false otherwise.
+     */
+    public boolean isWall(int cell) {
+        return (walls[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Gets one word of the wall bitmap, where bit {@code cell & 63} of word {@code cell >>> 6} is set for each wall.
+     * @param w the index of the word.
+     * @return the walls of cells {@code 64 * w} to {@code 64 * w + 63}.
+     */
+    public long getWallWord(int w) {
+        return walls[w];
+    }
+
+    /**
+     * Gets the number of words in the wall bitmap.
+     * @return the number of {@code long} words.
+     */
+    public int getWallWords() {
+        return walls.length;
+    }
+
+    /**
+     * Gets the number of wall cells.
+     * @return the number of walls.
+     */
+    public int getWallCount() {
+        return wallCount;
+    }
+
+    /**
+     * Gets the number of columns on the board.
+     * @return the number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of spawn points.
+     * @return the number of spawn points.
+     */
+    public int getSpawnCount() {
+        return spawnCells.length;
+    }
+
+    /**
+     * Gets the cell of a spawn point.
+     * @param i the index of the spawn point.
+     * @return the cell index, {@code y * cols + x}.
+     */
+    public int getSpawnCell(int i) {
+        return spawnCells[i];
+    }
+
+    /**
+     * Gets the direction a snake faces at a spawn point.
+     * @param i the index of the spawn point.
+     * @return the direction.
+     */
+    public Direction getSpawnDirection(int i) {
+        return spawnDirections[i];
+    }
+
+    /**
+     * Sets the bits of every cell from {@code from} up to but not including {@code to}, a whole word at a time.
+     * @hidden
+     */
+    private static void fill(long[] bits, int from, int to) {
+        if (from >= to)
+            return;
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (-to & 63);
+        if (first == last) {
+            bits[first] |= firstMask & lastMask;
+            return;
+        }
+        bits[first] |= firstMask;
+        Arrays.fill(bits, first + 1, last, -1L);
+        bits[last] |= lastMask;
+    }
+
+    /**
+     * Reads an unsigned variable length integer of 7 bits per byte, lowest bits first.
+     * @hidden
+     */
+    private static int readRun(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Run length is too long");
+    }
+
+    /**
+     * Writes an unsigned variable length integer of 7 bits per byte, lowest bits first.
+     * @hidden
+     */
+    private static void writeRun(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Gets the number of words needed for a bitmap of the board.
+     * @hidden
+     */
+    private static int words(int cols, int rows) {
+        return (cols * rows + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Checks that a board size is usable.
+     * @hidden
+     */
+    private static void checkSize(int cols, int rows) {
+        if (cols <= 0 || rows <= 0 || (long) cols * rows > Integer.MAX_VALUE - Long.SIZE) {
+            throw new IllegalArgumentException("Invalid level size " + cols + "x" + rows);
+        }
+    }
+
+    /**
+     * Generates a maze, saves it and times how long it takes to load.
+     * Arguments, all optional, are the number of columns and rows and the file to write.
+     * @param args command line arguments.
+     * @throws IOException if the file cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int cols = args.length > 0 ? Integer.parseInt(args[0]) : 4095;
+        int rows = args.length > 1 ? Integer.parseInt(args[1]) : 4095;
+        Path path = args.length > 2 ? Path.of(args[2]) : Files.createTempFile("maze", ".lvl");
+
+        maze(cols, rows, 1).save(path);
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            LevelMap level = load(path);
+            LOGGER.info(String.format("Loaded %dx%d maze with %d walls (%d bytes) in %.2f ms", level.cols, level.rows,
+                    level.wallCount, Files.size(path), (System.nanoTime() - start) / 1e6));
+        }
+    }
+
+    /**
+     * Carves a maze out of a board full of walls with a randomized depth first search. Passages run along the odd
+     * columns and rows.
+     * @hidden
+     */
+    private static LevelMap maze(int cols, int rows, long seed) {
+        checkSize(cols, rows);
+        long[] walls = new long[words(cols, rows)];
+        fill(walls, 0, cols * rows);
+        int[] stack = new int[cols * rows];
+        int top = 0;
+        Random rand = new Random(seed);
+        int start = cols > 1 && rows > 1 ? cols + 1 : 0;
+        walls[start >>> 6] &= ~(1L << start);
+        stack[top++] = start;
+        int[] options = new int[4];
+        while (top > 0) {
+            int cell = stack[top - 1];
+            int x = cell % cols;
+            int y = cell / cols;
+            int count = 0;
+            if (x >= 3 && isSet(walls, cell - 2)) options[count++] = -1;
+            if (x + 2 < cols - 1 && isSet(walls, cell + 2)) options[count++] = 1;
+            if (y >= 3 && isSet(walls, cell - 2 * cols)) options[count++] = -cols;
+            if (y + 2 < rows - 1 && isSet(walls, cell + 2 * cols)) options[count++] = cols;
+            if (count == 0) {
+                top--;
+                continue;
+            }
+            int step = options[rand.nextInt(count)];
+            walls[(cell + step) >>> 6] &= ~(1L << (cell + step));
+            walls[(cell + 2 * step) >>> 6] &= ~(1L << (cell + 2 * step));
+            stack[top++] = cell + 2 * step;
+        }
+        return new LevelMap(cols, rows, walls, new int[0], new Direction[0]);
+    }
+
+    /** @hidden */
+    private static boolean isSet(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+}
@@ -0,0 +1,317 @@
+package game.core;
+
+import game.LoggerSetup;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link GameLoop} that runs the game on its own daemon thread instead of the Swing event dispatch thread, so a slow
+ * paint never delays a tick and a slow tick never delays a paint.
+ * <p>
+ *     Every state change to the game should happen on this thread. Other threads hand work over with
+ *     {@link #submit(Runnable)}; submitted commands run before the next tick, even while the loop is paused.
+ *     Results are handed back to the user interface through a {@link SnapshotBuffer} published by the tick.
+ * </p>
+ * <p>
+ *     Ticks are scheduled with {@link System#nanoTime()} and a fixed step accumulator: elapsed time is added to an
+ *     accumulator and one tick is run for every full delay it holds, so rounding never makes the game drift. The delay
+ *     comes from a {@link SpeedCurve} evaluated after every tick, which lets the game speed up as the score grows. The
+ *     thread parks until shortly before the next tick and spins for the last moment, which keeps ticks even at 30 to
+ *     60 ticks per second. If the thread falls far behind, for example after a long garbage collection pause, at most
+ *     {@link #MAX_CATCH_UP} ticks are run back to back and the rest are dropped. Every interval is recorded in
+ *     {@link #getTickStats()}.
+ * </p>
+ * <p>
+ *     The game can be fast-forwarded with {@link #setSpeedUp(int)}, which divides every delay of the curve by a factor,
+ *     or drops the delay altogether so ticks run back to back in batches of about {@link #BATCH_NANOS}, checking for
+ *     submitted commands between batches.
+ * </p>
+ * The thread is created stopped and only begins once {@link #launch()} is called, so the game can be set up and paused
+ * beforehand without a tick slipping in.
+ */
+public class SimulationThread implements GameLoop {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(SimulationThread.class.getName());
+
+    /** Most ticks run back to back to catch up before the remaining backlog is dropped. */
+    public static final int MAX_CATCH_UP = 5;
+
+    /** Speed-up that runs ticks back to back as fast as the thread can. */
+    public static final int UNLIMITED = 0;
+
+    /** How long ticks run back to back at {@link #UNLIMITED} speed before commands are checked, in nanoseconds. */
+    private static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** How long before a tick is due the thread stops parking and starts spinning, in nanoseconds. */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(250);
+
+    /** The work done every tick, usually advancing the game and publishing a snapshot. */
+    private final Runnable tick;
+
+    /** Gives the time between ticks for the current score. */
+    private final SpeedCurve speed;
+
+    /** Supplies the current score to the speed curve. */
+    private final IntSupplier score;
+
+    /** Jitter of the intervals between ticks. */
+    private final TickStats stats = new TickStats();
+
+    /** Commands submitted by other threads that have not run yet. */
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    /** The thread the simulation runs on. */
+    private final Thread thread;
+
+    /** {@code true} while ticks should be run. */
+    private volatile boolean running;
+
+    /** {@code true} once the thread has been asked to exit. */
+    private volatile boolean shutdown;
+
+    /** Factor the delays of the speed curve are divided by, or {@link #UNLIMITED}. */
+    private volatile int speedUp = 1;
+
+    /** Number of ticks run since launch. Only written by the simulation thread. */
+    private volatile long tickCount;
+
+    /**
+     * Creates a stopped simulation thread that ticks at a constant rate.
+     * @param delayMillis the time between ticks in milliseconds.
+     * @param tick the work done every tick.
+     * @throws IllegalArgumentException if {@code delayMillis} is not positive.
+     */
+    public SimulationThread(int delayMillis, Runnable tick) {
+        this(SpeedCurve.constant(delayMillis), () -> 0, tick);
+    }
+
+    /**
+     * Creates a stopped simulation thread whose tick rate follows a speed curve.
+     * @param speed gives the time between ticks for the current score.
+     * @param score supplies the current score. Called on the simulation thread.
+     * @param tick the work done every tick.
+     */
+    public SimulationThread(SpeedCurve speed, IntSupplier score, Runnable tick) {
+        this.tick = tick;
+        this.speed = speed;
+        this.score = score;
+        this.thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the underlying thread. Must be called exactly once.
+     */
+    public void launch() {
+        thread.start();
+        LOGGER.config("Simulation thread launched.");
+    }
+
+    /**
+     * Asks the thread to exit after the current tick.
+     */
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Runs a command on the simulation thread before the next tick. Commands run in the order they were submitted and
+     * run even while the loop is stopped.
+     * @param command the work to run.
+     */
+    public void submit(Runnable command) {
+        commands.add(command);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Fast-forwards the game by dividing every delay by a factor. A factor of {@code 1} plays at normal speed and
+     * {@link #UNLIMITED} runs ticks back to back. Takes effect from the next tick, even if the thread is waiting.
+     * @param speedUp the factor, or {@link #UNLIMITED}.
+     * @throws IllegalArgumentException if the factor is negative.
+     */
+    public void setSpeedUp(int speedUp) {
+        if (speedUp < 0) {
+            throw new IllegalArgumentException("Speed-up must not be negative: " + speedUp);
+        }
+        this.speedUp = speedUp;
+        LockSupport.unpark(thread);
+        LOGGER.fine(() -> "Simulation speed-up set to " + (speedUp == UNLIMITED ? "unlimited" : speedUp + "x") + ".");
+    }
+
+    /**
+     * Gets the factor the game is fast-forwarded by.
+     * @return the factor, or {@link #UNLIMITED}.
+     */
+    public int getSpeedUp() {
+        return speedUp;
+    }
+
+    /**
+     * Gets the number of ticks run since the thread was launched. Safe to call from any thread.
+     * @return the number of ticks.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Gets the jitter statistics of the intervals between ticks.
+     * @return the tick statistics, which are updated as the game runs.
+     */
+    public TickStats getTickStats() {
+        return stats;
+    }
+
+    /**
+     * Resumes ticking. The first tick happens one delay after this call, like a Swing timer.
+     */
+    @Override
+    public void start() {
+        running = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops ticking. A tick that is already in progress finishes normally.
+     */
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Returns {@code true} if ticks are being run.
+     * @return true if the loop is running, false otherwise.
+     */
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * The body of the simulation thread. Runs submitted commands, runs every tick that is due and waits for the next
+     * one, or parks until it is woken up by {@link #start()} or {@link #submit(Runnable)} while stopped.
+     * @hidden
+     */
+    private void run() {
+        boolean ticking = false;
+        long last = 0;
+        long lastTick = 0;
+        long accumulator = 0;
+        while (!shutdown) {
+            runCommands();
+            if (!running) {
+                ticking = false;
+                LockSupport.park(this);
+                continue;
+            }
+            if (speedUp == UNLIMITED) {
+                // The accumulator starts afresh when a finite speed is chosen again
+                ticking = false;
+                long end = System.nanoTime() + BATCH_NANOS;
+                do {
+                    runTick();
+                } while (running && speedUp == UNLIMITED && System.nanoTime() - end < 0);
+                continue;
+            }
+            long now = System.nanoTime();
+            if (!ticking) {
+                ticking = true;
+                last = now;
+                lastTick = now;
+                accumulator = 0;
+            }
+            accumulator += now - last;
+            last = now;
+
+            long delay = delay();
+            int steps = 0;
+            while (accumulator >= delay && running) {
+                if (steps == MAX_CATCH_UP) {
+                    stats.recordSkipped(accumulator / delay);
+                    accumulator %= delay;
+                    LOGGER.fine("Simulation fell behind, dropped ticks.");
+                    break;
+                }
+                long start = System.nanoTime();
+                stats.record(start - lastTick, delay);
+                lastTick = start;
+                runTick();
+                accumulator -= delay;
+                steps++;
+                delay = delay();
+            }
+            waitFor(last, delay - accumulator);
+        }
+        LOGGER.config("Simulation thread stopped.");
+    }
+
+    /**
+     * Waits until {@code remaining} nanoseconds after {@code from}. Parks for most of the wait and spins for the last
+     * {@link #SPIN_NANOS}, since parking alone can overshoot by a large part of a millisecond. Returns early if the
+     * thread is unparked while parked.
+     * @hidden
+     */
+    private void waitFor(long from, long remaining) {
+        long deadline = from + remaining;
+        long wait = deadline - System.nanoTime();
+        if (wait > SPIN_NANOS) {
+            LockSupport.parkNanos(this, wait - SPIN_NANOS);
+            return;
+        }
+        while (System.nanoTime() - deadline < 0 && running && !shutdown)
+            Thread.onSpinWait();
+    }
+
+    /**
+     * Gets the current time between ticks divided by the speed-up, guarding against curves that return a non-positive
+     * delay.
+     * @hidden
+     */
+    private long delay() {
+        int factor = Math.max(1, speedUp);
+        return Math.max(1, speed.delayNanos(score.getAsInt()) / factor);
+    }
+
+    /**
+     * Runs one tick and counts it.
+     * @hidden
+     */
+    private void runTick() {
+        runSafely(tick);
+        tickCount = tickCount + 1;
+    }
+
+    /**
+     * Runs every submitted command.
+     * @hidden
+     */
+    private void runCommands() {
+        Runnable command;
+        while ((command = commands.poll()) != null)
+            runSafely(command);
+    }
+
+    /**
+     * Runs a piece of work, logging anything it throws so one failure does not kill the simulation.
+     * @hidden
+     */
+    private void runSafely(Runnable work) {
+        try {
+            work.run();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Simulation task failed", e);
+        }
+    }
+}
@@ -5,15 +5,22 @@ import game.utils.Constants;
 import game.utils.Direction;
 
 import java.awt.Point;
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 import java.util.logging.Logger;
 
 /**
  * The {@code Snake} class is responsible for managing the current position of the {@code body} and {@code direction}
- * of the snake within the current game loop. It can only change directions once per frame so the {@code nextDirection}
- * is queued until the next frame begins. Inputs can be buffered (multiple entered per frame), allowing for the game
- * to feel more responsive.
+ * of the snake within the current game loop. It can only change directions once per frame, so direction changes are
+ * placed in an {@link InputQueue} and one valid turn is taken from it at the start of each frame. Any number of inputs
+ * can be buffered (multiple entered per frame), allowing for the game to feel more responsive without losing fast
+ * key sequences.
+ * <p>
+ *     The {@code body} is stored in a ring buffer of reusable {@code Point}s, so moving the snake does not allocate.
+ *     The list returned by {@link #getSnake()} is a live view of the ring buffer and its points are overwritten as the
+ *     snake moves; callers that need to keep a position must copy it.
+ * </p>
  */
 public class Snake {
     /**
@@ -23,41 +30,68 @@ public class Snake {
     private static final Logger LOGGER = LoggerSetup.getLogger(Snake.class.getName());
 
     /**
-     * A List representing the points on the grid the snake's body occupies.
+     * A ring buffer of points that the snake's body occupies. It always has at least one slot more than the length of
+     * the snake so the tail from the previous frame is never overwritten by the new head. That tail is added back to
+     * the end of the snake when it grows and when the snake moves backwards a frame when the game ends.
      */
-    private final LinkedList<Point> body;
+    private Point[] ring;
 
     /**
-     * Used to determine which direction the snake is currently moving.
+     * Index in the {@code ring} of the snake's head.
      */
-    private Direction direction;
+    private int headIndex;
 
     /**
-     * Used to determine which direction the snake will move on the next frame.
+     * Number of segments in the snake's body.
      */
-    private Direction nextDirection;
+    private int length;
 
     /**
-     * Used to buffer an input for the next frame. Allows for two inputs to be used on the current frame. Is only set
-     * if the direction is attempted to be changed while {@code nextDirection} is not {@code null}.
+     * A List representing the points on the grid the snake's body occupies. This is a view of the {@code ring}.
      */
-    private Direction bufferDirection;
+    private final List<Point> body;
 
     /**
-     * A {@code Point} used to represent the tail from the previous frame. This is added to the end of the snake when it
-     * grows and when the snake moves backwards a frame when the game ends.
+     * Used to determine which direction the snake is currently moving.
      */
-    private Point oldTail;
+    private Direction direction;
+
+    /**
+     * Holds the direction changes that have not been applied yet, in the order they were entered. Filled by the
+     * thread handling input and drained by the thread running the game loop.
+     */
+    private final InputQueue inputs;
 
     /**
      * Initializes a {@code snake} in a game ready state based on the values in the {@link Constants} class by creating
      * a list of points to represent the {@code body} and setting its starting direction.
      */
     Snake() {
-        this.direction = Direction.RIGHT;
-        this.body = new LinkedList<>();
-        for(int i = 0; i < Constants.SNAKE_INITIAL_LENGTH; i++)
-            body.add(new Point(Constants.SNAKE_INITIAL_POSITION.x - i, Constants.SNAKE_INITIAL_POSITION.y));
+        this(Constants.NUM_COLS * Constants.NUM_ROWS + 1, Constants.SNAKE_INITIAL_POSITION, Direction.RIGHT,
+                Constants.SNAKE_INITIAL_LENGTH);
+    }
+
+    /**
+     * Creates a {@code snake} at any position, used when several snakes share a board. The body is laid out in a
+     * straight line behind the head.
+     * @param capacity the number of ring buffer slots to allocate up front. The ring doubles when the snake outgrows
+     *                 it, so this only needs to cover the usual length of the snake.
+     * @param head the position of the head.
+     * @param direction the direction the snake starts moving in.
+     * @param length the number of segments in the body.
+     */
+    Snake(int capacity, Point head, Direction direction, int length) {
+        this.direction = direction;
+        this.ring = new Point[Math.max(capacity, length + 1)];
+        for(int i = 0; i < ring.length; i++)
+            ring[i] = new Point();
+        this.body = new Body();
+        this.inputs = new InputQueue(Constants.INPUT_QUEUE_CAPACITY);
+        int dx = direction == Direction.RIGHT ? 1 : direction == Direction.LEFT ? -1 : 0;
+        int dy = direction == Direction.DOWN ? 1 : direction == Direction.UP ? -1 : 0;
+        for(int i = 0; i < length; i++)
+            ring[i].setLocation(head.x - i * dx, head.y - i * dy);
+        this.length = length;
     }
 
     /**
@@ -65,8 +99,11 @@ public class Snake {
      * direction must be updated as well.
      */
     public void move() {
-        oldTail = body.removeLast();
-        Point newHead = new Point(body.getFirst());
+        // The tail slot is left untouched so it can be restored by grow() or moveBackwards()
+        Point oldHead = ring[headIndex];
+        headIndex = (headIndex + ring.length - 1) % ring.length;
+        Point newHead = ring[headIndex];
+        newHead.setLocation(oldHead);
 
         updateDirection();
 
@@ -86,29 +123,50 @@ public class Snake {
             default:
                 break;
         }
-        body.addFirst(new Point(newHead));
     }
 
     /**
      * Increase the length of the snake by adding the tail from the previous frame to the {@code body}.
      */
     public void grow() {
-        body.addLast(oldTail);
+        // The old tail still sits in the slot right after the current tail
+        length++;
+        if (length == ring.length)
+            enlarge();
     }
 
     /**
-     * Changes the {@code nextDirection} of the snake if it is not attempting to go in the opposite direction, such as
-     * right to left. If the {@code nextDirection} already has a value then buffer the input instead by setting
-     * {@code bufferDirection} to the {@code desiredDirection}.
+     * Doubles the ring buffer, copying the body to the front of the new ring so the head is at slot {@code 0}.
+     */
+    private void enlarge() {
+        Point[] larger = new Point[ring.length * 2];
+        for(int i = 0; i < length; i++)
+            larger[i] = ring[slot(i)];
+        for(int i = length; i < larger.length; i++)
+            larger[i] = new Point();
+        ring = larger;
+        headIndex = 0;
+    }
+
+    /**
+     * Queues a direction change together with the time it was requested. Whether the change is valid is decided when
+     * it is taken from the queue, since the snake may have turned by then. Only one thread may call this method at a
+     * time.
      * @param desiredDirection direction to attempt to change to.
      */
     public void changeDirection(Direction desiredDirection) {
-        if(nextDirection == null) {
-            nextDirection = (desiredDirection == opposite(direction)) ? nextDirection : desiredDirection;
-        }
-        else {
-            bufferDirection = (desiredDirection == opposite(nextDirection)) ? bufferDirection : desiredDirection;
-        }
+        changeDirection(desiredDirection, System.nanoTime());
+    }
+
+    /**
+     * Queues a direction change that was requested at an earlier time, such as a key press handed over from another
+     * thread, so the input latency is measured from the request. Only one thread may call this method at a time.
+     * @param desiredDirection direction to attempt to change to.
+     * @param timestamp the {@link System#nanoTime()} at which the change was requested.
+     */
+    public void changeDirection(Direction desiredDirection, long timestamp) {
+        if(!inputs.offer(desiredDirection, timestamp))
+            LOGGER.finer(() -> "Input queue full, dropped " + desiredDirection);
     }
 
     /**
@@ -130,28 +188,43 @@ public class Snake {
     }
 
     /**
-     * Sets the current {@code direction} to the {@code nextDirection }as long as the {@code nextDirection} is not null.
-     * Uses the {@code bufferDirection} to set the value of {@code nextDirection} for the next frame.
-     * Resets {@code bufferDirection} to {@code null}.
+     * Takes inputs from the queue until one is a valid turn and sets it as the current {@code direction}. Inputs that
+     * would reverse the snake, such as right to left, or that repeat the current direction are discarded. Any inputs
+     * after the accepted one stay queued for the following frames.
      */
     public void updateDirection() {
-        if(nextDirection != null) {
-            direction = nextDirection;
-            nextDirection = null;
-        }
-        if(bufferDirection != null){
-            nextDirection = bufferDirection;
-            bufferDirection = null;
+        Direction desired;
+        while((desired = inputs.poll()) != null) {
+            if(desired != direction && desired != opposite(direction)) {
+                direction = desired;
+                inputs.recordAccepted(System.nanoTime());
+                return;
+            }
         }
     }
 
+    /**
+     * Gets the queue of pending direction changes. Used to read input latency and dropped input statistics.
+     * @return the input queue of this snake.
+     */
+    public InputQueue getInputQueue() {
+        return inputs;
+    }
+
     /**
      * Moves the snake backwards to its state from the previous frame. This is used when the snake dies
      * And we don't want to show the snake phased inside the wall on the final frame.
      */
     public void moveBackwards() {
-        body.removeFirst();
-        body.addLast(oldTail);
+        headIndex = (headIndex + 1) % ring.length;
+    }
+
+    /**
+     * Gets the {@code direction} the snake moved in on the last frame.
+     * @return the current direction of the snake.
+     */
+    public Direction getDirection() {
+        return direction;
     }
 
     /**
@@ -161,4 +234,30 @@ public class Snake {
     public List<Point> getSnake() {
         return body;
     }
+
+    /**
+     * Converts an index along the body into an index in the {@code ring}.
+     * @param i the index along the body, where {@code 0} is the head.
+     * @return the matching slot in the ring buffer.
+     */
+    private int slot(int i) {
+        return (headIndex + i) % ring.length;
+    }
+
+    /**
+     * A read only {@code List} view of the ring buffer ordered from head to tail.
+     */
+    private class Body extends AbstractList<Point> implements RandomAccess {
+        @Override
+        public Point get(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+            return ring[slot(index)];
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package game.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands {@link GameSnapshot}s from the simulation thread to the user interface without locks, using three pooled
+ * snapshots:
+ * <ul>
+ *     <li>the back snapshot, which only the writer fills in,</li>
+ *     <li>the middle snapshot, the most recently published one, held in an {@link AtomicReference},</li>
+ *     <li>the front snapshot, which only the reader draws from.</li>
+ * </ul>
+ * Publishing swaps the back snapshot into the middle and reading swaps the front snapshot out of it, so neither side
+ * ever waits for the other and no snapshot is allocated after construction. If the writer publishes several times
+ * between two reads, the reader simply gets the newest one.
+ * <p>
+ *     {@link #publish(GameEngine)} must only be called from one thread, and so must {@link #latest()}.
+ * </p>
+ */
+public class SnapshotBuffer {
+    /** Snapshot being filled in by the writer. */
+    private GameSnapshot back = new GameSnapshot();
+
+    /** Most recently published snapshot. */
+    private final AtomicReference<GameSnapshot> middle = new AtomicReference<>(new GameSnapshot());
+
+    /** Snapshot being read by the reader. */
+    private GameSnapshot front = new GameSnapshot();
+
+    /**
+     * Copies the state of the engine into a free snapshot and makes it the latest one. Must be called on the thread
+     * that updates the engine.
+     * @param gameEngine the engine to copy.
+     */
+    public void publish(GameEngine gameEngine) {
+        back.copyFrom(gameEngine);
+        back.fresh = true;
+        back = middle.getAndSet(back);
+    }
+
+    /**
+     * Returns {@code true} if a snapshot was published since the reader last called {@link #latest()}. Must only be
+     * called from the reading thread.
+     * @return true if {@link #latest()} would return a new snapshot, false otherwise.
+     */
+    public boolean isFresh() {
+        return middle.get().fresh;
+    }
+
+    /**
+     * Gets the most recently published snapshot. The returned snapshot stays unchanged until the next call.
+     * @return the latest snapshot, which is empty if nothing has been published yet.
+     */
+    public GameSnapshot latest() {
+        // Only the writer puts fresh snapshots in the middle, so if it is fresh now it is still fresh after the swap
+        if (middle.get().fresh) {
+            front = middle.getAndSet(front);
+            front.fresh = false;
+        }
+        return front;
+    }
+}
@@ -0,0 +1,52 @@
+package game.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long a {@link SimulationThread} waits between ticks based on the current score, so the game can speed up
+ * as the snake grows.
+ */
+@FunctionalInterface
+public interface SpeedCurve {
+    /**
+     * Gets the time between ticks for the given score.
+     * @param score the current score of the game.
+     * @return the delay before the next tick in nanoseconds. Must be positive.
+     */
+    long delayNanos(int score);
+
+    /**
+     * Creates a curve that never changes speed.
+     * @param delayMillis the time between ticks in milliseconds.
+     * @return a constant speed curve.
+     * @throws IllegalArgumentException if {@code delayMillis} is not positive.
+     */
+    static SpeedCurve constant(int delayMillis) {
+        if (delayMillis <= 0) {
+            throw new IllegalArgumentException("delayMillis must be positive");
+        }
+        long delay = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        return score -> delay;
+    }
+
+    /**
+     * Creates a curve that starts at {@code startMillis} and gets {@code stepMillis} shorter for every point scored,
+     * until it reaches {@code minMillis}.
+     * @param startMillis the time between ticks at a score of zero.
+     * @param stepMillis the time taken off for every point.
+     * @param minMillis the shortest time between ticks.
+     * @return a linear speed curve.
+     * @throws IllegalArgumentException if {@code minMillis} is not positive, {@code stepMillis} is negative or
+     *                                  {@code startMillis} is less than {@code minMillis}.
+     */
+    static SpeedCurve linear(int startMillis, int stepMillis, int minMillis) {
+        if (minMillis <= 0 || stepMillis < 0 || startMillis < minMillis) {
+            throw new IllegalArgumentException("Invalid speed curve: start=" + startMillis + ", step=" + stepMillis
+                    + ", min=" + minMillis);
+        }
+        long start = TimeUnit.MILLISECONDS.toNanos(startMillis);
+        long step = TimeUnit.MILLISECONDS.toNanos(stepMillis);
+        long min = TimeUnit.MILLISECONDS.toNanos(minMillis);
+        return score -> Math.max(min, start - step * score);
+    }
+}
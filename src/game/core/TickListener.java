@@ -0,0 +1,20 @@
+package game.core;
+
+/**
+ * A hook that is notified around every tick of a {@link GameEngine}. Listeners are run on the thread that calls
+ * {@link GameEngine#updateGame()} and should return quickly since they delay the tick.
+ * @see GameEngine#addTickListener(TickListener)
+ */
+public interface TickListener {
+    /**
+     * Called before the snake moves. The engine still holds the state from the previous tick.
+     * @param gameEngine the engine that is about to tick.
+     */
+    default void beforeTick(GameEngine gameEngine) {}
+
+    /**
+     * Called after the snake has moved and collisions have been handled.
+     * @param gameEngine the engine that has just ticked.
+     */
+    void afterTick(GameEngine gameEngine);
+}
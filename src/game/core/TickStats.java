@@ -0,0 +1,168 @@
+package game.core;
+
+import java.util.Arrays;
+
+/**
+ * Records how far the time between ticks strays from the scheduled delay. The most recent intervals are kept in a ring
+ * so percentiles describe current behaviour rather than the whole session, and ticks dropped after a long pause are
+ * counted separately.
+ * <p>
+ *     Recording is cheap and does not allocate. Percentiles are computed on demand by sorting a reused copy of the
+ *     ring, so they should be read occasionally, such as once per game, rather than every frame. All methods are
+ *     synchronized so the simulation thread can record while another thread reads. Where many threads record, each
+ *     can keep its own instance so they never share a lock, and {@link #addAll(TickStats)} merges them when read.
+ * </p>
+ */
+public class TickStats {
+    /** Number of recent intervals kept for percentiles by default. */
+    public static final int WINDOW = 1024;
+
+    /** Absolute difference between each recent interval and its scheduled delay in nanoseconds. */
+    private final long[] jitter;
+
+    /** Scratch copy of {@code jitter} used for sorting. */
+    private final long[] sorted;
+
+    /** Total number of intervals recorded. */
+    private long ticks;
+
+    /** Number of intervals written to {@code jitter}, which differs from {@code ticks} after merging. */
+    private long written;
+
+    /** Number of ticks that were dropped instead of caught up. */
+    private long skipped;
+
+    /** Largest jitter recorded in nanoseconds. */
+    private long max;
+
+    /**
+     * Creates a recorder that keeps the most recent {@link #WINDOW} intervals.
+     */
+    public TickStats() {
+        this(WINDOW);
+    }
+
+    /**
+     * Creates a recorder that keeps a given number of recent intervals.
+     * @param window the number of recent intervals kept for percentiles.
+     * @throws IllegalArgumentException if the window is not positive.
+     */
+    public TickStats(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        jitter = new long[window];
+        sorted = new long[window];
+    }
+
+    /**
+     * Records the time between two ticks.
+     * @param intervalNanos the time since the previous tick.
+     * @param targetNanos the delay the tick was scheduled for.
+     */
+    public synchronized void record(long intervalNanos, long targetNanos) {
+        long deviation = Math.abs(intervalNanos - targetNanos);
+        jitter[(int) (written++ % jitter.length)] = deviation;
+        ticks++;
+        max = Math.max(max, deviation);
+    }
+
+    /**
+     * Adds what another recorder holds to this one: its recent intervals, oldest first, its counts and its largest
+     * jitter. The other recorder is left unchanged and may keep recording meanwhile.
+     * @param other the recorder to merge in.
+     */
+    public void addAll(TickStats other) {
+        long[] recent;
+        long otherTicks;
+        long otherSkipped;
+        long otherMax;
+        synchronized (other) {
+            int n = (int) Math.min(other.written, other.jitter.length);
+            recent = new long[n];
+            for (int i = 0; i < n; i++)
+                recent[i] = other.jitter[(int) ((other.written - n + i) % other.jitter.length)];
+            otherTicks = other.ticks;
+            otherSkipped = other.skipped;
+            otherMax = other.max;
+        }
+        synchronized (this) {
+            for (long deviation : recent)
+                jitter[(int) (written++ % jitter.length)] = deviation;
+            ticks += otherTicks;
+            skipped += otherSkipped;
+            max = Math.max(max, otherMax);
+        }
+    }
+
+    /**
+     * Records ticks that were dropped because the simulation fell too far behind.
+     * @param count the number of ticks dropped.
+     */
+    public synchronized void recordSkipped(long count) {
+        skipped += count;
+    }
+
+    /**
+     * Gets a percentile of the recent jitter.
+     * @param percentile the percentile to compute, between {@code 0} and {@code 100}.
+     * @return the jitter in nanoseconds, or {@code 0} if nothing has been recorded.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public synchronized long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        int n = (int) Math.min(written, jitter.length);
+        if (n == 0)
+            return 0;
+        System.arraycopy(jitter, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        int index = (int) Math.ceil(percentile / 100 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    /**
+     * Gets the total number of intervals recorded.
+     * @return the number of ticks.
+     */
+    public synchronized long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * Gets the number of ticks dropped instead of caught up.
+     * @return the number of skipped ticks.
+     */
+    public synchronized long getSkippedTicks() {
+        return skipped;
+    }
+
+    /**
+     * Gets the largest jitter recorded.
+     * @return the largest jitter in nanoseconds.
+     */
+    public synchronized long getMaxJitterNanos() {
+        return max;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public synchronized void reset() {
+        ticks = 0;
+        written = 0;
+        skipped = 0;
+        max = 0;
+    }
+
+    /**
+     * Summarizes the recent jitter in milliseconds.
+     * @return a one line summary.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("Tick jitter: %d ticks, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms, %d skipped",
+                ticks, percentile(50) / 1e6, percentile(90) / 1e6, percentile(99) / 1e6, max / 1e6, skipped);
+    }
+}
@@ -1,7 +1,7 @@
 package game.gui;
 
 import game.LoggerSetup;
-import game.core.Food;
+import game.core.GameSnapshot;
 import game.utils.Constants;
 
 import java.awt.*;
@@ -9,8 +9,8 @@ import java.awt.geom.AffineTransform;
 import java.util.logging.Logger;
 
 /**
- * Used to draw the apple onto the game grid. The apple is drawn using {@link Graphics2D} and will pulsate as the timer
- * runs.
+ * Used to draw the apples onto the game grid. The apples are drawn using {@link Graphics2D} and will pulsate together
+ * as the timer runs, unless animation is switched off to save time on slow machines.
  */
 public class AppleGraphics {
     /**
@@ -31,6 +31,10 @@ public class AppleGraphics {
      * it's {@code false}.
      */
     private boolean growing;
+    /**
+     * {@code true} if the apples pulse and have glare, {@code false} if they are drawn plainly at their initial size.
+     */
+    private boolean animated = true;
 
     /**
      * Creates a new {@code AppleGraphics} object that is initially growing.
@@ -41,16 +45,77 @@ public class AppleGraphics {
     }
 
     /**
-     * Draws a new apple on the screen that alternates between growing and shrinking as determined by the timer.
+     * Switches the pulse and glare of the apples on or off. Switched off, the apples stop at their initial size.
+     * @param animated {@code true} to animate the apples.
+     */
+    void setAnimated(boolean animated) {
+        this.animated = animated;
+        if (!animated) {
+            size = INITIAL_SIZE;
+            growing = true;
+        }
+    }
+
+    /**
+     * Draws an apple on every food cell that alternates between growing and shrinking as determined by the timer.
      * @param g2d a reference to the graphics of the {@link GameGridPanel}.
-     * @param food a reference to the current {@code Food} object.
+     * @param snapshot the snapshot of the game, used for the positions of the food.
+     */
+    public void drawApple(Graphics2D g2d, GameSnapshot snapshot) {
+        drawApple(g2d, snapshot, null);
+    }
+
+    /**
+     * Draws the apples inside the viewport. Apples outside it are skipped, but the pulse still advances once per frame.
+     * Antialiasing is left to the caller.
+     * @param g2d a reference to the graphics of the {@link GameGridPanel}, translated so the board's origin is at the
+     *            origin.
+     * @param snapshot the snapshot of the game, used for the positions of the food.
+     * @param viewport the visible part of the board, or {@code null} to draw every apple.
      */
-    public void drawApple(Graphics2D g2d, Food food) {
-        // Enable anti-aliasing for smoother edges
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    void drawApple(Graphics2D g2d, GameSnapshot snapshot, Viewport viewport) {
+        int cols = snapshot.getCols();
+        for (int i = 0; i < snapshot.getFoodCount(); i++) {
+            int cell = snapshot.getFoodCell(i);
+            int cellX = cell % cols;
+            int cellY = cell / cols;
+            if (viewport == null || viewport.isVisible(cellX, cellY))
+                drawAppleAt(g2d, cellX, cellY);
+        }
 
-        int originalX = food.getPosition().x * Constants.CELL_SIZE;
-        int originalY = food.getPosition().y * Constants.CELL_SIZE;
+        if (!animated) {
+            LOGGER.finest(() -> "Painted " + snapshot.getFoodCount() + " static apples.");
+            return;
+        }
+
+        // Update the apple's size to create a pulsating effect
+        if (growing) {
+            size += 2;
+        } else {
+            size -= 2;
+        }
+
+        // Reverse the growing/shrinking direction if limits are reached
+        if (size >= INITIAL_SIZE + 5) {
+            growing = false;
+        } else if (size <= INITIAL_SIZE) {
+            growing = true;
+        }
+
+        LOGGER.finest(() -> "Painted " + snapshot.getFoodCount() + " " + (growing ? "growing" : "shrinking")
+                + " apples.");
+    }
+
+    /**
+     * Draws a single apple at its current size.
+     * @hidden
+     * @param g2d a reference to the graphics of the {@link GameGridPanel}.
+     * @param cellX the column of the apple.
+     * @param cellY the row of the apple.
+     */
+    private void drawAppleAt(Graphics2D g2d, int cellX, int cellY) {
+        int originalX = cellX * Constants.CELL_SIZE;
+        int originalY = cellY * Constants.CELL_SIZE;
 
         // Calculate new top-left coordinates to keep the apple centered
         int x = originalX + (INITIAL_SIZE - size) / 2;
@@ -81,6 +146,9 @@ public class AppleGraphics {
         g2d.fillArc(leafX, leafY, leafWidth, leafHeight, 0, 180);
         g2d.fillArc(leafX, leafY - 1, leafWidth, leafHeight, 180, 180);
 
+        if (!animated)
+            return;
+
         // Glare
         AffineTransform ogTrans = g2d.getTransform();
         g2d.setColor(new Color(255, 128, 101));
@@ -91,22 +159,5 @@ public class AppleGraphics {
         g2d.rotate(0.5, glareX + glareWidth / 2.0, glareY + glareHeight / 2.0);
         g2d.fillOval(glareX, glareY, glareWidth, glareHeight);
         g2d.setTransform(ogTrans);
-
-        // Update the apple's size to create a pulsating effect
-        if (growing) {
-            size += 2;
-        } else {
-            size -= 2;
-        }
-
-        // Reverse the growing/shrinking direction if limits are reached
-        if (size >= INITIAL_SIZE + 5) {
-            growing = false;
-        } else if (size <= INITIAL_SIZE) {
-            growing = true;
-        }
-
-        LOGGER.finest("Painted a " + (growing ? "growing" : "shrinking") + " apple at [x="
-                + food.getPosition().x + ",y=" + food.getPosition().y + "].");
     }
 }
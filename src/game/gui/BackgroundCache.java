@@ -0,0 +1,127 @@
+package game.gui;
+
+import game.LoggerSetup;
+import game.core.LevelMap;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the background of the {@link GameGridPanel}, the checkered grid with the walls baked in, rendered at the size
+ * the board covers on the screen in device pixels, so it is copied pixel for pixel instead of being stretched.
+ * <p>
+ *     The image only needs rendering again when the level or the size of a cell in device pixels changes, such as
+ *     when the window is resized or moved to a screen with a different scale. That work is done on a background thread
+ *     so painting never waits for it. Until the new image is ready, the old one is stretched to the new size if it
+ *     shows the same level, and otherwise the panel draws the grid itself. While a window is being dragged to a new
+ *     size, only the most recent size is rendered; requests overtaken by a newer one are dropped unseen.
+ * </p>
+ * The finished image is handed over through a volatile field and picked up by the next call to
+ * {@link #get(LevelMap, int, int, double)}, so the cache works from whichever single thread paints.
+ */
+class BackgroundCache {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(BackgroundCache.class.getName());
+
+    /** The thread backgrounds are rendered on, shared by every cache. */
+    private static final ExecutorService RENDERER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "background-renderer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /**
+     * A background and the board it was rendered for.
+     * @param generation the number of the request it was rendered for.
+     * @param image the background.
+     * @param level the level shown, or {@code null} for the open board.
+     * @param cols the number of columns shown.
+     * @param rows the number of rows shown.
+     * @param cellPixels the size of a cell in device pixels.
+     */
+    private record Background(int generation, BufferedImage image, LevelMap level, int cols, int rows,
+                              double cellPixels) {
+        /**
+         * Returns {@code true} if this background shows the given board, at any size.
+         * @hidden
+         */
+        boolean shows(LevelMap level, int cols, int rows) {
+            return level == this.level && cols == this.cols && rows == this.rows;
+        }
+    }
+
+    /** Called from the background thread whenever a new image is ready, usually to repaint. Must be thread safe. */
+    private final Runnable onReady;
+
+    /** The background in use, or {@code null} if none is ready. */
+    private Background current;
+
+    /** The background last requested, with no image, or {@code null} if none was. */
+    private Background wanted;
+
+    /** A finished background waiting to be picked up, or {@code null}. Written by the background thread. */
+    private volatile Background ready;
+
+    /** Number of the latest request, so older requests can tell they were overtaken. */
+    private volatile int generation;
+
+    /**
+     * Creates an empty cache.
+     * @param onReady called from the background thread whenever a new image is ready, usually to repaint. Must be
+     *                safe to call from any thread, as {@code repaint()} is.
+     */
+    BackgroundCache(Runnable onReady) {
+        this.onReady = onReady;
+    }
+
+    /**
+     * Gets the background for a board, starting to render it if the cached image does not match. Never waits for
+     * rendering.
+     * @param level the level, or {@code null} for the open board.
+     * @param cols the number of columns on the board.
+     * @param rows the number of rows on the board.
+     * @param cellPixels the size of a cell in device pixels.
+     * @return the image for this board at this size, the image for this board at another size if the new one is not
+     *         ready yet, or {@code null} if there is neither.
+     */
+    public BufferedImage get(LevelMap level, int cols, int rows, double cellPixels) {
+        Background finished = ready;
+        if (finished != null && finished.generation() == generation) {
+            current = finished;
+            ready = null;
+        }
+        boolean sameBoard = current != null && current.shows(level, cols, rows);
+        if (sameBoard && cellPixels == current.cellPixels())
+            return current.image();
+        if (wanted == null || !wanted.shows(level, cols, rows) || cellPixels != wanted.cellPixels())
+            request(level, cols, rows, cellPixels);
+        return sameBoard ? current.image() : null;
+    }
+
+    /**
+     * Renders the background for a board on the background thread and hands it over, unless a newer request overtakes
+     * it first.
+     * @hidden
+     */
+    private void request(LevelMap level, int cols, int rows, double cellPixels) {
+        int requested = generation + 1;
+        generation = requested;
+        wanted = new Background(requested, null, level, cols, rows, cellPixels);
+        RENDERER.execute(() -> {
+            if (requested != generation)
+                return;
+            BufferedImage image = GameGridPanel.renderBackground(level, cols, rows, cellPixels);
+            if (requested != generation)
+                return;
+            ready = new Background(requested, image, level, cols, rows, cellPixels);
+            LOGGER.fine(() -> "Background ready at " + image.getWidth() + "x" + image.getHeight() + " pixels.");
+            onReady.run();
+        });
+    }
+}
@@ -0,0 +1,275 @@
+package game.gui;
+
+import game.core.GameSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index over the body of the snake in a {@link GameSnapshot}, used to find the parts of a long snake that lie
+ * inside the {@link Viewport} without walking the whole body every frame.
+ * <p>
+ *     The body is split into runs, the straight stretches between the head, each turn and the tail. The bounding box of
+ *     the body is divided into square buckets and every run is listed in each bucket it passes through, in one flat
+ *     array indexed by an offset per bucket. A query visits only the buckets overlapping the view and collects the runs
+ *     listed there, skipping runs already collected through a neighbouring bucket. The index is built once per snapshot
+ *     in time linear in the length, alongside the copy the snapshot already makes, and a query costs time proportional
+ *     to the visible area plus the runs found there.
+ * </p>
+ * The index keeps its arrays between snapshots and only grows them, so a game in progress builds it without garbage.
+ */
+class BodyIndex {
+    /** Log2 of the smallest bucket side in cells. */
+    private static final int MIN_BUCKET_SHIFT = 4;
+
+    /** Most buckets per body cell, beyond which buckets are made larger so the grid stays linear in the length. */
+    private static final int BUCKETS_PER_CELL = 2;
+
+    /** Fewest buckets allowed before buckets are made larger. */
+    private static final int MIN_BUCKETS = 1024;
+
+    /** The snapshot the index was built for. */
+    private GameSnapshot snapshot;
+
+    /** Tick of the snapshot the index was built for, since snapshots are pooled and refilled. */
+    private int ticks;
+
+    /** Length of the snapshot the index was built for. */
+    private int length;
+
+    /** Cell of the head of the snapshot the index was built for. */
+    private long head;
+
+    /**
+     * Body index at which each run starts, followed by the index of the tail. Run {@code k} covers body indices
+     * {@code runPoints[k]} to {@code runPoints[k + 1]}, both ends included.
+     */
+    private int[] runPoints = new int[64];
+
+    /** Number of runs. */
+    private int runCount;
+
+    /** Column of the leftmost bucket. */
+    private int gridX;
+
+    /** Row of the topmost bucket. */
+    private int gridY;
+
+    /** Log2 of the bucket side in cells. */
+    private int shift;
+
+    /** Number of bucket columns. */
+    private int bucketCols;
+
+    /** Number of bucket rows. */
+    private int bucketRows;
+
+    /** Offset of the first run of each bucket in {@code bucketRuns}, followed by the total. */
+    private int[] bucketStart = new int[MIN_BUCKETS + 1];
+
+    /** The runs listed in each bucket, bucket after bucket. */
+    private int[] bucketRuns = new int[64];
+
+    /** Query in which each run was last collected. */
+    private int[] stamps = new int[64];
+
+    /** Number of the current query. */
+    private int stamp;
+
+    /** Runs collected by the last query. */
+    private int[] visible = new int[64];
+
+    /** Number of runs collected by the last query. */
+    private int visibleCount;
+
+    /**
+     * Builds the index for a snapshot unless it was already built for it.
+     * @param snapshot the snapshot to index, with at least two body cells.
+     */
+    public void load(GameSnapshot snapshot) {
+        int length = snapshot.getLength();
+        long head = ((long) snapshot.getX(0) << 32) | (snapshot.getY(0) & 0xFFFFFFFFL);
+        if (snapshot == this.snapshot && snapshot.getTicks() == ticks && length == this.length && head == this.head)
+            return;
+        this.snapshot = snapshot;
+        this.ticks = snapshot.getTicks();
+        this.length = length;
+        this.head = head;
+        findRuns(snapshot);
+        fillBuckets(snapshot);
+    }
+
+    /**
+     * Collects the runs that pass through the buckets overlapping the view, grown by a cell on every side so runs
+     * whose rounded ends reach into the view are included.
+     * @param viewport the visible part of the board.
+     */
+    public void query(Viewport viewport) {
+        visibleCount = 0;
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        int fromX = Math.max(0, (viewport.getMinX() - 1 - gridX) >> shift);
+        int toX = Math.min(bucketCols - 1, (viewport.getMaxX() + 1 - gridX) >> shift);
+        int fromY = Math.max(0, (viewport.getMinY() - 1 - gridY) >> shift);
+        int toY = Math.min(bucketRows - 1, (viewport.getMaxY() + 1 - gridY) >> shift);
+        for (int by = fromY; by <= toY; by++) {
+            for (int bx = fromX; bx <= toX; bx++) {
+                int bucket = by * bucketCols + bx;
+                for (int j = bucketStart[bucket]; j < bucketStart[bucket + 1]; j++) {
+                    int run = bucketRuns[j];
+                    if (stamps[run] != stamp) {
+                        stamps[run] = stamp;
+                        visible[visibleCount++] = run;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of runs collected by the last query.
+     * @return the number of runs.
+     */
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+
+    /**
+     * Gets a run collected by the last query.
+     * @param i the index of the run in the query, less than {@link #getVisibleCount()}.
+     * @return the run.
+     */
+    public int getVisible(int i) {
+        return visible[i];
+    }
+
+    /**
+     * Gets the body index at which a run starts, nearest the head.
+     * @param run the run.
+     * @return the body index.
+     */
+    public int getRunStart(int run) {
+        return runPoints[run];
+    }
+
+    /**
+     * Gets the body index at which a run ends, nearest the tail. The end of one run is the start of the next.
+     * @param run the run.
+     * @return the body index.
+     */
+    public int getRunEnd(int run) {
+        return runPoints[run + 1];
+    }
+
+    /**
+     * Gets the number of runs in the body.
+     * @return the number of runs.
+     */
+    public int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Splits the body into straight runs at every turn.
+     * @hidden
+     */
+    private void findRuns(GameSnapshot snapshot) {
+        int count = 0;
+        runPoints[count++] = 0;
+        int dx = snapshot.getX(1) - snapshot.getX(0);
+        int dy = snapshot.getY(1) - snapshot.getY(0);
+        for (int i = 1; i < length - 1; i++) {
+            int nextDx = snapshot.getX(i + 1) - snapshot.getX(i);
+            int nextDy = snapshot.getY(i + 1) - snapshot.getY(i);
+            if (nextDx != dx || nextDy != dy) {
+                runPoints = grow(runPoints, count + 2);
+                runPoints[count++] = i;
+                dx = nextDx;
+                dy = nextDy;
+            }
+        }
+        runPoints = grow(runPoints, count + 1);
+        runPoints[count] = length - 1;
+        runCount = count;
+        stamps = grow(stamps, runCount);
+        visible = grow(visible, runCount);
+    }
+
+    /**
+     * Sizes the bucket grid to the bounding box of the body and lists every run in the buckets it passes through.
+     * @hidden
+     */
+    private void fillBuckets(GameSnapshot snapshot) {
+        // Runs are straight, so their ends bound the body
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int k = 0; k <= runCount; k++) {
+            int x = snapshot.getX(runPoints[k]);
+            int y = snapshot.getY(runPoints[k]);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        gridX = minX;
+        gridY = minY;
+        long limit = Math.max(MIN_BUCKETS, (long) BUCKETS_PER_CELL * length);
+        shift = MIN_BUCKET_SHIFT;
+        while ((long) (((maxX - minX) >> shift) + 1) * (((maxY - minY) >> shift) + 1) > limit)
+            shift++;
+        bucketCols = ((maxX - minX) >> shift) + 1;
+        bucketRows = ((maxY - minY) >> shift) + 1;
+        int buckets = bucketCols * bucketRows;
+        bucketStart = grow(bucketStart, buckets + 1);
+        Arrays.fill(bucketStart, 0, buckets + 1, 0);
+
+        // Count the runs in each bucket, turn the counts into offsets, then place the runs
+        for (int run = 0; run < runCount; run++)
+            forEachBucket(snapshot, run, -1);
+        int total = 0;
+        for (int b = 0; b < buckets; b++) {
+            int count = bucketStart[b];
+            bucketStart[b] = total;
+            total += count;
+        }
+        bucketStart[buckets] = total;
+        bucketRuns = grow(bucketRuns, total);
+        for (int run = 0; run < runCount; run++)
+            forEachBucket(snapshot, run, run);
+        // Placing advanced every offset to the start of the next bucket, so shift them back by one bucket
+        System.arraycopy(bucketStart, 0, bucketStart, 1, buckets);
+        bucketStart[0] = 0;
+    }
+
+    /**
+     * Visits the buckets a run passes through, counting the run in each bucket if {@code place} is negative and
+     * otherwise placing it at the bucket's next free offset.
+     * @hidden
+     */
+    private void forEachBucket(GameSnapshot snapshot, int run, int place) {
+        int bx1 = (snapshot.getX(runPoints[run]) - gridX) >> shift;
+        int by1 = (snapshot.getY(runPoints[run]) - gridY) >> shift;
+        int bx2 = (snapshot.getX(runPoints[run + 1]) - gridX) >> shift;
+        int by2 = (snapshot.getY(runPoints[run + 1]) - gridY) >> shift;
+        for (int by = Math.min(by1, by2); by <= Math.max(by1, by2); by++) {
+            for (int bx = Math.min(bx1, bx2); bx <= Math.max(bx1, bx2); bx++) {
+                int bucket = by * bucketCols + bx;
+                if (place < 0)
+                    bucketStart[bucket]++;
+                else
+                    bucketRuns[bucketStart[bucket]++] = place;
+            }
+        }
+    }
+
+    /**
+     * Returns the array, or a larger copy of it if it holds fewer than {@code size} elements.
+     * @hidden
+     */
+    private static int[] grow(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+}
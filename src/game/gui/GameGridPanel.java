@@ -1,16 +1,33 @@
 package game.gui;
 
 import game.LoggerSetup;
-import game.core.GameEngine;
+import game.core.BoardAnalyzer;
+import game.core.GameSnapshot;
+import game.core.LevelMap;
+import game.metrics.GameMetrics;
+import game.metrics.GridPaintEvent;
 import game.utils.Constants;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.util.logging.Logger;
 
 /**
  * A custom JPanel that consists of a padding panel to add spacing around the grid and a grid that is repainted every
  * frame to represent the current state of the game.
+ * <p>
+ *     The grid is seen through a {@link Viewport}. A board that fits in the panel is drawn whole from a cached
+ *     background; a larger one scrolls with the head, and only the cells, apples and runs of the snake inside the view
+ *     are drawn, so the cost of a frame depends on the size of the panel rather than the size of the board. A
+ *     {@link Minimap} of the whole board is shown while it scrolls.
+ * </p><p>
+ *     The panel can be resized. Everything on the board is drawn in units of {@link Constants#CELL_SIZE} and scaled
+ *     so each cell covers a whole number of device pixels, taking the scale of the screen into account, and the board
+ *     is centred in the panel. The cached background is rendered at that size in device pixels by a
+ *     {@link BackgroundCache}, off the event dispatch thread.
+ * </p>
  */
 public class GameGridPanel extends JPanel {
 
@@ -20,10 +37,23 @@ public class GameGridPanel extends JPanel {
      */
     private static final Logger LOGGER = LoggerSetup.getLogger(GameGridPanel.class.getName());
 
+    /** Colour of the light cells of the grid. */
+    private static final Color LIGHT = new Color(170, 215, 81);
+
+    /** Colour of the dark cells of the grid. */
+    private static final Color DARK = new Color(162, 209, 73);
+
+    /** Colour of the border of a wall. */
+    private static final Color EDGE = new Color(87, 138, 52);
+
+    /** Colour of the stone of a wall. */
+    private static final Color STONE = new Color(74, 117, 44);
+
     /**
-     * A reference to the {@code gameEngine} of the current game loop.
+     * The snapshot drawn, handed over by the {@link SnakePanel} each frame, or {@code null} before the first one.
+     * Painting only reads from it, never from the live game. Only used on the event dispatch thread.
      */
-    private final GameEngine gameEngine;
+    private GameSnapshot snapshot;
 
     /**
      * The panel that encompasses the grid allowing for padding around the edges of the grid.
@@ -41,20 +71,62 @@ public class GameGridPanel extends JPanel {
     private final SnakeGraphics snkg;
 
     /**
-     * Creates a new {@code GameGridPanel} that updates based off the {@code GameEngine} passed.
-     * @param gameEngine a reference to the current {@code GameEngine}.
+     * Used to find the cells the snake can no longer reach when the danger overlay is shown.
+     */
+    private final BoardAnalyzer analyzer;
+
+    /**
+     * The performance overlay, drawn over the game while it is shown.
+     */
+    private final PerformanceHud hud;
+
+    /**
+     * Lowers the detail drawn when frames take too long to paint, and raises it again when there is time to spare.
+     */
+    private final QualityGovernor governor = new QualityGovernor();
+
+    /**
+     * The camera that decides which part of the board is drawn.
+     */
+    private final Viewport viewport = new Viewport();
+
+    /**
+     * The map of the whole board, shown while the board is larger than the panel.
+     */
+    private final Minimap minimap = new Minimap();
+
+    /**
+     * {@code true} if cells the snake can no longer reach should be highlighted.
+     */
+    private boolean showDanger;
+
+    /**
+     * {@code true} if the minimap should be shown while the board scrolls.
      */
-    GameGridPanel(GameEngine gameEngine) {
-        this.gameEngine = gameEngine;
+    private boolean showMinimap = true;
 
+    /**
+     * The checkered grid with the walls baked in, rendered again only when the level or the size of a cell changes.
+     */
+    private final BackgroundCache backgrounds = new BackgroundCache(this::repaint);
+
+    /**
+     * Creates a new {@code GameGridPanel} that draws the snapshots it is given.
+     */
+    GameGridPanel() {
         paddingPanel = new JPanel(new BorderLayout());
         paddingPanel.setBorder(BorderFactory.createEmptyBorder(Constants.PADDING_SIZE, Constants.PADDING_SIZE,
                 Constants.PADDING_SIZE, Constants.PADDING_SIZE));
         paddingPanel.setBackground(new Color(87, 138, 52));
 
         paddingPanel.add(this, BorderLayout.CENTER);
+        setBackground(paddingPanel.getBackground());
+        setPreferredSize(new Dimension(Constants.NUM_COLS * Constants.CELL_SIZE,
+                Constants.NUM_ROWS * Constants.CELL_SIZE));
         apg = new AppleGraphics();
         snkg = new SnakeGraphics();
+        analyzer = new BoardAnalyzer();
+        hud = new PerformanceHud();
         LOGGER.config("Created new GameGridPanel.");
     }
 
@@ -67,26 +139,236 @@ public class GameGridPanel extends JPanel {
     }
 
     /**
-     * Draws the grid with alternating colors and draws the apple and snake. If the game has ended, draw the dead snake.
+     * Sets the snapshot to draw and repaints the panel. The snapshot must stay unchanged until the next one is set.
+     * @param snapshot the snapshot to draw.
+     */
+    void setSnapshot(GameSnapshot snapshot) {
+        this.snapshot = snapshot;
+        repaint();
+    }
+
+    /**
+     * Shows or hides the danger overlay that highlights free cells the snake can no longer reach.
+     */
+    public void toggleDangerOverlay() {
+        showDanger = !showDanger;
+        LOGGER.fine("Danger overlay " + (showDanger ? "shown." : "hidden."));
+        repaint();
+    }
+
+    /**
+     * Shows or hides the minimap, which only appears on boards larger than the panel.
+     */
+    public void toggleMinimap() {
+        showMinimap = !showMinimap;
+        LOGGER.fine("Minimap " + (showMinimap ? "shown." : "hidden."));
+        repaint();
+    }
+
+    /**
+     * Shows or hides the performance overlay.
+     */
+    public void toggleHud() {
+        hud.toggle();
+        LOGGER.fine("Performance overlay " + (hud.isShown() ? "shown." : "hidden."));
+        repaint();
+    }
+
+    /**
+     * Gets the performance overlay, so the thread that advances the game can record its ticks while it is shown.
+     * @return the performance overlay.
+     */
+    PerformanceHud getHud() {
+        return hud;
+    }
+
+    /**
+     * Draws the current snapshot at the detail the {@link QualityGovernor} allows and, if it is shown, the performance
+     * overlay on top. Every frame is timed for the governor; the overlay is left out of the frame time.
      * @param g the {@code Graphics} object to protect that allows for only classes in the gui package to draw.
      */
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        GridPaintEvent event = new GridPaintEvent();
+        event.begin();
         super.paintComponent(g);
+        GameSnapshot snapshot = this.snapshot;
+        if (snapshot == null)
+            return;
         Graphics2D g2d = (Graphics2D) g;
-        // Enable anti-aliasing for smoother edges
+        apg.setAnimated(governor.isAppleAnimated());
+        snkg.setEyeTracking(governor.isEyeTracking());
+        snkg.setRounded(governor.isBodyRounded());
+        paintFrame(g2d, snapshot, getWidth(), getHeight());
+        if (snapshot.getLength() == 0)
+            return;
+        long end = System.nanoTime();
+        governor.recordFrame(end - start);
+        if (GameMetrics.ENABLED)
+            GameMetrics.recordFrame(end - start);
+        if (hud.isShown()) {
+            hud.recordFrame(end - start, end);
+            hud.draw(g2d, snapshot, governor.getQuality());
+        }
+        if (event.shouldCommit()) {
+            event.segmentsDrawn = snapshot.getLength();
+            event.foodDrawn = snapshot.getFoodCount();
+            event.tick = snapshot.getTicks();
+            event.commit();
+        }
+        LOGGER.finest("Repainted GameGridPanel.");
+    }
+
+    /**
+     * Moves the camera to follow the head and draws the part of the board it sees: the grid and walls, then the apple
+     * and snake. If the game has ended, draw the dead snake. The minimap goes on top while the board scrolls.
+     * @param g2d the graphics to draw on.
+     * @param snapshot the snapshot to draw.
+     * @param width the width of the area to draw in.
+     * @param height the height of the area to draw in.
+     */
+    void paintFrame(Graphics2D g2d, GameSnapshot snapshot, int width, int height) {
+        // Enable anti-aliasing for smoother edges, unless the frames are too slow for it
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, governor.isAntialiased()
+                ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        boolean alive = snapshot.getLength() > 0;
+        int cols = snapshot.getCols();
+        int rows = snapshot.getRows();
+        double deviceScale = g2d.getDeviceConfiguration().getDefaultTransform().getScaleX();
+        double cell = cellSize(cols, rows, width, height, deviceScale);
+        double zoom = cell / Constants.CELL_SIZE;
+        viewport.follow(cols, rows, (int) (width / zoom), (int) (height / zoom),
+                alive ? snapshot.getX(0) : 0, alive ? snapshot.getY(0) : 0);
+
+        AffineTransform panel = g2d.getTransform();
+        BufferedImage background = null;
+        if (!viewport.isScrolling()) {
+            // Centre the board on whole device pixels and copy the background onto them one to one
+            g2d.translate(Math.floor((width - cols * cell) / 2 * deviceScale) / deviceScale,
+                    Math.floor((height - rows * cell) / 2 * deviceScale) / deviceScale);
+            double cellPixels = cell * deviceScale;
+            background = backgrounds.get(snapshot.getLevel(), cols, rows, cellPixels);
+            if (background != null) {
+                AffineTransform board = g2d.getTransform();
+                g2d.scale(1 / deviceScale, 1 / deviceScale);
+                g2d.drawImage(background, 0, 0, (int) Math.ceil(cols * cellPixels), (int) Math.ceil(rows * cellPixels),
+                        null);
+                g2d.setTransform(board);
+            }
+        }
+        g2d.scale(zoom, zoom);
+        g2d.translate(-viewport.getMinX() * Constants.CELL_SIZE, -viewport.getMinY() * Constants.CELL_SIZE);
+        if (background == null)
+            drawCells(g2d, snapshot.getLevel(), viewport.getMinX(), viewport.getMinY(), viewport.getMaxX(),
+                    viewport.getMaxY());
+        if (alive) {
+            if (showDanger && cols == Constants.NUM_COLS && rows == Constants.NUM_ROWS)
+                drawDanger(g2d, snapshot);
+            apg.drawApple(g2d, snapshot, viewport);
+            snkg.drawSnake(g2d, snapshot, viewport);
+            if (snapshot.hasEnded())
+                snkg.kill();
+        }
+        g2d.setTransform(panel);
+        if (alive && showMinimap && viewport.isScrolling())
+            minimap.draw(g2d, snapshot, viewport, width, height);
+    }
+
+    /**
+     * Gets the size of a cell in pixels of the panel: the largest size at which the board fits and each cell covers a
+     * whole number of device pixels, or {@link Constants#CELL_SIZE} if that is smaller than
+     * {@link Constants#MIN_CELL_SIZE} and the board has to scroll.
+     * @hidden
+     */
+    private static double cellSize(int cols, int rows, int width, int height, double deviceScale) {
+        int cellPixels = (int) Math.min(width * deviceScale / cols, height * deviceScale / rows);
+        return cellPixels >= Constants.MIN_CELL_SIZE * deviceScale ? cellPixels / deviceScale : Constants.CELL_SIZE;
+    }
+
+    /**
+     * Draws the grid with alternating colors and the walls of a level into a new image the size of the board, with
+     * cells of {@link Constants#CELL_SIZE} pixels.
+     * @param level the level whose walls are drawn, or {@code null} for the open board.
+     * @return the background image.
+     */
+    static BufferedImage renderBackground(LevelMap level) {
+        return renderBackground(level, level == null ? Constants.NUM_COLS : level.getCols(),
+                level == null ? Constants.NUM_ROWS : level.getRows(), Constants.CELL_SIZE);
+    }
+
+    /**
+     * Draws the grid with alternating colors and the walls of a level into a new image the size of the board. Safe to
+     * call from any thread.
+     * @param level the level whose walls are drawn, or {@code null} for the open board.
+     * @param cols the number of columns on the board.
+     * @param rows the number of rows on the board.
+     * @param cellPixels the size of a cell in pixels of the image.
+     * @return the background image.
+     */
+    static BufferedImage renderBackground(LevelMap level, int cols, int rows, double cellPixels) {
+        BufferedImage image = new BufferedImage((int) Math.ceil(cols * cellPixels), (int) Math.ceil(rows * cellPixels),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        for (int i = 0; i < Constants.NUM_ROWS; i += 1) {
-            for (int j = 0; j < Constants.NUM_COLS; j += 1) {
-                g2d.setColor((i + j) % 2 == 0 ? new Color(170, 215, 81) : new Color(162, 209, 73));
+        g2d.scale(cellPixels / Constants.CELL_SIZE, cellPixels / Constants.CELL_SIZE);
+        drawCells(g2d, level, 0, 0, cols - 1, rows - 1);
+        g2d.dispose();
+        LOGGER.fine("Rendered background with " + (level == null ? 0 : level.getWallCount()) + " walls at "
+                + image.getWidth() + "x" + image.getHeight() + " pixels.");
+        return image;
+    }
+
+    /**
+     * Draws the grid with alternating colors and the walls of a level over a rectangle of cells.
+     * @param g2d the graphics to draw on, with the board's origin at the origin.
+     * @param level the level whose walls are drawn, or {@code null} for the open board.
+     * @param minX the leftmost column to draw.
+     * @param minY the topmost row to draw.
+     * @param maxX the rightmost column to draw.
+     * @param maxY the bottom row to draw.
+     */
+    private static void drawCells(Graphics2D g2d, LevelMap level, int minX, int minY, int maxX, int maxY) {
+        for (int i = minY; i <= maxY; i += 1) {
+            for (int j = minX; j <= maxX; j += 1) {
+                g2d.setColor((i + j) % 2 == 0 ? LIGHT : DARK);
                 g2d.fillRect(j * Constants.CELL_SIZE, i * Constants.CELL_SIZE,
                                   Constants.CELL_SIZE, Constants.CELL_SIZE);
             }
         }
-        apg.drawApple(g2d, gameEngine.getFood());
-        snkg.drawSnake(g2d, gameEngine.getSnake(), gameEngine.getFood());
-        if (gameEngine.hasEnded())
-            snkg.kill();
-        LOGGER.finest("Repainted GameGridPanel.");
+        if (level != null) {
+            int arc = Constants.CELL_SIZE / 4;
+            for (int i = minY; i <= maxY; i += 1) {
+                for (int j = minX; j <= maxX; j += 1) {
+                    if (!level.isWall(j, i))
+                        continue;
+                    g2d.setColor(EDGE);
+                    g2d.fillRect(j * Constants.CELL_SIZE, i * Constants.CELL_SIZE,
+                                      Constants.CELL_SIZE, Constants.CELL_SIZE);
+                    g2d.setColor(STONE);
+                    g2d.fillRoundRect(j * Constants.CELL_SIZE + 2, i * Constants.CELL_SIZE + 2,
+                            Constants.CELL_SIZE - 4, Constants.CELL_SIZE - 4, arc, arc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Shades every free cell the head cannot reach. If the snake has no safe move left the whole board is tinted.
+     * @param g2d the graphics of this panel.
+     * @param snapshot the snapshot being drawn.
+     */
+    private void drawDanger(Graphics2D g2d, GameSnapshot snapshot) {
+        analyzer.load(snapshot);
+        boolean trapped = analyzer.isTrapped();
+        analyzer.reachableArea();
+        g2d.setColor(new Color(220, 40, 40, trapped ? 110 : 70));
+        for (int i = 0; i < Constants.NUM_ROWS; i += 1) {
+            for (int j = 0; j < Constants.NUM_COLS; j += 1) {
+                if (analyzer.isFree(j, i) && (trapped || !analyzer.isReachable(j, i)))
+                    g2d.fillRect(j * Constants.CELL_SIZE, i * Constants.CELL_SIZE,
+                                      Constants.CELL_SIZE, Constants.CELL_SIZE);
+            }
+        }
     }
 }
@@ -1,7 +1,6 @@
 package game.gui;
 
 import game.LoggerSetup;
-import game.core.GameEngine;
 import game.utils.Constants;
 import game.utils.HighScoreManager;
 
@@ -21,9 +20,13 @@ public class GameOverDialog extends JDialog {
      */
     private static final Logger LOGGER = LoggerSetup.getLogger(GameOverDialog.class.getName());
     /**
-     * An instance of the current {@code GameEngine}.
+     * The score of the game that ended, taken from its final snapshot.
      */
-    private final GameEngine gameEngine;
+    private final int score;
+    /**
+     * Starts a new game. The game runs on the simulation thread, so this hands the restart over to it.
+     */
+    private final Runnable restart;
     /**
      * An instance of the current {@code HighScoreManager}.
      */
@@ -31,12 +34,14 @@ public class GameOverDialog extends JDialog {
 
     /**
      * Creates a new {@code GameOverDialog}.
-     * @param gameEngine a reference to the current {@code GameEngine}.
+     * @param score the score of the game that ended.
+     * @param restart starts a new game when the player chooses to play again.
      * @param hsm a reference to the current {@code HighScoreManager}.
      */
-    public GameOverDialog(GameEngine gameEngine, HighScoreManager hsm) {
+    public GameOverDialog(int score, Runnable restart, HighScoreManager hsm) {
         LOGGER.fine("New GameOverDialog created.");
-        this.gameEngine = gameEngine;
+        this.score = score;
+        this.restart = restart;
         this.hsm = hsm;
         initalizeDialog();
         addButtons();
@@ -117,7 +122,7 @@ public class GameOverDialog extends JDialog {
      */
     private void saveScore(String playerName) {
         if (!playerName.isBlank()) { // checks if name only contains whitespace
-            hsm.saveHighScore(gameEngine.getScore(), playerName);
+            hsm.saveHighScore(score, playerName);
             showLeaderBoard();
         } else {
             JOptionPane.showMessageDialog(this, "Please enter a name.", "Name Required", JOptionPane.WARNING_MESSAGE);
@@ -129,7 +134,7 @@ public class GameOverDialog extends JDialog {
      * Logic for the restart button. Starts a new game and closes this window.
      */
     private void restartGame() {
-        gameEngine.startGame(); // Restart game logic
+        restart.run(); // Restart game logic
         this.dispose(); // Close dialog
         LOGGER.finer("Play Again button pressed.");
     }
@@ -154,6 +159,6 @@ public class GameOverDialog extends JDialog {
      * Creates a new {@code GameOverDialog}. Used when exiting the leaderboard.
      */
     public void refresh() {
-        new GameOverDialog(gameEngine, hsm);
+        new GameOverDialog(score, restart, hsm);
     }
 }
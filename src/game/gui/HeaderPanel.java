@@ -21,6 +21,11 @@ public class HeaderPanel extends JPanel {
      */
     private final JLabel scoreLabel;
 
+    /**
+     * A {@code JLabel} that shows the fast-forward speed and tick rate, empty at normal speed.
+     */
+    private final JLabel speedLabel;
+
     /**
      * Creates new header panel with the score and the apple icon
      * @param apple an {@code ImageIcon} of a small apple
@@ -33,8 +38,13 @@ public class HeaderPanel extends JPanel {
         scoreLabel = new JLabel("0");
         scoreLabel.setFont(new Font("SansSerif", Font.BOLD, 16));
 
+        speedLabel = new JLabel();
+        speedLabel.setFont(new Font("SansSerif", Font.PLAIN, 14));
+        speedLabel.setBorder(BorderFactory.createEmptyBorder(0, 24, 0, 0));
+
         add(new JLabel(apple));
         add(scoreLabel);
+        add(speedLabel);
         LOGGER.fine("Created new HeaderPanel.");
     }
 
@@ -45,4 +55,12 @@ public class HeaderPanel extends JPanel {
     public void updateScore(int newScore) {
         scoreLabel.setText(String.valueOf(newScore));
     }
+
+    /**
+     * Shows the fast-forward speed and tick rate, or hides them when given an empty string.
+     * @param text the text to show.
+     */
+    public void updateSpeed(String text) {
+        speedLabel.setText(text);
+    }
 }
@@ -0,0 +1,240 @@
+package game.gui;
+
+import game.core.GameSnapshot;
+import game.core.LevelMap;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A small map of the whole board drawn in a corner of the {@link GameGridPanel} when the board is larger than the
+ * view, showing the walls, the snake, the food and the part of the board on screen.
+ * <p>
+ *     The map is a bitmap with one pixel per square block of cells. The walls are baked into a base copy of the pixels
+ *     when the level changes, and the snake is kept up to date incrementally: each pixel counts the body cells inside
+ *     its block, and a ring of the pixels under the body, from head to tail, mirrors the snake. When the snake has
+ *     moved since the last frame, only the cells it entered are added at the head and the cells it left removed at the
+ *     tail, so a frame costs time proportional to the distance moved rather than the length or the size of the board.
+ *     Anything the ring cannot follow, such as a new game, rebuilds it from the snapshot.
+ * </p>
+ */
+class Minimap {
+    /** Longest side of the map in screen pixels. */
+    private static final int MAX_SIZE = 160;
+
+    /** Gap between the map and the edge of the panel. */
+    private static final int MARGIN = 8;
+
+    /** Colour of free cells. */
+    private static final int FLOOR = 0xC0AAD751;
+
+    /** Colour of walls. */
+    private static final int WALL = 0xE04A752C;
+
+    /** Colour of the snake. */
+    private static final int BODY = 0xFF5688FF;
+
+    /** Colour of the food. */
+    private static final Color FOOD_COLOR = new Color(251, 79, 34);
+
+    /** Colour of the outline of the view. */
+    private static final Color VIEW_COLOR = Color.WHITE;
+
+    /** Level the map was built for. */
+    private LevelMap level;
+
+    /** Number of columns on the board. */
+    private int cols;
+
+    /** Number of rows on the board. */
+    private int rows;
+
+    /** Number of cells along each side of the block a pixel stands for. */
+    private int scale;
+
+    /** Width of the bitmap in pixels. */
+    private int width;
+
+    /** Height of the bitmap in pixels. */
+    private int height;
+
+    /** Screen pixels per bitmap pixel. */
+    private int zoom;
+
+    /** The bitmap that is drawn. */
+    private BufferedImage image;
+
+    /** Pixels of {@code image}, written directly. */
+    private int[] pixels;
+
+    /** Pixels of the board without the snake. */
+    private int[] base;
+
+    /** Number of body cells in each pixel's block. */
+    private int[] counts;
+
+    /** Pixel under each body cell, from the head at {@code ringHead} towards the tail, or {@code -1} if off the board. */
+    private int[] ring = new int[64];
+
+    /** Slot of the head in {@code ring}. */
+    private int ringHead;
+
+    /** Number of body cells in {@code ring}. */
+    private int ringSize;
+
+    /** Tick of the snapshot the ring mirrors, or {@code -1} if it mirrors none. */
+    private int ringTicks = -1;
+
+    /** Column of the head the ring mirrors. */
+    private int headX;
+
+    /** Row of the head the ring mirrors. */
+    private int headY;
+
+    /**
+     * Brings the map up to date with a snapshot and draws it in the bottom right corner of the panel, with the food
+     * and an outline of the view on top.
+     * @param g2d the graphics of the panel, untranslated.
+     * @param snapshot the snapshot being drawn.
+     * @param viewport the visible part of the board.
+     * @param panelWidth the width of the panel.
+     * @param panelHeight the height of the panel.
+     */
+    public void draw(Graphics2D g2d, GameSnapshot snapshot, Viewport viewport, int panelWidth, int panelHeight) {
+        update(snapshot);
+        int x = panelWidth - width * zoom - MARGIN;
+        int y = panelHeight - height * zoom - MARGIN;
+        g2d.drawImage(image, x, y, width * zoom, height * zoom, null);
+
+        int dot = Math.max(2, zoom);
+        g2d.setColor(FOOD_COLOR);
+        for (int i = 0; i < snapshot.getFoodCount(); i++) {
+            int cell = snapshot.getFoodCell(i);
+            g2d.fillRect(x + cell % cols / scale * zoom, y + cell / cols / scale * zoom, dot, dot);
+        }
+        g2d.setColor(VIEW_COLOR);
+        g2d.drawRect(x + viewport.getMinX() * zoom / scale, y + viewport.getMinY() * zoom / scale,
+                (viewport.getMaxX() - viewport.getMinX() + 1) * zoom / scale,
+                (viewport.getMaxY() - viewport.getMinY() + 1) * zoom / scale);
+    }
+
+    /**
+     * Updates the snake in the bitmap, moving only its ends when it can, and rebuilds the bitmap if the board changed.
+     * @param snapshot the snapshot to show.
+     */
+    void update(GameSnapshot snapshot) {
+        if (image == null || snapshot.getLevel() != level || snapshot.getCols() != cols || snapshot.getRows() != rows)
+            build(snapshot.getLevel(), snapshot.getCols(), snapshot.getRows());
+        int length = snapshot.getLength();
+        int moved = snapshot.getTicks() - ringTicks;
+        if (ringTicks >= 0 && moved == 0 && length == ringSize && snapshot.getX(0) == headX
+                && snapshot.getY(0) == headY)
+            return;
+        // The cell that was the head must now be the moved-th cell, and the cells behind it must have been there before
+        if (ringTicks >= 0 && moved > 0 && moved < length && length - moved <= ringSize
+                && snapshot.getX(moved) == headX && snapshot.getY(moved) == headY) {
+            grow(ringSize + moved);
+            for (int i = moved - 1; i >= 0; i--)
+                push(pixelOf(snapshot.getX(i), snapshot.getY(i)));
+            while (ringSize > length)
+                pop();
+        } else {
+            clear();
+            grow(length);
+            for (int i = length - 1; i >= 0; i--)
+                push(pixelOf(snapshot.getX(i), snapshot.getY(i)));
+        }
+        ringTicks = snapshot.getTicks();
+        headX = snapshot.getX(0);
+        headY = snapshot.getY(0);
+    }
+
+    /**
+     * Sizes the bitmap for a board and bakes the walls into its base pixels.
+     * @hidden
+     */
+    private void build(LevelMap level, int cols, int rows) {
+        this.level = level;
+        this.cols = cols;
+        this.rows = rows;
+        scale = Math.max(1, (Math.max(cols, rows) + MAX_SIZE - 1) / MAX_SIZE);
+        width = (cols + scale - 1) / scale;
+        height = (rows + scale - 1) / scale;
+        zoom = Math.max(1, MAX_SIZE / Math.max(width, height));
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        base = new int[width * height];
+        counts = new int[width * height];
+        Arrays.fill(base, FLOOR);
+        if (level != null) {
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < cols; x++) {
+                    if (level.isWall(x, y))
+                        base[y / scale * width + x / scale] = WALL;
+                }
+            }
+        }
+        System.arraycopy(base, 0, pixels, 0, pixels.length);
+        ringSize = 0;
+        ringTicks = -1;
+    }
+
+    /**
+     * Removes the whole snake from the bitmap.
+     * @hidden
+     */
+    private void clear() {
+        while (ringSize > 0)
+            pop();
+    }
+
+    /**
+     * Adds a cell in front of the head.
+     * @hidden
+     */
+    private void push(int pixel) {
+        ringHead = (ringHead - 1) & (ring.length - 1);
+        ring[ringHead] = pixel;
+        ringSize++;
+        if (pixel >= 0 && counts[pixel]++ == 0)
+            pixels[pixel] = BODY;
+    }
+
+    /**
+     * Removes the cell at the tail.
+     * @hidden
+     */
+    private void pop() {
+        ringSize--;
+        int pixel = ring[(ringHead + ringSize) & (ring.length - 1)];
+        if (pixel >= 0 && --counts[pixel] == 0)
+            pixels[pixel] = base[pixel];
+    }
+
+    /**
+     * Makes room in the ring for the given number of cells.
+     * @hidden
+     */
+    private void grow(int needed) {
+        if (needed <= ring.length)
+            return;
+        int capacity = Integer.highestOneBit(needed - 1) << 1;
+        int[] larger = new int[capacity];
+        for (int i = 0; i < ringSize; i++)
+            larger[i] = ring[(ringHead + i) & (ring.length - 1)];
+        ring = larger;
+        ringHead = 0;
+    }
+
+    /**
+     * Gets the pixel a cell falls in, or {@code -1} if the cell is off the board.
+     * @hidden
+     */
+    private int pixelOf(int x, int y) {
+        if (x < 0 || y < 0 || x >= cols || y >= rows)
+            return -1;
+        return y / scale * width + x / scale;
+    }
+}
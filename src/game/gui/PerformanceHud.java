@@ -0,0 +1,314 @@
+package game.gui;
+
+import game.core.GameSnapshot;
+import game.metrics.GameMetrics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * A debug overlay drawn on top of the {@link GameGridPanel} that shows the frame rate, frame and tick times as rolling
+ * sparklines, the bytes allocated per tick, the garbage collection count, the snake length and the rendering quality.
+ * <p>
+ *     The overlay is meant to be left on while measuring, so it must not disturb what it measures. Samples go into
+ *     preallocated rings, the sparklines are drawn from reused point arrays and the text is formatted into a reused
+ *     character buffer, so the overlay makes no garbage of its own and only the few bytes Java2D allocates per call
+ *     remain. Ticks are recorded on the simulation thread and frames on the event dispatch thread; each ring has a
+ *     single writer and a torn read only misplaces one point of a graph.
+ * </p>
+ */
+class PerformanceHud {
+    /** Number of samples shown in each sparkline. */
+    private static final int SAMPLES = 120;
+
+    /** Nanoseconds between refreshes of the garbage collection count. */
+    private static final long GC_REFRESH_NANOS = 500_000_000L;
+
+    /** Width of the overlay. */
+    private static final int WIDTH = 200;
+
+    /** Height of each sparkline. */
+    private static final int GRAPH_HEIGHT = 28;
+
+    /** Height of the overlay: five lines of text and two sparklines. */
+    private static final int HEIGHT = 5 * 14 + 2 * (GRAPH_HEIGHT + 4) + 8;
+
+    /** Background of the overlay. */
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+
+    /** Colour of the frame time sparkline. */
+    private static final Color FRAME_COLOR = new Color(120, 220, 120);
+
+    /** Colour of the tick time sparkline. */
+    private static final Color TICK_COLOR = new Color(120, 170, 255);
+
+    /** Font of the text. */
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+    /**
+     * The translucent backdrop, drawn once. Filling a translucent rectangle every frame allocates a mask in the
+     * software pipeline, while copying an image does not.
+     */
+    private final BufferedImage backdrop = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+    /** Garbage collectors of the JVM, looked up once. */
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    /** Time taken by recent frames in microseconds. */
+    private final float[] frameMicros = new float[SAMPLES];
+
+    /** Time at which recent frames were drawn in nanoseconds, for the frame rate. */
+    private final long[] frameTimes = new long[SAMPLES];
+
+    /** Number of frames recorded. */
+    private int frames;
+
+    /** Time taken by recent ticks in microseconds. Written on the simulation thread. */
+    private final float[] tickMicros = new float[SAMPLES];
+
+    /** Bytes allocated by recent ticks. Written on the simulation thread. */
+    private final float[] tickBytes = new float[SAMPLES];
+
+    /** Number of ticks recorded. Written after the samples so the reader sees them. */
+    private volatile int ticks;
+
+    /** {@code true} while the overlay is shown and ticks should be measured. */
+    private volatile boolean shown;
+
+    /** Garbage collections so far, refreshed every {@link #GC_REFRESH_NANOS}. */
+    private long gcCount;
+
+    /** Time of the last refresh of {@code gcCount}. */
+    private long gcRefreshed;
+
+    /** X coordinates of a sparkline. */
+    private final int[] xPoints = new int[SAMPLES];
+
+    /** Y coordinates of a sparkline. */
+    private final int[] yPoints = new int[SAMPLES];
+
+    /** Text of the line being drawn. */
+    private final char[] text = new char[64];
+
+    /** Number of characters in {@code text}. */
+    private int textLength;
+
+    /**
+     * Creates a hidden overlay.
+     */
+    PerformanceHud() {
+        Graphics2D g2d = backdrop.createGraphics();
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(0, 0, WIDTH, HEIGHT);
+        g2d.dispose();
+    }
+
+    /**
+     * Shows the overlay if it is hidden and hides it otherwise.
+     */
+    public void toggle() {
+        shown = !shown;
+    }
+
+    /**
+     * Returns {@code true} if the overlay is shown. Safe to call from any thread.
+     * @return true if the overlay is shown, false otherwise.
+     */
+    public boolean isShown() {
+        return shown;
+    }
+
+    /**
+     * Records a tick. Must only be called from the thread that advances the game.
+     * @param nanos the time the tick took.
+     * @param bytes the bytes allocated during the tick.
+     */
+    public void recordTick(long nanos, long bytes) {
+        int i = ticks % SAMPLES;
+        tickMicros[i] = nanos / 1000f;
+        tickBytes[i] = bytes;
+        ticks = ticks + 1;
+    }
+
+    /**
+     * Records a frame. Must only be called on the event dispatch thread.
+     * @param nanos the time the frame took to draw.
+     * @param now the time the frame was drawn.
+     */
+    public void recordFrame(long nanos, long now) {
+        int i = frames % SAMPLES;
+        frameMicros[i] = nanos / 1000f;
+        frameTimes[i] = now;
+        frames++;
+    }
+
+    /**
+     * Draws the overlay in the top left corner. Must only be called on the event dispatch thread.
+     * @param g2d the graphics of the {@link GameGridPanel}.
+     * @param snapshot the snapshot being drawn, used for the snake length.
+     * @param quality the level of detail the frame was drawn at.
+     */
+    public void draw(Graphics2D g2d, GameSnapshot snapshot, QualityGovernor.Quality quality) {
+        long now = System.nanoTime();
+        if (now - gcRefreshed >= GC_REFRESH_NANOS) {
+            long count = 0;
+            for (int i = 0; i < collectors.size(); i++)
+                count += Math.max(0, collectors.get(i).getCollectionCount());
+            gcCount = count;
+            gcRefreshed = now;
+        }
+        int tickCount = ticks;
+
+        int x = 6;
+        int y = 6;
+        g2d.drawImage(backdrop, x, y, null);
+        g2d.setFont(FONT);
+        int lineX = x + 6;
+        int lineY = y + 14;
+
+        g2d.setColor(FRAME_COLOR);
+        clear();
+        append("FPS ").append(Math.round(frameRate(now))).append("  frame ").appendFixed(latest(frameMicros, frames))
+                .append(" ms");
+        flush(g2d, lineX, lineY);
+        lineY += 4;
+        drawSparkline(g2d, frameMicros, frames, lineX, lineY, WIDTH - 12);
+        lineY += GRAPH_HEIGHT + 14;
+
+        g2d.setColor(TICK_COLOR);
+        clear();
+        append("tick ").appendFixed(latest(tickMicros, tickCount)).append(" ms  alloc ")
+                .append(Math.round(latest(tickBytes, tickCount))).append(" B");
+        flush(g2d, lineX, lineY);
+        lineY += 4;
+        drawSparkline(g2d, tickMicros, tickCount, lineX, lineY, WIDTH - 12);
+        lineY += GRAPH_HEIGHT + 14;
+
+        g2d.setColor(Color.WHITE);
+        clear();
+        append("GC ").append(gcCount).append("  length ").append(snapshot.getLength());
+        flush(g2d, lineX, lineY);
+        lineY += 14;
+        clear();
+        append("ticks ").append(snapshot.getTicks()).append("  metrics ").append(GameMetrics.ENABLED ? "on" : "off");
+        flush(g2d, lineX, lineY);
+        lineY += 14;
+        clear();
+        append("quality ").append(quality.name());
+        flush(g2d, lineX, lineY);
+    }
+
+    /**
+     * Gets the frame rate over the frames drawn in the last second.
+     * @hidden
+     */
+    private double frameRate(long now) {
+        int n = Math.min(frames, SAMPLES);
+        int counted = 0;
+        long oldest = now;
+        for (int k = 1; k <= n; k++) {
+            long time = frameTimes[(frames - k) % SAMPLES];
+            if (now - time > 1_000_000_000L)
+                break;
+            counted++;
+            oldest = time;
+        }
+        if (counted < 2)
+            return counted;
+        return (counted - 1) * 1e9 / Math.max(1, now - oldest);
+    }
+
+    /**
+     * Gets the most recent sample of a ring.
+     * @hidden
+     */
+    private static float latest(float[] ring, int count) {
+        return count == 0 ? 0 : ring[(count - 1) % SAMPLES];
+    }
+
+    /**
+     * Draws the recent samples of a ring as a polyline scaled to its largest sample, oldest on the left.
+     * @hidden
+     */
+    private void drawSparkline(Graphics2D g2d, float[] ring, int count, int x, int y, int width) {
+        int n = Math.min(count, SAMPLES);
+        if (n < 2)
+            return;
+        float max = 1;
+        for (int k = 0; k < n; k++)
+            max = Math.max(max, ring[k]);
+        for (int k = 0; k < n; k++) {
+            float value = ring[(count - n + k) % SAMPLES];
+            xPoints[k] = x + k * width / (SAMPLES - 1);
+            yPoints[k] = y + GRAPH_HEIGHT - Math.round(value / max * GRAPH_HEIGHT);
+        }
+        g2d.drawPolyline(xPoints, yPoints, n);
+    }
+
+    /**
+     * Empties the text buffer.
+     * @hidden
+     */
+    private void clear() {
+        textLength = 0;
+    }
+
+    /**
+     * Appends a string to the text buffer.
+     * @hidden
+     */
+    private PerformanceHud append(String s) {
+        int n = Math.min(s.length(), text.length - textLength);
+        s.getChars(0, n, text, textLength);
+        textLength += n;
+        return this;
+    }
+
+    /**
+     * Appends a whole number to the text buffer.
+     * @hidden
+     */
+    private PerformanceHud append(long value) {
+        if (value < 0) {
+            append("-");
+            value = -value;
+        }
+        int start = textLength;
+        do {
+            if (textLength == text.length)
+                break;
+            text[textLength++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        // Digits were written least significant first
+        for (int i = start, j = textLength - 1; i < j; i++, j--) {
+            char c = text[i];
+            text[i] = text[j];
+            text[j] = c;
+        }
+        return this;
+    }
+
+    /**
+     * Appends microseconds to the text buffer as milliseconds with two decimals.
+     * @hidden
+     */
+    private PerformanceHud appendFixed(float micros) {
+        long hundredths = Math.round(micros / 10);
+        append(hundredths / 100).append(".");
+        if (hundredths % 100 < 10)
+            append("0");
+        return append(hundredths % 100);
+    }
+
+    /**
+     * Draws the text buffer.
+     * @hidden
+     */
+    private void flush(Graphics2D g2d, int x, int y) {
+        g2d.drawChars(text, 0, textLength, x, y);
+    }
+}
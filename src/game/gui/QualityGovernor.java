@@ -0,0 +1,200 @@
+package game.gui;
+
+import game.LoggerSetup;
+
+import java.util.logging.Logger;
+
+/**
+ * Chooses how much detail the {@link GameGridPanel} draws from the time recent frames took to paint, so slow machines
+ * keep their frame rate and fast ones keep every effect.
+ * <p>
+ *     Frames are judged in windows of {@link #WINDOW} frames. A window in which {@link #MISS_LIMIT} or more frames
+ *     went over the budget lowers the quality by one {@link Quality step}. Raising it needs more: every frame of
+ *     several windows in a row must have taken less than {@link #HEADROOM} of the budget. If the window right after a
+ *     raise misses the budget, the raise is undone and the number of calm windows needed before the next try doubles,
+ *     so a machine that sits near the budget settles instead of flickering between two levels; a raise that holds
+ *     halves it again.
+ * </p>
+ * The budget is {@value #DEFAULT_BUDGET_MICROS} microseconds unless the {@code game.frame.budget} system property gives
+ * another number of microseconds. Must only be used on the event dispatch thread.
+ */
+class QualityGovernor {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(QualityGovernor.class.getName());
+
+    /** Budget for painting a frame, half of a frame at 60 Hz, used unless {@code game.frame.budget} is set. */
+    static final long DEFAULT_BUDGET_MICROS = 8_000;
+
+    /** Number of frames in a window. */
+    static final int WINDOW = 30;
+
+    /** Number of frames over the budget in a window that lowers the quality. */
+    static final int MISS_LIMIT = 3;
+
+    /** Fraction of the budget every frame of a window must stay under to count towards raising the quality. */
+    static final double HEADROOM = 0.5;
+
+    /** Fewest calm windows needed before the quality is raised. */
+    private static final int MIN_PATIENCE = 2;
+
+    /** Most calm windows needed before the quality is raised. */
+    private static final int MAX_PATIENCE = 64;
+
+    /**
+     * Levels of detail, from everything drawn to the cheapest frame. Each level also keeps the savings of the levels
+     * before it.
+     */
+    enum Quality {
+        /** Antialiasing, pulsing apples with glare, pupils that follow the food and rounded body. */
+        FULL,
+        /** Antialiasing is switched off. */
+        NO_ANTIALIASING,
+        /** Apples stay at one size and have no glare. */
+        STATIC_APPLE,
+        /** Pupils look straight ahead instead of at the food. */
+        STATIC_EYES,
+        /** The body is drawn with square corners and ends. */
+        SIMPLE_SEGMENTS
+    }
+
+    /** Shared level values to avoid copying the array on every change. */
+    private static final Quality[] LEVELS = Quality.values();
+
+    /** Budget for painting a frame. */
+    private final long budgetNanos;
+
+    /** Current level. */
+    private Quality quality = Quality.FULL;
+
+    /** Frames recorded in the current window. */
+    private int frames;
+
+    /** Frames over the budget in the current window. */
+    private int misses;
+
+    /** Longest frame in the current window. */
+    private long slowest;
+
+    /** Calm windows in a row. */
+    private int calmWindows;
+
+    /** Calm windows in a row needed before the quality is raised. */
+    private int patience = MIN_PATIENCE;
+
+    /** {@code true} if the quality was raised at the end of the previous window. */
+    private boolean probing;
+
+    /**
+     * Creates a governor at full quality with the budget from the {@code game.frame.budget} system property.
+     */
+    QualityGovernor() {
+        this(Math.max(1, Long.getLong("game.frame.budget", DEFAULT_BUDGET_MICROS)) * 1_000);
+    }
+
+    /**
+     * Creates a governor at full quality.
+     * @param budgetNanos the budget for painting a frame in nanoseconds.
+     * @throws IllegalArgumentException if the budget is not positive.
+     */
+    QualityGovernor(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive: " + budgetNanos);
+        }
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Records the time a frame took to paint and, at the end of a window, lowers or raises the quality.
+     * @param nanos the time the frame took.
+     */
+    public void recordFrame(long nanos) {
+        frames++;
+        if (nanos > budgetNanos)
+            misses++;
+        slowest = Math.max(slowest, nanos);
+        if (frames < WINDOW)
+            return;
+
+        if (misses >= MISS_LIMIT) {
+            // A raise that could not be kept makes the next one wait twice as long
+            if (probing)
+                patience = Math.min(MAX_PATIENCE, patience * 2);
+            calmWindows = 0;
+            change(-1);
+        } else if (slowest < budgetNanos * HEADROOM) {
+            if (++calmWindows >= patience && quality != Quality.FULL) {
+                calmWindows = 0;
+                change(1);
+                probing = true;
+                frames = misses = 0;
+                slowest = 0;
+                return;
+            }
+        } else {
+            calmWindows = 0;
+        }
+        // A raise that held makes the next one come sooner again
+        if (probing && misses < MISS_LIMIT)
+            patience = Math.max(MIN_PATIENCE, patience / 2);
+        probing = false;
+        frames = misses = 0;
+        slowest = 0;
+    }
+
+    /**
+     * Gets the current level.
+     * @return the level.
+     */
+    public Quality getQuality() {
+        return quality;
+    }
+
+    /**
+     * Returns {@code true} if antialiasing should be switched on.
+     * @return true if antialiasing is on at this level.
+     */
+    public boolean isAntialiased() {
+        return quality.compareTo(Quality.NO_ANTIALIASING) < 0;
+    }
+
+    /**
+     * Returns {@code true} if apples should pulse and have glare.
+     * @return true if apples are animated at this level.
+     */
+    public boolean isAppleAnimated() {
+        return quality.compareTo(Quality.STATIC_APPLE) < 0;
+    }
+
+    /**
+     * Returns {@code true} if pupils should follow the food.
+     * @return true if eyes track the food at this level.
+     */
+    public boolean isEyeTracking() {
+        return quality.compareTo(Quality.STATIC_EYES) < 0;
+    }
+
+    /**
+     * Returns {@code true} if the body should have rounded corners and ends.
+     * @return true if the body is rounded at this level.
+     */
+    public boolean isBodyRounded() {
+        return quality.compareTo(Quality.SIMPLE_SEGMENTS) < 0;
+    }
+
+    /**
+     * Moves the level by one step, lower detail for a negative step and higher for a positive one.
+     * @hidden
+     */
+    private void change(int step) {
+        int level = quality.ordinal() - step;
+        if (level < 0 || level >= LEVELS.length)
+            return;
+        Quality previous = quality;
+        quality = LEVELS[level];
+        LOGGER.fine(() -> "Rendering quality " + (step < 0 ? "lowered" : "raised") + " from " + previous + " to "
+                + quality + " after a window with slowest frame " + slowest / 1000 + " us.");
+    }
+}
@@ -0,0 +1,258 @@
+package game.gui;
+
+import game.LoggerSetup;
+import game.core.GameSnapshot;
+import game.core.LevelMap;
+import game.metrics.GameMetrics;
+import game.utils.Constants;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmarks the renderers by drawing thousands of frames into an offscreen image, without a window, so it runs on
+ * machines that have no display. The snake renderers are measured on made up snakes of growing length laid out in a
+ * straight line, a zigzag and a spiral, while the apples and the background are measured once since they do not depend
+ * on the snake. The snake is drawn both cell by cell and as a single path. Each case reports the time and the bytes
+ * allocated per frame.
+ * <p>
+ *     The canvas is a fixed size, so most of a long snake falls outside it. Drawn without a camera, its segments are
+ *     still handed to Java2D and clipped there, which is the cost a renderer pays for a snake larger than the window.
+ *     The camera cases put each snake on a board just large enough to hold it and draw through a {@link Viewport}
+ *     that follows the head, first the snake alone and then the whole frame with the grid and the minimap, which
+ *     should cost about the same whatever the length.
+ * </p>
+ */
+public class RenderBenchmark {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(RenderBenchmark.class.getName());
+
+    /** Width and height of the offscreen canvas in pixels. */
+    private static final int CANVAS_SIZE = 1024;
+
+    /** Number of cells in each row of a zigzag snake. */
+    private static final int ZIGZAG_WIDTH = 16;
+
+    /** Most frames drawn for one case, however fast it is. */
+    private static final int MAX_FRAMES = 20_000;
+
+    /** Fewest frames drawn for one case, however slow it is. */
+    private static final int MIN_FRAMES = 5;
+
+    /**
+     * How the body of a made up snake is laid out.
+     */
+    enum Layout {
+        /** A single horizontal line, which has no turns. */
+        STRAIGHT,
+        /** Rows of {@link #ZIGZAG_WIDTH} cells joined end to end, which turns twice per row. */
+        ZIGZAG,
+        /** A square spiral winding outwards from the tail, whose straight runs grow as it goes. */
+        SPIRAL
+    }
+
+    /**
+     * Something that draws one frame.
+     */
+    interface Renderer {
+        /**
+         * Draws a frame.
+         * @param g2d the graphics of the canvas.
+         * @param snapshot the snapshot to draw.
+         */
+        void draw(Graphics2D g2d, GameSnapshot snapshot);
+    }
+
+    /**
+     * This class is not instantiable as it only holds the benchmark.
+     * @hidden
+     */
+    private RenderBenchmark() {}
+
+    /**
+     * Runs the benchmark and logs one line per case. Arguments, all optional, are the longest snake and the time spent
+     * measuring each case in milliseconds. Snakes grow tenfold from 3 cells up to the longest, which is 100000 by
+     * default. AWT is switched to headless mode unless a mode was chosen on the command line.
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null)
+            System.setProperty("java.awt.headless", "true");
+        int maxLength = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 300;
+
+        BufferedImage canvas = new BufferedImage(CANVAS_SIZE, CANVAS_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = canvas.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int[] food = {Constants.FOOD_INITIAL_POSITION.y * Constants.NUM_COLS + Constants.FOOD_INITIAL_POSITION.x};
+        LevelMap level = loadLevel();
+
+        SnakeGraphics snake = new SnakeGraphics();
+        AppleGraphics apple = new AppleGraphics();
+        BufferedImage background = GameGridPanel.renderBackground(level);
+        Renderer drawSnakeCells = (g, s) -> {
+            snake.setPathRendering(false);
+            snake.drawSnake(g, s);
+        };
+        Renderer drawSnakePath = (g, s) -> {
+            snake.setPathRendering(true);
+            snake.drawSnake(g, s);
+        };
+        Renderer drawDeadSnake = (g, s) -> {
+            snake.setPathRendering(true);
+            snake.drawSnake(g, s);
+            snake.kill();
+        };
+        Viewport viewport = new Viewport();
+        Renderer drawSnakeCamera = (g, s) -> {
+            snake.setPathRendering(true);
+            viewport.follow(s.getCols(), s.getRows(), CANVAS_SIZE, CANVAS_SIZE, s.getX(0), s.getY(0));
+            g.translate(-viewport.getMinX() * Constants.CELL_SIZE, -viewport.getMinY() * Constants.CELL_SIZE);
+            snake.drawSnake(g, s, viewport);
+            g.translate(viewport.getMinX() * Constants.CELL_SIZE, viewport.getMinY() * Constants.CELL_SIZE);
+        };
+        GameGridPanel panel = new GameGridPanel();
+        Renderer drawFrameCamera = (g, s) -> panel.paintFrame(g, s, CANVAS_SIZE, CANVAS_SIZE);
+
+        GameSnapshot small = snapshot(Layout.STRAIGHT, 3, food, level);
+        run("apples", apple::drawApple, g2d, small, millis);
+        run("background cached", (g, s) -> g.drawImage(background, 0, 0, null), g2d, small, millis);
+        run("background rebuilt", (g, s) -> g.drawImage(GameGridPanel.renderBackground(s.getLevel()), 0, 0, null),
+                g2d, small, millis);
+        for (Layout layout : Layout.values()) {
+            for (int length = 3; length <= maxLength; length = length < maxLength / 10 ? length * 10 : maxLength) {
+                GameSnapshot snapshot = snapshot(layout, length, food, level);
+                run("snake cells " + layout.name().toLowerCase(), drawSnakeCells, g2d, snapshot, millis);
+                run("snake path " + layout.name().toLowerCase(), drawSnakePath, g2d, snapshot, millis);
+                run("dead snake " + layout.name().toLowerCase(), drawDeadSnake, g2d, snapshot, millis);
+                GameSnapshot large = onOwnBoard(snapshot);
+                run("camera snake " + layout.name().toLowerCase(), drawSnakeCamera, g2d, large, millis);
+                run("camera frame " + layout.name().toLowerCase(), drawFrameCamera, g2d, large, millis);
+                if (length == maxLength)
+                    break;
+            }
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * Warms up a renderer, then draws frames for the given time and logs the time and allocation per frame.
+     * @hidden
+     */
+    private static void run(String name, Renderer renderer, Graphics2D g2d, GameSnapshot snapshot, long millis) {
+        long budget = millis * 1_000_000L;
+        long warmup = System.nanoTime();
+        for (int i = 0; i < MAX_FRAMES && (i < MIN_FRAMES || System.nanoTime() - warmup < budget / 3); i++)
+            renderer.draw(g2d, snapshot);
+
+        int frames = 0;
+        long allocated = GameMetrics.allocatedBytes();
+        long start = System.nanoTime();
+        long elapsed = 0;
+        while (frames < MAX_FRAMES && (frames < MIN_FRAMES || elapsed < budget)) {
+            renderer.draw(g2d, snapshot);
+            frames++;
+            elapsed = System.nanoTime() - start;
+        }
+        long bytes = GameMetrics.allocatedBytes() - allocated;
+        LOGGER.info(String.format("%-24s %7d cells %10.1f us/frame %10.0f B/frame (%d frames)", name,
+                snapshot.getLength(), elapsed / 1e3 / frames, (double) bytes / frames, frames));
+    }
+
+    /**
+     * Lays out a made up snake with its head at the end of the layout.
+     * @hidden
+     */
+    private static GameSnapshot snapshot(Layout layout, int length, int[] food, LevelMap level) {
+        int[] x = new int[length];
+        int[] y = new int[length];
+        // Walk the layout from the tail, filling the body arrays from the back
+        int cx = 0;
+        int cy = 0;
+        int dir = 0;
+        int run = 1;
+        int steps = 0;
+        int turns = 0;
+        for (int p = 0; p < length; p++) {
+            int i = length - 1 - p;
+            switch (layout) {
+                case STRAIGHT -> {
+                    x[i] = p;
+                    y[i] = 0;
+                }
+                case ZIGZAG -> {
+                    int row = p / ZIGZAG_WIDTH;
+                    x[i] = row % 2 == 0 ? p % ZIGZAG_WIDTH : ZIGZAG_WIDTH - 1 - p % ZIGZAG_WIDTH;
+                    y[i] = row;
+                }
+                case SPIRAL -> {
+                    x[i] = cx;
+                    y[i] = cy;
+                    // Runs of 1, 1, 2, 2, 3, 3, ... cells turning right, direction order right, down, left, up
+                    cx += dir == 0 ? 1 : dir == 2 ? -1 : 0;
+                    cy += dir == 1 ? 1 : dir == 3 ? -1 : 0;
+                    if (++steps == run) {
+                        steps = 0;
+                        dir = (dir + 1) % 4;
+                        if (++turns % 2 == 0)
+                            run++;
+                    }
+                }
+            }
+        }
+        if (layout == Layout.SPIRAL) {
+            // Move the spiral so it starts at the top left of the canvas
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            for (int i = 0; i < length; i++) {
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+            }
+            for (int i = 0; i < length; i++) {
+                x[i] -= minX;
+                y[i] -= minY;
+            }
+        }
+        return GameSnapshot.of(x, y, length, food, level);
+    }
+
+    /**
+     * Copies a made up snake onto an open board just large enough to hold it, with an apple in the top left corner.
+     * @hidden
+     */
+    private static GameSnapshot onOwnBoard(GameSnapshot snapshot) {
+        int length = snapshot.getLength();
+        int[] x = new int[length];
+        int[] y = new int[length];
+        int cols = 1;
+        int rows = 1;
+        for (int i = 0; i < length; i++) {
+            x[i] = snapshot.getX(i);
+            y[i] = snapshot.getY(i);
+            cols = Math.max(cols, x[i] + 1);
+            rows = Math.max(rows, y[i] + 1);
+        }
+        return GameSnapshot.of(x, y, length, new int[] {0}, LevelMap.empty(cols, rows));
+    }
+
+    /**
+     * Loads the level at {@link Constants#LEVEL_PATH}, or returns {@code null} for the open board if it cannot be read.
+     * @hidden
+     */
+    private static LevelMap loadLevel() {
+        try {
+            return LevelMap.load(Path.of(Constants.LEVEL_PATH));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Benchmarking the open board, failed to load level from path: "
+                    + Constants.LEVEL_PATH, e);
+            return null;
+        }
+    }
+}
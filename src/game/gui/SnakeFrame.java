@@ -33,7 +33,8 @@ public class SnakeFrame extends JFrame {
     }
 
     /**
-     * Constructs a new snake frame by initializing its properties and adding a new {@link SnakePanel}.
+     * Constructs a new snake frame by initializing its properties and adding a new {@link SnakePanel}. The frame opens
+     * with cells of {@link Constants#CELL_SIZE} and can be resized down to cells of {@link Constants#MIN_CELL_SIZE}.
      */
     public SnakeFrame() {
         this.setTitle("Snake");
@@ -41,7 +42,13 @@ public class SnakeFrame extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setLayout(null);
         setContentPane(new SnakePanel());
+        setResizable(true);
         pack();
+        Insets insets = getInsets();
+        setMinimumSize(new Dimension(
+                Constants.NUM_COLS * Constants.MIN_CELL_SIZE + 2 * Constants.PADDING_SIZE + insets.left + insets.right,
+                Constants.NUM_ROWS * Constants.MIN_CELL_SIZE + 2 * Constants.PADDING_SIZE + Constants.HEADER_HEIGHT
+                        + insets.top + insets.bottom));
         this.setLocationRelativeTo(null);
         LOGGER.config("New SnakeFrame created");
     }
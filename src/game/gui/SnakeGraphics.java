@@ -1,16 +1,22 @@
 package game.gui;
 
 import game.LoggerSetup;
-import game.core.Food;
-import game.core.Snake;
+import game.core.GameSnapshot;
 import game.utils.Constants;
 
 import java.awt.*;
-import java.util.List;
+import java.awt.geom.Path2D;
 import java.util.logging.Logger;
 
 /**
  * A class for drawing the snake onto the {@link GameGridPanel}.
+ * <p>
+ *     By default the body is drawn as one path through the centres of the head, every turn and the tail, stroked as
+ *     wide as a cell with round caps and joins. The round caps form the head and tail and the round joins the outer
+ *     corners of each turn, so it looks the same as drawing every cell, but a straight run of any length is a single
+ *     line and a frame costs one draw call whose work grows with the number of turns rather than the length. Drawing
+ *     cell by cell, with up to four shapes per cell, is kept for comparison.
+ * </p>
  */
 public class SnakeGraphics {
     /**
@@ -24,77 +30,281 @@ public class SnakeGraphics {
     private Graphics2D g2d;
 
     /**
-     * A reference to the current {@code Snake} object.
+     * The snapshot of the game being drawn.
      */
-    private Snake snake;
+    private GameSnapshot snapshot;
 
     /**
-     * A reference to the current {@code Food} object.
+     * Colour of the body.
      */
-    private Food food;
+    private static final Color BODY_COLOR = new Color(86, 136, 255);
+
+    /**
+     * Stroke that draws the body path a cell wide with rounded ends and corners.
+     */
+    private static final BasicStroke BODY_STROKE = new BasicStroke(Constants.CELL_SIZE, BasicStroke.CAP_ROUND,
+            BasicStroke.JOIN_ROUND);
+
+    /**
+     * Stroke that draws the body path a cell wide with square ends and corners, which is cheaper to fill.
+     */
+    private static final BasicStroke SQUARE_STROKE = new BasicStroke(Constants.CELL_SIZE, BasicStroke.CAP_SQUARE,
+            BasicStroke.JOIN_MITER);
+
+    /**
+     * The path through the body, reused every frame.
+     */
+    private final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, 64);
+
+    /**
+     * {@code true} to draw the body as a single path, {@code false} to draw it cell by cell.
+     */
+    private boolean pathRendering = true;
+
+    /**
+     * {@code true} to round the head, tail and turns, {@code false} to draw the body with square corners.
+     */
+    private boolean rounded = true;
+
+    /**
+     * {@code true} if the pupils follow the food, {@code false} if they look straight ahead.
+     */
+    private boolean eyeTracking = true;
+
+    /**
+     * The visible part of the board, or {@code null} to draw the whole snake.
+     */
+    private Viewport viewport;
+
+    /**
+     * Finds the runs of the body inside the {@code viewport}.
+     */
+    private final BodyIndex index = new BodyIndex();
 
     /**
      * Default constructor that creates the SnakeGraphic object.
      */
     SnakeGraphics() {}
+
+    /**
+     * Chooses between drawing the body as a single path and drawing it cell by cell.
+     * @param pathRendering {@code true} to draw the body as a single path.
+     */
+    void setPathRendering(boolean pathRendering) {
+        this.pathRendering = pathRendering;
+    }
+
+    /**
+     * Chooses between a body with rounded head, tail and turns and a cheaper one with square corners.
+     * @param rounded {@code true} to round the body.
+     */
+    void setRounded(boolean rounded) {
+        this.rounded = rounded;
+    }
+
+    /**
+     * Chooses whether the pupils follow the food, which needs some trigonometry every frame, or look straight ahead.
+     * @param eyeTracking {@code true} to have the pupils follow the food.
+     */
+    void setEyeTracking(boolean eyeTracking) {
+        this.eyeTracking = eyeTracking;
+    }
     /**
      * Draws the current state of the snake using the given the {@link Graphics2D} of the panel to draw on.
-     * @param g2d The graphics of the panel.F
-     * @param snake The current reference to the snake. Used to draw all segments.
-     * @param food The current reference to the food. Used to draw the snake's pupils in the direction of the food.
+     * @param g2d The graphics of the panel.
+     * @param snapshot The snapshot of the game to draw. Its body is used to draw all segments and its food is used to
+     *                 draw the snake's pupils in the direction of the food.
+     */
+    public void drawSnake(Graphics2D g2d, GameSnapshot snapshot) {
+        drawSnake(g2d, snapshot, null);
+    }
+
+    /**
+     * Draws the part of the snake inside the viewport. Only the runs of the body the {@link BodyIndex} finds in the
+     * view are drawn, so the cost depends on what is visible rather than on the length of the snake.
+     * @param g2d The graphics of the panel, translated so the board's origin is at the origin.
+     * @param snapshot The snapshot of the game to draw.
+     * @param viewport The visible part of the board, or {@code null} to draw the whole snake.
      */
-    public void drawSnake(Graphics2D g2d, Snake snake, Food food) {
+    void drawSnake(Graphics2D g2d, GameSnapshot snapshot, Viewport viewport) {
         this.g2d = g2d;
-        this.snake = snake;
-        this.food = food;
+        this.snapshot = snapshot;
+        this.viewport = viewport;
+        if (viewport != null) {
+            index.load(snapshot);
+            index.query(viewport);
+        }
         drawBody();
         drawEyes(false);
-        LOGGER.finer("Painted living snake");
+        LOGGER.finest("Painted living snake");
     }
 
     /**
      * Draws the body of the {@code Snake}.
      */
     private void drawBody() {
-        g2d.setColor(new Color(86, 136, 255));
-        drawHead();
-        drawTail();
-        List<Point> body = snake.getSnake();
-        for(int i = 1; i < body.size() - 1; i++) {
-            Point cur = body.get(i);
-            Point prev = body.get(i - 1);
-            Point next = body.get(i + 1);
-            int dx1 = cur.x - prev.x;
-            int dy1 = cur.y - prev.y;
-            int dx2 = next.x - cur.x;
-            int dy2 = next.y - cur.y;
+        if (pathRendering && viewport != null)
+            drawBodyRuns();
+        else if (pathRendering)
+            drawBodyPath();
+        else
+            drawBodyCells();
+    }
+
+    /**
+     * Draws the body as one path from the head to the tail that only has points where the snake turns.
+     */
+    private void drawBodyPath() {
+        int length = snapshot.getLength();
+        float half = Constants.CELL_SIZE / 2f;
+        path.reset();
+        path.moveTo(snapshot.getX(0) * Constants.CELL_SIZE + half, snapshot.getY(0) * Constants.CELL_SIZE + half);
+        int dx = snapshot.getX(1) - snapshot.getX(0);
+        int dy = snapshot.getY(1) - snapshot.getY(0);
+        for (int i = 1; i < length - 1; i++) {
+            int nextDx = snapshot.getX(i + 1) - snapshot.getX(i);
+            int nextDy = snapshot.getY(i + 1) - snapshot.getY(i);
+            if (nextDx != dx || nextDy != dy) {
+                path.lineTo(snapshot.getX(i) * Constants.CELL_SIZE + half, snapshot.getY(i) * Constants.CELL_SIZE + half);
+                dx = nextDx;
+                dy = nextDy;
+            }
+        }
+        path.lineTo(snapshot.getX(length - 1) * Constants.CELL_SIZE + half,
+                snapshot.getY(length - 1) * Constants.CELL_SIZE + half);
+
+        Stroke stroke = g2d.getStroke();
+        g2d.setColor(BODY_COLOR);
+        g2d.setStroke(rounded ? BODY_STROKE : SQUARE_STROKE);
+        g2d.draw(path);
+        g2d.setStroke(stroke);
+    }
+
+    /**
+     * Draws the runs of the body found in the viewport, each as its own stretch of the path. Every run is cut short a
+     * cell outside the view, where its rounded end cannot be seen, so the pixels in the view are the same as those of
+     * the whole path whatever the length of the run.
+     */
+    private void drawBodyRuns() {
+        float half = Constants.CELL_SIZE / 2f;
+        int minX = viewport.getMinX() - 1;
+        int minY = viewport.getMinY() - 1;
+        int maxX = viewport.getMaxX() + 1;
+        int maxY = viewport.getMaxY() + 1;
+        path.reset();
+        for (int k = 0; k < index.getVisibleCount(); k++) {
+            int run = index.getVisible(k);
+            int x1 = snapshot.getX(index.getRunStart(run));
+            int y1 = snapshot.getY(index.getRunStart(run));
+            int x2 = snapshot.getX(index.getRunEnd(run));
+            int y2 = snapshot.getY(index.getRunEnd(run));
+            if (!viewport.intersects(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2), 1))
+                continue;
+            path.moveTo(clamp(x1, minX, maxX) * Constants.CELL_SIZE + half,
+                    clamp(y1, minY, maxY) * Constants.CELL_SIZE + half);
+            path.lineTo(clamp(x2, minX, maxX) * Constants.CELL_SIZE + half,
+                    clamp(y2, minY, maxY) * Constants.CELL_SIZE + half);
+        }
+
+        Stroke stroke = g2d.getStroke();
+        g2d.setColor(BODY_COLOR);
+        g2d.setStroke(rounded ? BODY_STROKE : SQUARE_STROKE);
+        g2d.draw(path);
+        g2d.setStroke(stroke);
+    }
+
+    /**
+     * Draws the body one cell at a time, only the cells in the viewport if there is one.
+     */
+    private void drawBodyCells() {
+        g2d.setColor(BODY_COLOR);
+        if (viewport == null) {
+            for (int i = 0; i < snapshot.getLength(); i++)
+                drawCell(i);
+            return;
+        }
+        for (int k = 0; k < index.getVisibleCount(); k++) {
+            int run = index.getVisible(k);
+            int start = index.getRunStart(run);
+            // Runs share their ends, so each run draws its end cell only if it ends at the tail
+            int end = index.getRunEnd(run);
+            if (end < snapshot.getLength() - 1)
+                end--;
+            int x = snapshot.getX(start);
+            int y = snapshot.getY(start);
+            int dx = Integer.signum(snapshot.getX(index.getRunEnd(run)) - x);
+            int dy = Integer.signum(snapshot.getY(index.getRunEnd(run)) - y);
+            // Cell start + t lies at (x + t * dx, y + t * dy), so find the steps t that are in view
+            int from = 0;
+            int to = end - start;
+            if (dx == 0 && (x < viewport.getMinX() || x > viewport.getMaxX()))
+                continue;
+            if (dy == 0 && (y < viewport.getMinY() || y > viewport.getMaxY()))
+                continue;
+            if (dx != 0) {
+                from = Math.max(from, dx > 0 ? viewport.getMinX() - x : x - viewport.getMaxX());
+                to = Math.min(to, dx > 0 ? viewport.getMaxX() - x : x - viewport.getMinX());
+            }
+            if (dy != 0) {
+                from = Math.max(from, dy > 0 ? viewport.getMinY() - y : y - viewport.getMaxY());
+                to = Math.min(to, dy > 0 ? viewport.getMaxY() - y : y - viewport.getMinY());
+            }
+            for (int t = from; t <= to; t++)
+                drawCell(start + t);
+        }
+    }
+
+    /**
+     * Draws one cell of the body, shaped as the head, the tail or a segment rounded on the outside of a turn.
+     * @param i the index of the cell in the body.
+     */
+    private void drawCell(int i) {
+        if (!rounded) {
+            g2d.fillRect(snapshot.getX(i) * Constants.CELL_SIZE, snapshot.getY(i) * Constants.CELL_SIZE,
+                    Constants.CELL_SIZE, Constants.CELL_SIZE);
+        } else if (i == 0) {
+            drawHead();
+        } else if (i == snapshot.getLength() - 1) {
+            drawTail();
+        } else {
+            int dx1 = snapshot.getX(i) - snapshot.getX(i - 1);
+            int dy1 = snapshot.getY(i) - snapshot.getY(i - 1);
+            int dx2 = snapshot.getX(i + 1) - snapshot.getX(i);
+            int dy2 = snapshot.getY(i + 1) - snapshot.getY(i);
             // l->d and u->r = 0 (NW round)
             if ((dx1 == -1 && dy2 == 1) || (dy1 == -1 && dx2 == 1))
-                drawSegment(cur, 0);
+                drawSegment(snapshot.getX(i), snapshot.getY(i), 0);
             // r->d and u->l = 1 (NE round)
             else if ((dx1 == 1 && dy2 == 1) || (dy1 == -1 && dx2 == -1))
-                drawSegment(cur, 1);
+                drawSegment(snapshot.getX(i), snapshot.getY(i), 1);
             // l->u and d->r = 2 (SW round)
             else if ((dx1 == -1 && dy2 == -1) || (dy1 == 1 && dx2 == 1))
-                drawSegment(cur, 2);
+                drawSegment(snapshot.getX(i), snapshot.getY(i), 2);
             // r->u and d->l = 3 (SE round)
             else if ((dx1 == 1 && dy2 == -1) || (dy1 == 1 && dx2 == -1))
-                drawSegment(cur, 3);
+                drawSegment(snapshot.getX(i), snapshot.getY(i), 3);
             // (no round)
             else
-                drawSegment(cur, -1);
+                drawSegment(snapshot.getX(i), snapshot.getY(i), -1);
         }
     }
 
+    /**
+     * Limits a value to a range.
+     * @hidden
+     */
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
     /**
      * Draws the head of the {@code Snake}.
      */
 
     private void drawHead() {
-        Point head = snake.getSnake().get(0);
-        Point prev = snake.getSnake().get(1);
-        int dx = head.x - prev.x;
-        int dy = head.y - prev.y;
+        Point head = new Point(snapshot.getX(0), snapshot.getY(0));
+        int dx = head.x - snapshot.getX(1);
+        int dy = head.y - snapshot.getY(1);
 
         // Determine the start angle for the arc based on movement direction
         int startAngle = 0; // Moving up
@@ -121,10 +331,10 @@ public class SnakeGraphics {
      * Draws the tail of the {@code Snake}.
      */
     private void drawTail() {
-        Point tail = snake.getSnake().get(snake.getSnake().size() - 1);
-        Point next = snake.getSnake().get(snake.getSnake().size() - 2);
-        int dx = next.x - tail.x;
-        int dy = next.y - tail.y;
+        int last = snapshot.getLength() - 1;
+        Point tail = new Point(snapshot.getX(last), snapshot.getY(last));
+        int dx = snapshot.getX(last - 1) - tail.x;
+        int dy = snapshot.getY(last - 1) - tail.y;
 
         // Determine the start angle for the arc based on movement direction
         int startAngle = 0; // Moving down
@@ -153,13 +363,14 @@ public class SnakeGraphics {
 
     /**
      * Draws a segment of the {@code Snake}. A segment is any part that is not the head or tail.
-     * @param p The position of the segment
+     * @param cellX The column of the segment
+     * @param cellY The row of the segment
      * @param round what corner is round. 0 -> top left, 1 -> top right, 2 -> bottom left, 3-> bottom right.
      */
-    private void drawSegment(Point p, int round) {
+    private void drawSegment(int cellX, int cellY, int round) {
         int cornerSize = Constants.CELL_SIZE/2;
-        int x = p.x * Constants.CELL_SIZE;
-        int y = p.y * Constants.CELL_SIZE;
+        int x = cellX * Constants.CELL_SIZE;
+        int y = cellY * Constants.CELL_SIZE;
         int roundingOffset = Constants.CELL_SIZE % 2; // if CELL_SIZE is an odd number, there will be rounding errors
 
         // Draw each corner with conditional rounding
@@ -196,12 +407,15 @@ public class SnakeGraphics {
 
     /**
      * Draws the eyes of the snake. The eye sockets are always positioned at the same place on the head, however the
-     * pupils follow the {@code Food}'s current location. If the {@code Snake} has died, X's will be drawn instead.
+     * pupils follow the {@code Food}'s current location unless eye tracking is off. If the {@code Snake} has died, X's
+     * will be drawn instead.
      * @param dead the state of the snake. If the {@code Snake} is dead then true, otherwise false.
      */
     private void drawEyes(boolean dead) {
+        if (viewport != null && !viewport.isVisible(snapshot.getX(0), snapshot.getY(0)))
+            return;
         // Paint the snake head
-        Point head = snake.getSnake().get(0);
+        Point head = new Point(snapshot.getX(0), snapshot.getY(0));
 
         // Set color for eyes
 
@@ -235,19 +449,23 @@ public class SnakeGraphics {
         g2d.fillOval(leftEyeX, eyeY, eyeSize, eyeSize);
         g2d.fillOval(rightEyeX, eyeY, eyeSize, eyeSize);
 
-        // Find the angle between the food and the head in radians
-        // theta = arctan((y2 - y1) / (x2 - x1))
-        double fruitHeadAngle = Math.atan2(food.getPosition().y - head.y, food.getPosition().x - head.x);
-
-        // Find the length of the sides of the 45-45-90 triangle where the hypotenuse is the radius of the pupil offset
-        // hyp = side*sqrt2 -> side = hyp/sqrt2
-        double pupilDisplacement = pupilOffset / Math.sqrt(2);
-
-        // Find the displacement from the center of the eye using the angle and the previously calculated side.
-        // cos(theta) = a/h -> cos(theta)*h = a
-        // sin(theta> = o/h -> sin(theta)*h = o
-        int pupilLookX = (int) (Math.cos(fruitHeadAngle) * pupilDisplacement);
-        int pupilLookY = (int) (Math.sin(fruitHeadAngle) * pupilDisplacement);
+        int pupilLookX = 0;
+        int pupilLookY = 0;
+        if (eyeTracking) {
+            // Find the angle between the food and the head in radians
+            // theta = arctan((y2 - y1) / (x2 - x1))
+            double fruitHeadAngle = Math.atan2(snapshot.getFoodY() - head.y, snapshot.getFoodX() - head.x);
+
+            // Find the length of the sides of the 45-45-90 triangle where the hypotenuse is the radius of the pupil
+            // offset: hyp = side*sqrt2 -> side = hyp/sqrt2
+            double pupilDisplacement = pupilOffset / Math.sqrt(2);
+
+            // Find the displacement from the center of the eye using the angle and the previously calculated side.
+            // cos(theta) = a/h -> cos(theta)*h = a
+            // sin(theta> = o/h -> sin(theta)*h = o
+            pupilLookX = (int) (Math.cos(fruitHeadAngle) * pupilDisplacement);
+            pupilLookY = (int) (Math.sin(fruitHeadAngle) * pupilDisplacement);
+        }
 
         // Set color for pupils and draw them
         g2d.setColor(Color.BLACK);
@@ -269,6 +487,6 @@ public class SnakeGraphics {
     public void kill() {
         drawBody();
         drawEyes(true);
-        LOGGER.fine("Painted dead snake");
+        LOGGER.finest("Painted dead snake");
     }
 }
\ No newline at end of file
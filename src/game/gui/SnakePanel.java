@@ -1,7 +1,15 @@
 package game.gui;
 
 import game.LoggerSetup;
+import game.ai.MlpPolicy;
+import game.ai.PolicyController;
 import game.core.GameEngine;
+import game.core.GameSnapshot;
+import game.core.LevelMap;
+import game.core.SimulationThread;
+import game.core.SnapshotBuffer;
+import game.core.SpeedCurve;
+import game.metrics.GameMetrics;
 import game.utils.Constants;
 import game.utils.Direction;
 import game.utils.HighScoreManager;
@@ -9,30 +17,142 @@ import game.utils.HighScoreManager;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The main panel for the snake game. Handles user input and manages all main UI elements.
+ * <p>
+ *     The game runs on a {@link SimulationThread}. Each tick publishes a {@link GameSnapshot} and asks the event
+ *     dispatch thread to draw it, and key presses that change the game are submitted back to the simulation thread, so
+ *     painting and ticking never wait on each other.
+ * </p><p>
+ *     For watching the autopilot, the game can be fast-forwarded at 2, 10 or 100 times normal speed or as fast as it
+ *     will run. While it is, ticks no longer ask for frames: the simulation publishes a snapshot at most twice per
+ *     display refresh, a timer draws the latest one once per refresh, and the header shows the measured ticks per
+ *     second.
+ * </p>
  */
-public class SnakePanel extends JPanel implements KeyListener, ActionListener {
+public class SnakePanel extends JPanel implements KeyListener {
     /**
      * Logger for logging information.
      * @hidden
      */
     private static final Logger LOGGER = LoggerSetup.getLogger(SnakePanel.class.getName());
 
+    /** Refresh rate assumed when the display does not report one. */
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
+    /** Nanoseconds between updates of the ticks per second shown in the header. */
+    private static final long RATE_INTERVAL_NANOS = 500_000_000L;
+
+    /**
+     * Speeds the game can be fast-forwarded at.
+     */
+    private enum Turbo {
+        /** Normal speed, one frame per tick. */
+        OFF(1),
+        /** Twice normal speed. */
+        DOUBLE(2),
+        /** Ten times normal speed. */
+        TENFOLD(10),
+        /** A hundred times normal speed. */
+        HUNDREDFOLD(100),
+        /** As fast as the simulation thread can tick. */
+        UNLIMITED(SimulationThread.UNLIMITED);
+
+        /** Factor passed to {@link SimulationThread#setSpeedUp(int)}. */
+        private final int speedUp;
+
+        /**
+         * Creates a speed.
+         * @hidden
+         */
+        Turbo(int speedUp) {
+            this.speedUp = speedUp;
+        }
+
+        /**
+         * Gets the next faster speed, wrapping around to normal speed after the fastest.
+         * @hidden
+         */
+        Turbo next() {
+            Turbo[] speeds = values();
+            return speeds[(ordinal() + 1) % speeds.length];
+        }
+
+        /**
+         * Gets the label shown in the header.
+         * @hidden
+         */
+        String label() {
+            return this == UNLIMITED ? "unlimited" : speedUp + "\u00d7";
+        }
+    }
+
     /**
      * The main instance of the {@code GameEngine}.
      */
     private final GameEngine gameEngine;
 
+    /**
+     * The thread that advances the game.
+     */
+    private final SimulationThread simulation;
+
+    /**
+     * Snapshots of the game published by the simulation thread for painting.
+     */
+    private final SnapshotBuffer snapshots;
+
+    /**
+     * {@code true} while a frame has been requested on the event dispatch thread but not drawn yet, so that ticks do
+     * not flood the event queue if painting falls behind.
+     */
+    private final AtomicBoolean frameRequested = new AtomicBoolean();
+
+    /**
+     * The speed the game is fast-forwarded at. Written on the event dispatch thread, read by the simulation thread.
+     */
+    private volatile Turbo turbo = Turbo.OFF;
+
+    /**
+     * Shortest time between published snapshots while fast-forwarding, half a display refresh.
+     */
+    private volatile long publishIntervalNanos;
+
+    /**
+     * Time the last snapshot was published while fast-forwarding. Only used on the simulation thread.
+     */
+    private long lastPublish;
+
+    /**
+     * Draws the latest snapshot once per display refresh while fast-forwarding.
+     */
+    private Timer frameTimer;
+
+    /**
+     * Tick count of the simulation when the tick rate was last measured. Only used on the event dispatch thread.
+     */
+    private long rateTicks;
+
+    /**
+     * Time the tick rate was last measured. Only used on the event dispatch thread.
+     */
+    private long rateTime;
+
+    /**
+     * {@code true} once the {@link GameOverDialog} has been shown for the game that just ended.
+     */
+    private boolean gameOverShown;
+
     /**
      * The panel that displays the play area.
      */
@@ -49,18 +169,46 @@ public class SnakePanel extends JPanel implements KeyListener, ActionListener {
     private final HighScoreManager hsm;
 
     /**
-     * Sets up the game with first launch settings. A new timer is started, highscores are loaded, the start menu
-     * opens, and the first frame of the game loads.
+     * Steers the snake with a trained policy while the autopilot is on. Loaded the first time the autopilot is used.
+     */
+    private PolicyController autopilot;
+
+    /**
+     * The level loaded from {@link Constants#LEVEL_PATH}. Loaded the first time the level is switched on.
+     */
+    private LevelMap level;
+
+    /**
+     * {@code true} if the level, rather than the open board, is selected for the next game. Only used on the event
+     * dispatch thread.
+     */
+    private boolean levelOn;
+
+    /**
+     * {@code true} if the autopilot is currently steering the snake. While it is, arrow keys are ignored so the
+     * snake's input queue keeps a single producer.
+     */
+    private volatile boolean autopilotOn;
+
+    /**
+     * Sets up the game with first launch settings. The simulation thread is created, highscores are loaded, the start
+     * menu opens, and the first frame of the game loads.
      */
     public SnakePanel() {
-        Timer timer = new Timer(Constants.DELAY, this);
-        gameEngine = new GameEngine(timer);
+        snapshots = new SnapshotBuffer();
+        simulation = new SimulationThread(
+                SpeedCurve.linear(Constants.DELAY, Constants.DELAY_STEP, Constants.MIN_DELAY),
+                this::currentScore, this::tick);
+        gameEngine = new GameEngine(simulation);
         hsm = new HighScoreManager("src/resources/data/highscores.csv");
         startMenu();
         initializeWindow();
 
         gameEngine.startGame();
         gameEngine.togglePause();
+        snapshots.publish(gameEngine);
+        gameGridPanel.setSnapshot(snapshots.latest());
+        simulation.launch();
         LOGGER.config("Created new Snake Panel");
     }
 
@@ -68,7 +216,7 @@ public class SnakePanel extends JPanel implements KeyListener, ActionListener {
      * Creates a new {@link StartMenuPanel}.
      */
     private void startMenu() {
-        new StartMenuPanel(Constants.ICON, hsm, gameEngine);
+        new StartMenuPanel(Constants.ICON, hsm, this::togglePause);
     }
 
 
@@ -76,7 +224,6 @@ public class SnakePanel extends JPanel implements KeyListener, ActionListener {
      * Sets the initial settings for the panel and creates a new {@link HeaderPanel} and {@link GameGridPanel}.
      */
     private void initializeWindow() {
-        this.setPreferredSize(new Dimension(Constants.WIDTH, Constants.HEIGHT));
         this.setLayout(new BorderLayout());
         this.setFocusable(true);
         addKeyListener(this);
@@ -84,8 +231,11 @@ public class SnakePanel extends JPanel implements KeyListener, ActionListener {
         headerPanel = new HeaderPanel(resizeImage("src/resources/images/apple.png", 50, 50));
         this.add(headerPanel, BorderLayout.NORTH);
 
-        gameGridPanel = new GameGridPanel(gameEngine);
+        gameGridPanel = new GameGridPanel();
         this.add(gameGridPanel.getPaddingPanel(), BorderLayout.CENTER);
+
+        frameTimer = new Timer(1000 / DEFAULT_REFRESH_RATE, e -> paceFrame());
+        frameTimer.setCoalesce(true);
     }
 
     /**
@@ -98,18 +248,119 @@ public class SnakePanel extends JPanel implements KeyListener, ActionListener {
     }
 
     /**
-     * The main game loop. This method is run constantly while the timer is running. The refresh rate is based on
-     * {@link Constants#DELAY}.
-     * @param e the event to be processed (not used)
+     * The main game loop. This method is run on the simulation thread while the game is running, starting every
+     * {@link Constants#DELAY} milliseconds and speeding up by {@link Constants#DELAY_STEP} milliseconds per apple
+     * until it reaches {@link Constants#MIN_DELAY}. It advances the game and publishes a snapshot of it. While the
+     * performance overlay is shown the tick is timed for it.
      */
-    @Override
-    public void actionPerformed(ActionEvent e) {
-        gameEngine.updateGame();
-        headerPanel.updateScore(gameEngine.getScore());
-        gameGridPanel.repaint();
+    private void tick() {
+        PerformanceHud hud = gameGridPanel.getHud();
+        if (hud.isShown()) {
+            long start = System.nanoTime();
+            long allocated = GameMetrics.allocatedBytes();
+            gameEngine.updateGame();
+            hud.recordTick(System.nanoTime() - start, GameMetrics.allocatedBytes() - allocated);
+        } else {
+            gameEngine.updateGame();
+        }
+        publishFrame();
+    }
+
+    /**
+     * Gets the score the speed curve is based on. Called on the simulation thread.
+     * @return the score of the current game.
+     */
+    private int currentScore() {
+        return gameEngine.getScore();
+    }
+
+    /**
+     * Publishes a snapshot of the game and asks the event dispatch thread to draw it. While fast-forwarding, snapshots
+     * are only published every {@code publishIntervalNanos} and drawn by the {@code frameTimer}, apart from the last one
+     * of a game. Must be called on the simulation thread.
+     */
+    private void publishFrame() {
+        if (turbo != Turbo.OFF && !gameEngine.hasEnded()) {
+            long now = System.nanoTime();
+            if (now - lastPublish < publishIntervalNanos)
+                return;
+            lastPublish = now;
+            snapshots.publish(gameEngine);
+            return;
+        }
+        snapshots.publish(gameEngine);
+        if (frameRequested.compareAndSet(false, true))
+            EventQueue.invokeLater(this::drawFrame);
+    }
+
+    /**
+     * Draws the latest snapshot if one was published since the last frame, and updates the tick rate in the header.
+     * Run by the {@code frameTimer} once per display refresh while fast-forwarding.
+     */
+    private void paceFrame() {
+        long now = System.nanoTime();
+        if (now - rateTime >= RATE_INTERVAL_NANOS) {
+            long ticks = simulation.getTickCount();
+            long rate = Math.round((ticks - rateTicks) * 1e9 / (now - rateTime));
+            rateTicks = ticks;
+            rateTime = now;
+            headerPanel.updateSpeed(turbo.label() + "  " + rate + " ticks/s");
+        }
+        if (snapshots.isFresh())
+            drawFrame();
+    }
+
+    /**
+     * Steps to the next fast-forward speed, back to normal speed after the fastest. The frame timer is matched to the
+     * refresh rate of the screen the panel is on.
+     */
+    private void cycleTurbo() {
+        Turbo next = turbo.next();
+        if (next == Turbo.OFF) {
+            frameTimer.stop();
+            headerPanel.updateSpeed("");
+        } else if (!frameTimer.isRunning()) {
+            int refreshRate = refreshRate();
+            publishIntervalNanos = 1_000_000_000L / (2L * refreshRate);
+            frameTimer.setDelay(Math.max(1, 1000 / refreshRate));
+            rateTicks = simulation.getTickCount();
+            rateTime = System.nanoTime();
+            headerPanel.updateSpeed(next.label());
+            frameTimer.start();
+        }
+        turbo = next;
+        simulation.setSpeedUp(next.speedUp);
+        LOGGER.info("Fast-forward " + (next == Turbo.OFF ? "off." : "at " + next.label() + "."));
+    }
+
+    /**
+     * Gets the refresh rate of the screen the panel is on, or {@link #DEFAULT_REFRESH_RATE} if it is unknown.
+     * @hidden
+     */
+    private int refreshRate() {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration == null)
+            return DEFAULT_REFRESH_RATE;
+        int rate = configuration.getDevice().getDisplayMode().getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate;
+    }
+
+    /**
+     * Draws the latest snapshot on the event dispatch thread. Takes it from the buffer once and hands the same snapshot
+     * to the header, the grid and the game over check, then shows the {@link GameOverDialog} once when a game ends.
+     */
+    private void drawFrame() {
+        frameRequested.set(false);
+        GameSnapshot snapshot = snapshots.latest();
+        headerPanel.updateScore(snapshot.getScore());
+        gameGridPanel.setSnapshot(snapshot);
         repaint();
-        if (gameEngine.hasEnded()) {
-            new GameOverDialog(gameEngine, hsm);
+        if (!snapshot.hasEnded()) {
+            gameOverShown = false;
+        } else if (!gameOverShown) {
+            gameOverShown = true;
+            LOGGER.fine(simulation.getTickStats().toString());
+            new GameOverDialog(snapshot.getScore(), this::restartGame, hsm);
         }
     }
 
@@ -136,16 +387,104 @@ public class SnakePanel extends JPanel implements KeyListener, ActionListener {
     @Override
     public void keyPressed(KeyEvent e) {
         switch (e.getKeyCode()) {
-            case KeyEvent.VK_UP -> gameEngine.getSnake().changeDirection(Direction.UP);
-            case KeyEvent.VK_DOWN -> gameEngine.getSnake().changeDirection(Direction.DOWN);
-            case KeyEvent.VK_LEFT -> gameEngine.getSnake().changeDirection(Direction.LEFT);
-            case KeyEvent.VK_RIGHT -> gameEngine.getSnake().changeDirection(Direction.RIGHT);
-            case KeyEvent.VK_P -> gameEngine.togglePause();
-            case KeyEvent.VK_R -> {
+            case KeyEvent.VK_UP -> steer(Direction.UP);
+            case KeyEvent.VK_DOWN -> steer(Direction.DOWN);
+            case KeyEvent.VK_LEFT -> steer(Direction.LEFT);
+            case KeyEvent.VK_RIGHT -> steer(Direction.RIGHT);
+            case KeyEvent.VK_P -> togglePause();
+            case KeyEvent.VK_D -> gameGridPanel.toggleDangerOverlay();
+            case KeyEvent.VK_A -> toggleAutopilot();
+            case KeyEvent.VK_L -> toggleLevel();
+            case KeyEvent.VK_F3 -> gameGridPanel.toggleHud();
+            case KeyEvent.VK_M -> gameGridPanel.toggleMinimap();
+            case KeyEvent.VK_T -> cycleTurbo();
+            case KeyEvent.VK_R -> simulation.submit(() -> {
                 gameEngine.endGame();
-                new GameOverDialog(gameEngine, hsm);
+                publishFrame();
+            });
+        }
+    }
+
+    /**
+     * Queues a turn for the snake unless the autopilot is steering. The turn is offered straight to the snake's
+     * lock-free input queue from the event dispatch thread, which the engine publishes anew whenever a restart
+     * replaces the snake.
+     * @param direction the direction to turn towards.
+     */
+    private void steer(Direction direction) {
+        if (!autopilotOn)
+            gameEngine.queueTurn(direction);
+    }
+
+    /**
+     * Pauses or resumes the game on the simulation thread.
+     */
+    private void togglePause() {
+        simulation.submit(gameEngine::togglePause);
+    }
+
+    /**
+     * Starts a new game on the simulation thread and publishes its first frame.
+     */
+    private void restartGame() {
+        simulation.submit(() -> {
+            gameEngine.startGame();
+            publishFrame();
+        });
+    }
+
+    /**
+     * Turns the autopilot on or off. The policy is loaded from {@link Constants#POLICY_PATH} the first time the autopilot
+     * is turned on. If it cannot be loaded, a warning is logged and the autopilot stays off. The listener is added and
+     * removed on the simulation thread, and the autopilot only counts as off once it has been removed.
+     */
+    private void toggleAutopilot() {
+        if (autopilot == null) {
+            try {
+                autopilot = new PolicyController(MlpPolicy.load(Path.of(Constants.POLICY_PATH)));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Failed to load autopilot policy from path: " + Constants.POLICY_PATH, e);
+                return;
+            }
+        }
+        PolicyController controller = autopilot;
+        if (!autopilotOn) {
+            autopilotOn = true;
+            simulation.submit(() -> gameEngine.addTickListener(controller));
+            LOGGER.info("Autopilot enabled.");
+        } else {
+            simulation.submit(() -> {
+                gameEngine.removeTickListener(controller);
+                autopilotOn = false;
+                LOGGER.info("Autopilot disabled.");
+            });
+        }
+    }
+
+    /**
+     * Switches between the open board and the level at {@link Constants#LEVEL_PATH} from the next game on. The level is
+     * loaded the first time it is switched on. If it cannot be loaded or does not fit the board, a warning is logged
+     * and the board stays open. The level is handed to the engine on the simulation thread.
+     */
+    private void toggleLevel() {
+        if (level == null) {
+            LevelMap loaded;
+            try {
+                loaded = LevelMap.load(Path.of(Constants.LEVEL_PATH));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load level from path: " + Constants.LEVEL_PATH, e);
+                return;
+            }
+            if (loaded.getCols() != Constants.NUM_COLS || loaded.getRows() != Constants.NUM_ROWS) {
+                LOGGER.warning("Level at " + Constants.LEVEL_PATH + " does not match the board size.");
+                return;
             }
+            level = loaded;
         }
+        LevelMap next = levelOn ? LevelMap.empty(Constants.NUM_COLS, Constants.NUM_ROWS) : level;
+        levelOn = !levelOn;
+        simulation.submit(() -> gameEngine.setLevel(next));
+        LOGGER.info((levelOn ? "Level" : "Open board") + " selected for the next game.");
     }
 
     /**
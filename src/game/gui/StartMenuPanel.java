@@ -1,7 +1,6 @@
 package game.gui;
 
 import game.LoggerSetup;
-import game.core.GameEngine;
 import game.utils.Constants;
 import game.utils.HighScoreManager;
 
@@ -36,19 +35,19 @@ public class StartMenuPanel extends JPanel {
     private final HighScoreManager hsm;
 
     /**
-     * A reference to the {@code GameEngine} used when the game should start.
+     * Unpauses the game when it should start. The game runs on the simulation thread, so this hands the work over to it.
      */
-    private final GameEngine gameEngine;
+    private final Runnable start;
 
     /**
      * Creates a new {@code StartMenuPanel} when the program is first run.
      * @param unscaledIcon the main snake icon that is resized within the constructor.
      * @param hsm a reference to the {@code HighScoreManager}.
-     * @param gameEngine a reference to the {@code gameEngine}.
+     * @param start unpauses the game when the start button is pressed.
      */
-    StartMenuPanel(Image unscaledIcon, HighScoreManager hsm, GameEngine gameEngine) {
+    StartMenuPanel(Image unscaledIcon, HighScoreManager hsm, Runnable start) {
         this.hsm = hsm;
-        this.gameEngine = gameEngine;
+        this.start = start;
         icon = unscaledIcon.getScaledInstance(200, 200, Image.SCALE_SMOOTH);
         initializeFrame();
         initializePanel();
@@ -119,7 +118,7 @@ public class StartMenuPanel extends JPanel {
                         "best score, every score can be saved to our in game leaderboard!!\n" +
                         "\nControls:\n" +
                         "→ Right, ↑ Up, → Left, ↓ Down\n" +
-                        "R Restart, P Pause", "How to play",
+                        "R Restart, P Pause, D Danger overlay, A Autopilot", "How to play",
                 JOptionPane.INFORMATION_MESSAGE);
     }
 
@@ -136,7 +135,7 @@ public class StartMenuPanel extends JPanel {
      * Logic for the start game button. Toggles pause and disposes of the current panel.
      */
     private void playGame() {
-        gameEngine.togglePause();
+        start.run();
         dispose();
         LOGGER.fine("Start game button pressed.");
     }
@@ -164,7 +163,7 @@ public class StartMenuPanel extends JPanel {
      * Creates a new {@code StartMenuPanel}.
      */
     public void refresh() {
-        new StartMenuPanel(icon, hsm, gameEngine);
+        new StartMenuPanel(icon, hsm, start);
     }
 }
 
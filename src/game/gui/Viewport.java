@@ -0,0 +1,165 @@
+package game.gui;
+
+import game.utils.Constants;
+
+/**
+ * A camera over the board that decides which cells are on screen. When the board is larger than the panel the camera
+ * scrolls to follow the head, moving only once the head leaves a dead zone in the middle of the view so the board does
+ * not shake with every turn, and never showing anything past the edges of the board. When the board fits, the camera
+ * stays at the top left corner and every cell is visible.
+ * <p>
+ *     Positions are in cells. The view covers the cells from {@link #getMinX()} to {@link #getMaxX()} and
+ *     {@link #getMinY()} to {@link #getMaxY()}, inclusive, which includes any cell that is even partly visible.
+ * </p>
+ */
+class Viewport {
+    /** Fraction of the view on each side that the head may enter before the camera scrolls. */
+    private static final double MARGIN = 0.25;
+
+    /** Number of columns on the board. */
+    private int boardCols = Constants.NUM_COLS;
+
+    /** Number of rows on the board. */
+    private int boardRows = Constants.NUM_ROWS;
+
+    /** Number of columns that fit in the view, counting a partly visible column. */
+    private int viewCols = Constants.NUM_COLS;
+
+    /** Number of rows that fit in the view, counting a partly visible row. */
+    private int viewRows = Constants.NUM_ROWS;
+
+    /** Leftmost visible column. */
+    private int originX;
+
+    /** Topmost visible row. */
+    private int originY;
+
+    /**
+     * Resizes the view and moves it so the head is inside the dead zone.
+     * @param boardCols the number of columns on the board.
+     * @param boardRows the number of rows on the board.
+     * @param width the width of the view in board units, where a cell is {@link Constants#CELL_SIZE} wide.
+     * @param height the height of the view in board units.
+     * @param headX the column of the head.
+     * @param headY the row of the head.
+     */
+    public void follow(int boardCols, int boardRows, int width, int height, int headX, int headY) {
+        this.boardCols = boardCols;
+        this.boardRows = boardRows;
+        viewCols = Math.max(1, (width + Constants.CELL_SIZE - 1) / Constants.CELL_SIZE);
+        viewRows = Math.max(1, (height + Constants.CELL_SIZE - 1) / Constants.CELL_SIZE);
+        originX = follow(originX, headX, viewCols, boardCols);
+        originY = follow(originY, headY, viewRows, boardRows);
+    }
+
+    /**
+     * Returns {@code true} if the board does not fit in the view, so the camera scrolls.
+     * @return true if the camera scrolls, false if the whole board is visible.
+     */
+    public boolean isScrolling() {
+        return boardCols > viewCols || boardRows > viewRows;
+    }
+
+    /**
+     * Checks whether a cell is visible.
+     * @param x the column of the cell.
+     * @param y the row of the cell.
+     * @return true if the cell is at least partly visible, false otherwise.
+     */
+    public boolean isVisible(int x, int y) {
+        return x >= originX && x <= getMaxX() && y >= originY && y <= getMaxY();
+    }
+
+    /**
+     * Checks whether a rectangle of cells, grown by a number of cells on every side, overlaps the view.
+     * @param minX the leftmost column of the rectangle.
+     * @param minY the topmost row of the rectangle.
+     * @param maxX the rightmost column of the rectangle.
+     * @param maxY the bottom row of the rectangle.
+     * @param margin the number of cells to grow the rectangle by.
+     * @return true if the grown rectangle overlaps the view, false otherwise.
+     */
+    public boolean intersects(int minX, int minY, int maxX, int maxY, int margin) {
+        return maxX + margin >= originX && minX - margin <= getMaxX()
+                && maxY + margin >= originY && minY - margin <= getMaxY();
+    }
+
+    /**
+     * Gets the leftmost visible column.
+     * @return the column.
+     */
+    public int getMinX() {
+        return originX;
+    }
+
+    /**
+     * Gets the topmost visible row.
+     * @return the row.
+     */
+    public int getMinY() {
+        return originY;
+    }
+
+    /**
+     * Gets the rightmost visible column, which is never past the edge of the board.
+     * @return the column.
+     */
+    public int getMaxX() {
+        return Math.min(boardCols, originX + viewCols) - 1;
+    }
+
+    /**
+     * Gets the bottom visible row, which is never past the edge of the board.
+     * @return the row.
+     */
+    public int getMaxY() {
+        return Math.min(boardRows, originY + viewRows) - 1;
+    }
+
+    /**
+     * Gets the number of columns on the board.
+     * @return the number of columns.
+     */
+    public int getBoardCols() {
+        return boardCols;
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     * @return the number of rows.
+     */
+    public int getBoardRows() {
+        return boardRows;
+    }
+
+    /**
+     * Gets the number of columns that fit in the view.
+     * @return the number of columns, counting a partly visible one.
+     */
+    public int getViewCols() {
+        return viewCols;
+    }
+
+    /**
+     * Gets the number of rows that fit in the view.
+     * @return the number of rows, counting a partly visible one.
+     */
+    public int getViewRows() {
+        return viewRows;
+    }
+
+    /**
+     * Moves the origin along one axis so the head is inside the dead zone and the view stays on the board.
+     * @hidden
+     */
+    private static int follow(int origin, int head, int view, int board) {
+        if (board <= view)
+            return 0;
+        int margin = (int) (view * MARGIN);
+        if (head < origin + margin)
+            origin = head - margin;
+        else if (head > origin + view - 1 - margin)
+            origin = head - (view - 1 - margin);
+        return Math.max(0, Math.min(origin, board - view));
+    }
+}
@@ -0,0 +1,26 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event covering one call to {@code Food.spawn()}. Spawning scans the snake and then the board
+ * for the chosen free cell, so the number of cells scanned shows how the cost grows with the snake.
+ */
+@Name("game.FoodSpawn")
+@Label("Food Spawn")
+@Category({"Snake", "Game Loop"})
+@Description("Placement of a food item on a free cell")
+@StackTrace(false)
+public class FoodSpawnEvent extends jdk.jfr.Event {
+    /** Number of body segments and board cells visited. */
+    @Label("Cells Scanned")
+    public int cellsScanned;
+
+    /** Number of free cells the food could have been placed on. */
+    @Label("Free Cells")
+    public int freeCells;
+}
@@ -0,0 +1,115 @@
+package game.metrics;
+
+/**
+ * Management interface of {@link GameMetrics}, registered as {@code game:type=GameMetrics}. Latencies are in
+ * milliseconds, rates per second and allocation in bytes. Percentiles cover everything recorded since the last reset.
+ */
+public interface GameMetricsMBean {
+    /**
+     * Gets the number of ticks played by every game engine in the process.
+     * @return the number of ticks.
+     */
+    long getTickCount();
+
+    /**
+     * Gets the number of ticks played per second, measured over at least the last second.
+     * @return the tick rate.
+     */
+    double getTickRate();
+
+    /**
+     * Gets the median time taken by a tick.
+     * @return the median tick latency in milliseconds.
+     */
+    double getTickLatencyP50();
+
+    /**
+     * Gets the 99th percentile of the time taken by a tick.
+     * @return the 99th percentile tick latency in milliseconds.
+     */
+    double getTickLatencyP99();
+
+    /**
+     * Gets the longest time taken by a tick.
+     * @return the longest tick latency in milliseconds.
+     */
+    double getTickLatencyMax();
+
+    /**
+     * Gets the mean number of bytes allocated by the ticking thread during a tick.
+     * @return the mean allocation per tick in bytes.
+     */
+    double getAllocatedBytesPerTick();
+
+    /**
+     * Gets the 99th percentile of the bytes allocated during a tick.
+     * @return the 99th percentile allocation per tick in bytes.
+     */
+    long getAllocatedBytesPerTickP99();
+
+    /**
+     * Gets the number of frames painted per second, measured over at least the last second.
+     * @return the frame rate.
+     */
+    double getFrameRate();
+
+    /**
+     * Gets the median time taken to paint the game grid.
+     * @return the median frame time in milliseconds.
+     */
+    double getFrameTimeP50();
+
+    /**
+     * Gets the 99th percentile of the time taken to paint the game grid.
+     * @return the 99th percentile frame time in milliseconds.
+     */
+    double getFrameTimeP99();
+
+    /**
+     * Gets the longest time taken to paint the game grid.
+     * @return the longest frame time in milliseconds.
+     */
+    double getFrameTimeMax();
+
+    /**
+     * Gets the median time taken to spawn a food item.
+     * @return the median spawn time in milliseconds.
+     */
+    double getSpawnTimeP50();
+
+    /**
+     * Gets the 99th percentile of the time taken to spawn a food item.
+     * @return the 99th percentile spawn time in milliseconds.
+     */
+    double getSpawnTimeP99();
+
+    /**
+     * Gets the number of high scores saved.
+     * @return the number of saves.
+     */
+    long getSaveCount();
+
+    /**
+     * Gets the 99th percentile of the time taken to save the high scores.
+     * @return the 99th percentile save latency in milliseconds.
+     */
+    double getSaveLatencyP99();
+
+    /**
+     * Gets the longest time taken to save the high scores.
+     * @return the longest save latency in milliseconds.
+     */
+    double getSaveLatencyMax();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+
+    /**
+     * Appends the current values to a file, as CSV if the path ends in {@code .csv} and as a line of JSON otherwise.
+     * @param path the file to append to.
+     * @return a description of the outcome.
+     */
+    String dump(String path);
+}
@@ -0,0 +1,29 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event covering one paint of the game grid on the event dispatch thread.
+ */
+@Name("game.GridPaint")
+@Label("Grid Paint")
+@Category({"Snake", "Rendering"})
+@Description("One repaint of the game grid")
+@StackTrace(false)
+public class GridPaintEvent extends jdk.jfr.Event {
+    /** Number of snake segments drawn. */
+    @Label("Segments Drawn")
+    public int segmentsDrawn;
+
+    /** Number of food items drawn. */
+    @Label("Food Drawn")
+    public int foodDrawn;
+
+    /** Tick of the snapshot that was drawn. */
+    @Label("Tick")
+    public int tick;
+}
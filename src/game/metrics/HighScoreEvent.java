@@ -0,0 +1,33 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event covering a load or save of the high score file.
+ */
+@Name("game.HighScoreIO")
+@Label("High Score I/O")
+@Category({"Snake", "Storage"})
+@Description("Load or save of the high score file")
+public class HighScoreEvent extends jdk.jfr.Event {
+    /** Either {@code load} or {@code save}. */
+    @Label("Operation")
+    public String operation;
+
+    /** Path of the high score file. */
+    @Label("Path")
+    public String path;
+
+    /** Number of high scores read or written. */
+    @Label("Records")
+    public int records;
+
+    /** Number of bytes read or written. */
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,144 @@
+package game.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds or bytes allocated, that records in constant time
+ * without allocating or locking. Buckets are laid out like an HDR histogram: values below {@link #SUB_BUCKETS} get a
+ * bucket each, and above that every power of two is split into {@code SUB_BUCKETS / 2} equal buckets, so any recorded
+ * value is reported within about 1.6% of its true value whatever its magnitude.
+ * <p>
+ *     Any number of threads may record at once. Reading while others record gives a consistent enough view for
+ *     monitoring: each bucket is exact, but a snapshot may include part of a concurrent recording.
+ * </p>
+ */
+public class LatencyHistogram {
+    /** Number of bits of precision kept for each value. */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** Number of values below which every value has its own bucket. */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Number of buckets each power of two above {@link #SUB_BUCKETS} is split into. */
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    /** Largest power of two covered. Larger values are counted in the last bucket. */
+    private static final int MAX_EXPONENT = 44;
+
+    /** Count of values in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * HALF);
+
+    /** Number of values recorded. */
+    private final AtomicLong count = new AtomicLong();
+
+    /** Sum of the values recorded. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** Largest value recorded. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value. Negative values are counted as {@code 0}.
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    /**
+     * Gets the number of values recorded.
+     * @return the number of values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean of the values recorded.
+     * @return the mean, or {@code 0} if nothing has been recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Gets the largest value recorded.
+     * @return the largest value, or {@code 0} if nothing has been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile of the values recorded. The result is the largest value that falls in the same bucket as the
+     * true percentile, capped at the largest value recorded.
+     * @param percentile the percentile to compute, between {@code 0} and {@code 100}.
+     * @return the value at the percentile, or {@code 0} if nothing has been recorded.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long n = 0;
+        for (int i = 0; i < counts.length(); i++)
+            n += counts.get(i);
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Gets the bucket of a value.
+     * @hidden
+     */
+    private int index(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+            return counts.length() - 1;
+        // Keep the top SUB_BUCKET_BITS bits of the value, which lie in [HALF, SUB_BUCKETS)
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    /**
+     * Gets the largest value that falls in a bucket.
+     * @hidden
+     */
+    private static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long top = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+}
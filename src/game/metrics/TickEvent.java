@@ -0,0 +1,31 @@
+package game.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event covering one call to {@code GameEngine.updateGame()} that advanced the game. Its duration
+ * is the time taken by the tick, including tick listeners, so long ticks can be lined up with garbage collections and
+ * safepoints in the same recording.
+ */
+@Name("game.Tick")
+@Label("Game Tick")
+@Category({"Snake", "Game Loop"})
+@Description("One tick of a game engine")
+@StackTrace(false)
+public class TickEvent extends jdk.jfr.Event {
+    /** Number of the tick within its game. */
+    @Label("Tick")
+    public int tick;
+
+    /** Length of the snake after the tick. */
+    @Label("Snake Length")
+    public int snakeLength;
+
+    /** What the head ran into: {@code none}, {@code food}, {@code wall} or {@code body}. */
+    @Label("Collision")
+    public String collision;
+}
@@ -0,0 +1,10 @@
+/**
+ * Contains the performance instrumentation of the game: latency histograms and counters for ticks, food spawns, frames
+ * and high score saves, exposed over JMX and optionally written to a file for offline analysis, and JDK Flight Recorder
+ * events for the same work, enabled by {@code src/resources/profiles/game.jfc}.
+ * <p>
+ *     Each class in this package relies on an external class to setup logging ensuring that all loggers are uniform.
+ * </p>
+ * @see game.LoggerSetup
+ */
+package game.metrics;
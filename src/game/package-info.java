@@ -1,11 +1,17 @@
 /**
  * This package encompasses all the necessary components required for the snake game to function.
- * This package is organized into 3 subpackages that each serve their own purpose in the game's functions:
+ * This package is organized into 6 subpackages that each serve their own purpose in the game's functions:
  * <p>
+ * - {@code game.ai} provides headless environments for automated players
+ * </p><p>
  * - {@code game.core} contains the game elements and the game logic
  * </p><p>
  * - {@code game.gui} creates the gui and allows for interactivity
  * </p><p>
+ * - {@code game.metrics} measures the game loop, painting and saving for monitoring
+ * </p><p>
+ * - {@code game.server} hosts many games at once for network and bot play
+ * </p><p>
  * - {@code game.utils} holds constants, enums, and utility classes
  * </p>
  */
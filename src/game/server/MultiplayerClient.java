@@ -0,0 +1,390 @@
+package game.server;
+
+import game.LoggerSetup;
+import game.core.Arena;
+import game.core.FoodField;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A client for the {@link MultiplayerServer} that keeps a mirror of the board by applying the frames it receives. Its
+ * socket is non-blocking, so many clients can be driven from one thread by calling {@link #poll()} on each in turn.
+ * <p>
+ *     The mirror records which player owns every cell, where each head is and where every food item is, which is
+ *     enough for a bot to steer and for a test to compare the mirror with the server's arena.
+ * </p>
+ * Running {@link #main(String[])} starts a server in this process, connects loopback bots to it and checks that every
+ * mirror matches the server's board at the end.
+ */
+public class MultiplayerClient implements AutoCloseable {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(MultiplayerClient.class.getName());
+
+    /** Initial size of the receive buffer. It grows if a larger frame arrives. */
+    private static final int RECEIVE_BUFFER = 1 << 16;
+
+    /** Shared direction values to avoid copying the array for every turn. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The connection to the server. */
+    private final SocketChannel channel;
+
+    /** Holds received bytes until a whole frame is available. */
+    private ByteBuffer in = ByteBuffer.allocateDirect(RECEIVE_BUFFER);
+
+    /** Holds the turn being sent. */
+    private final ByteBuffer out = ByteBuffer.allocate(1);
+
+    /** Id of this client's player, or {@code -1} until the welcome frame arrives. */
+    private int playerId = -1;
+
+    /** Number of columns on the board. */
+    private int cols;
+
+    /** Number of rows on the board. */
+    private int rows;
+
+    /** Player owning each cell, or {@code -1} for empty cells. */
+    private int[] owner = new int[0];
+
+    /** Head cell of each player, or {@code -1} if they have no snake. */
+    private int[] heads = new int[0];
+
+    /** Length of each player's snake. */
+    private int[] lengths = new int[0];
+
+    /** Food on the board, or {@code null} until the welcome frame arrives. */
+    private FoodField food;
+
+    /** Food cell this client's bot is heading for, or {@code -1} if it has none. */
+    private int target = -1;
+
+    /** Number of the last tick received. */
+    private int tick;
+
+    /** Total bytes received. */
+    private long bytesReceived;
+
+    /** Total tick frames received. */
+    private long ticksReceived;
+
+    /**
+     * Connects to a server.
+     * @param address the address of the server.
+     * @throws IOException if the connection fails.
+     */
+    public MultiplayerClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    /**
+     * Reads everything the server has sent so far and applies every complete frame to the mirror.
+     * @return true if the connection is still open, false if the server closed it.
+     * @throws IOException if reading fails or the server sends a malformed frame.
+     */
+    public boolean poll() throws IOException {
+        int read;
+        while ((read = channel.read(in)) > 0) {
+            bytesReceived += read;
+            in.flip();
+            while (in.remaining() >= Integer.BYTES && in.remaining() >= Integer.BYTES + in.getInt(in.position())) {
+                int length = in.getInt();
+                int end = in.position() + length;
+                applyFrame(end);
+                in.position(end);
+            }
+            if (in.remaining() >= Integer.BYTES && Integer.BYTES + in.getInt(in.position()) > in.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(Integer.BYTES + in.getInt(in.position()));
+                larger.put(in);
+                in = larger;
+            } else {
+                in.compact();
+            }
+        }
+        return read >= 0;
+    }
+
+    /**
+     * Sends a turn to the server. The turn is dropped if the socket cannot take it right now.
+     * @param direction the direction to turn towards.
+     * @throws IOException if writing fails.
+     */
+    public void steer(Direction direction) throws IOException {
+        out.clear();
+        out.put((byte) direction.ordinal()).flip();
+        channel.write(out);
+    }
+
+    /**
+     * Applies one frame ending at {@code end} to the mirror.
+     * @hidden
+     */
+    private void applyFrame(int end) throws IOException {
+        byte type = in.get();
+        switch (type) {
+            case MultiplayerServer.FRAME_WELCOME -> {
+                playerId = in.getShort();
+                cols = in.getShort();
+                rows = in.getShort();
+                int players = in.getShort();
+                owner = new int[cols * rows];
+                food = new FoodField(cols, rows);
+                heads = new int[players];
+                lengths = new int[players];
+            }
+            case MultiplayerServer.FRAME_SNAPSHOT -> {
+                Arrays.fill(owner, -1);
+                food.clear();
+                Arrays.fill(heads, -1);
+                Arrays.fill(lengths, 0);
+                tick = in.getInt();
+                applyRecords(end);
+            }
+            case MultiplayerServer.FRAME_TICK -> {
+                tick = in.getInt();
+                ticksReceived++;
+                applyRecords(end);
+            }
+            default -> throw new IOException("Unknown frame type " + type);
+        }
+    }
+
+    /**
+     * Applies the change records of a frame.
+     * @hidden
+     */
+    private void applyRecords(int end) throws IOException {
+        while (in.position() < end) {
+            byte op = in.get();
+            switch (op) {
+                case MultiplayerServer.OP_SPAWN -> {
+                    int id = in.getShort();
+                    int length = in.getInt();
+                    for (int i = 0; i < length; i++) {
+                        int cell = in.getInt();
+                        owner[cell] = id;
+                        if (i == 0) heads[id] = cell;
+                    }
+                    lengths[id] = length;
+                }
+                case MultiplayerServer.OP_MOVE -> {
+                    int id = in.getShort();
+                    int head = in.getInt();
+                    int tail = in.getInt();
+                    // Another snake may already have moved into the cell this tail left
+                    if (tail < 0)
+                        lengths[id]++;
+                    else if (owner[tail] == id)
+                        owner[tail] = -1;
+                    owner[head] = id;
+                    heads[id] = head;
+                }
+                case MultiplayerServer.OP_DIE -> {
+                    int id = in.getShort();
+                    for (int cell = 0; cell < owner.length; cell++)
+                        if (owner[cell] == id) owner[cell] = -1;
+                    heads[id] = -1;
+                    lengths[id] = 0;
+                }
+                case MultiplayerServer.OP_FOOD -> food.add(in.getInt());
+                case MultiplayerServer.OP_FOOD_EATEN -> food.remove(in.getInt());
+                default -> throw new IOException("Unknown change record " + op);
+            }
+        }
+    }
+
+    /**
+     * Picks a turn towards a food item that does not run into a wall or a snake, using only the mirror. The client keeps
+     * heading for the same food item until it is eaten, then looks for the nearest one.
+     * @return the chosen direction, or {@code null} if this player has no snake or no safe move.
+     */
+    public Direction chooseGreedy() {
+        if (playerId < 0 || heads[playerId] < 0)
+            return null;
+        int hx = heads[playerId] % cols;
+        int hy = heads[playerId] / cols;
+        if (target < 0 || !food.contains(target))
+            target = food.nearest(hx, hy);
+        Direction best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (Direction dir : DIRECTIONS) {
+            int x = hx + (dir == Direction.LEFT ? -1 : dir == Direction.RIGHT ? 1 : 0);
+            int y = hy + (dir == Direction.UP ? -1 : dir == Direction.DOWN ? 1 : 0);
+            if (x < 0 || x >= cols || y < 0 || y >= rows || owner[y * cols + x] >= 0)
+                continue;
+            int distance = target < 0 ? 0 : Math.abs(x - target % cols) + Math.abs(y - target / cols);
+            if (distance < bestDistance) {
+                best = dir;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the cells where the mirror differs from the given arena.
+     * @param arena the server's arena.
+     * @return the number of cells with a different owner or a different food.
+     */
+    public int countDifferences(Arena arena) {
+        int[] expected = new int[cols * rows];
+        Arrays.fill(expected, -1);
+        for (int id = 0; id < arena.getMaxPlayers(); id++) {
+            List<Point> body = arena.getBody(id);
+            for (Point p : body)
+                expected[p.y * cols + p.x] = id;
+        }
+        int differences = 0;
+        for (int cell = 0; cell < expected.length; cell++) {
+            if (expected[cell] != owner[cell]) differences++;
+            if (arena.isFood(cell % cols, cell / cols) != food.contains(cell)) differences++;
+        }
+        return differences;
+    }
+
+    /**
+     * Gets the id of this client's player.
+     * @return the player id, or {@code -1} before the welcome frame arrives.
+     */
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * Gets the length of a player's snake in the mirror.
+     * @param id the player.
+     * @return the length, or {@code 0} if the player has no snake.
+     */
+    public int getLength(int id) {
+        return lengths[id];
+    }
+
+    /**
+     * Gets the number of the last tick received.
+     * @return the tick number.
+     */
+    public int getTick() {
+        return tick;
+    }
+
+    /**
+     * Gets the total number of bytes received.
+     * @return the number of bytes.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the number of tick frames received.
+     * @return the number of tick frames.
+     */
+    public long getTicksReceived() {
+        return ticksReceived;
+    }
+
+    /**
+     * Closes the connection.
+     * @throws IOException if closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Runs loopback bots against an in process server, logs the bandwidth per client and the average snake length
+     * every second, and finally checks every mirror against the server's board. Arguments, all optional, are the
+     * number of players, the number of seconds to run, the delay between ticks in milliseconds, the board size, the
+     * number of food items and the number of bots sharing the board.
+     * @param args command line arguments.
+     * @throws Exception if the server or a client fails.
+     */
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int delayMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 96;
+        int food = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+        int botCount = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+
+        Arena arena = new Arena(size, size, players + botCount, food, 1);
+        MultiplayerServer server = new MultiplayerServer(arena,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), delayMillis, botCount);
+        Thread serverThread = new Thread(server, "multiplayer-server");
+        serverThread.start();
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+        MultiplayerClient[] clients = new MultiplayerClient[players];
+        for (int i = 0; i < players; i++)
+            clients[i] = new MultiplayerClient(address);
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        long lastBytes = 0;
+        long lastTicks = 0;
+        int[] steeredAt = new int[players];
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < players; i++) {
+                MultiplayerClient client = clients[i];
+                client.poll();
+                // Steer once per tick so the snake's input queue is not flooded
+                if (client.getTick() == steeredAt[i])
+                    continue;
+                steeredAt[i] = client.getTick();
+                Direction dir = client.chooseGreedy();
+                if (dir != null)
+                    client.steer(dir);
+            }
+            if (System.nanoTime() >= nextReport) {
+                nextReport += 1_000_000_000L;
+                long bytes = clients[0].getBytesReceived();
+                long ticks = clients[0].getTicksReceived();
+                long totalLength = 0;
+                int alive = 0;
+                for (int id = 0; id < arena.getMaxPlayers(); id++) {
+                    if (clients[0].getLength(id) > 0) {
+                        totalLength += clients[0].getLength(id);
+                        alive++;
+                    }
+                }
+                LOGGER.info(String.format("tick %d: %d alive, average length %.1f, %.0f bytes per tick per client",
+                        clients[0].getTick(), alive, alive == 0 ? 0.0 : (double) totalLength / alive,
+                        ticks == lastTicks ? 0.0 : (double) (bytes - lastBytes) / (ticks - lastTicks)));
+                lastBytes = bytes;
+                lastTicks = ticks;
+            }
+            Thread.sleep(1);
+        }
+
+        // Let the last frames arrive before comparing the mirrors with the server
+        server.setTicking(false);
+        Thread.sleep(2L * delayMillis + 100);
+        for (MultiplayerClient client : clients)
+            client.poll();
+        server.close();
+        serverThread.join();
+        int mismatched = 0;
+        for (MultiplayerClient client : clients) {
+            if (client.countDifferences(arena) != 0)
+                mismatched++;
+            client.close();
+        }
+        LOGGER.info(mismatched + " of " + players + " client mirrors differ from the server at tick "
+                + arena.getTicks() + ".");
+    }
+}
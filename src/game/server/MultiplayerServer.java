@@ -0,0 +1,530 @@
+package game.server;
+
+import game.LoggerSetup;
+import game.ai.ArenaBots;
+import game.core.Arena;
+import game.core.ArenaListener;
+import game.utils.Direction;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An authoritative multiplayer server where every connected player controls one snake in a shared {@link Arena}. The
+ * server runs on a single thread with a {@link Selector}: it accepts players, reads their turns, ticks the arena and
+ * writes the result, all without blocking.
+ * <p>
+ *     Clients send one byte per turn, the ordinal of the {@link Direction}. The server sends frames that start with an
+ *     {@code int} length and a type byte. A {@link #FRAME_WELCOME} frame tells a new player their id and the board size,
+ *     and a {@link #FRAME_SNAPSHOT} frame describes the whole board once. After that every {@link #FRAME_TICK} frame
+ *     holds only what changed: new heads, cells left by tails, deaths, spawns and food eaten or added. A moving snake costs the
+ *     same number of bytes however long it is, so bandwidth per client depends on the number of players rather than on
+ *     the size of the snakes.
+ * </p><p>
+ *     Each tick is encoded once into a pooled direct buffer and shared by every client through read only views. Frames
+ *     a client has not received yet are sent together with a gathering write. A client that falls more than
+ *     {@link #MAX_PENDING_FRAMES} frames behind is disconnected, which bounds the memory a slow client can hold.
+ * </p>
+ * Running {@link #main(String[])} starts a server; {@link MultiplayerClient#main(String[])} runs loopback players
+ * against an in process server.
+ */
+public class MultiplayerServer implements Runnable, AutoCloseable {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(MultiplayerServer.class.getName());
+
+    /** Frame giving a new player their id, followed by the board size and player limit as {@code short}s. */
+    public static final byte FRAME_WELCOME = 0;
+
+    /** Frame with the tick number as an {@code int} followed by the changes made by that tick. */
+    public static final byte FRAME_TICK = 1;
+
+    /** Frame with the tick number as an {@code int} followed by every snake and food item on the board. */
+    public static final byte FRAME_SNAPSHOT = 2;
+
+    /** Change record: player id as a {@code short} and length as an {@code int}, then every cell from the head. */
+    public static final byte OP_SPAWN = 0;
+
+    /** Change record: player id as a {@code short}, then the head cell and the cell left by the tail, or {@code -1}. */
+    public static final byte OP_MOVE = 1;
+
+    /** Change record: player id as a {@code short}. The whole snake is removed. */
+    public static final byte OP_DIE = 2;
+
+    /** Change record: the cell of a new food item. */
+    public static final byte OP_FOOD = 3;
+
+    /** Change record: the cell of a food item that was eaten. */
+    public static final byte OP_FOOD_EATEN = 4;
+
+    /** Most frames that may wait to be sent to a client before it is disconnected. */
+    public static final int MAX_PENDING_FRAMES = 64;
+
+    /** Bytes in the length and type header of every frame. */
+    private static final int FRAME_HEADER = Integer.BYTES + 1;
+
+    /** Number of bytes in a food change record. */
+    private static final int FOOD_BYTES = 1 + Integer.BYTES;
+
+    /** Largest number of bytes a single player can add to one tick frame, including the food they eat. */
+    private static final int MAX_PLAYER_BYTES = 1 + Short.BYTES + Integer.BYTES * (1 + Arena.SPAWN_LENGTH) + FOOD_BYTES;
+
+    /** Shared direction values to avoid copying the array for every input. */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /** The board every player shares. */
+    private final Arena arena;
+
+    /** Scripted players sharing the board with the connected ones. */
+    private final ArenaBots bots;
+
+    /** Time between ticks in nanoseconds. */
+    private final long periodNanos;
+
+    /** Waits for network events. */
+    private final Selector selector;
+
+    /** Accepts new players. */
+    private final ServerSocketChannel serverChannel;
+
+    /** Pooled tick frames. A frame is reused only after every client still connected has sent it. */
+    private final ByteBuffer[] frames = new ByteBuffer[MAX_PENDING_FRAMES + 2];
+
+    /** Connection of each player, indexed by player id. */
+    private final Connection[] connections;
+
+    /** Writes arena changes into the frame being built. */
+    private final FrameEncoder encoder = new FrameEncoder();
+
+    /** Number of tick frames encoded so far. */
+    private long frameCount;
+
+    /** {@code false} once the server has been asked to stop. */
+    private volatile boolean running = true;
+
+    /** {@code false} while ticking is paused. Connections are still served. */
+    private volatile boolean ticking = true;
+
+    /**
+     * Creates a server and binds it to the given address. Call {@link #run()} to start serving.
+     * @param arena the board shared by all players.
+     * @param address the address to listen on. Port {@code 0} picks a free port.
+     * @param delayMillis the time between ticks in milliseconds.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if {@code delayMillis} is not positive or the board is too large for the
+     *                                  protocol.
+     */
+    public MultiplayerServer(Arena arena, InetSocketAddress address, int delayMillis) throws IOException {
+        this(arena, address, delayMillis, 0);
+    }
+
+    /**
+     * Creates a server with scripted players and binds it to the given address. Bots take player slots, so fewer
+     * players can connect. Call {@link #run()} to start serving.
+     * @param arena the board shared by all players.
+     * @param address the address to listen on. Port {@code 0} picks a free port.
+     * @param delayMillis the time between ticks in milliseconds.
+     * @param botCount the number of bots to add to the arena.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if {@code delayMillis} is not positive, {@code botCount} is negative or the
+     *                                  board is too large for the protocol.
+     */
+    public MultiplayerServer(Arena arena, InetSocketAddress address, int delayMillis, int botCount)
+            throws IOException {
+        if (delayMillis <= 0 || botCount < 0) {
+            throw new IllegalArgumentException("delayMillis must be positive and botCount must not be negative");
+        }
+        if (arena.getCols() > Short.MAX_VALUE || arena.getRows() > Short.MAX_VALUE
+                || arena.getMaxPlayers() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Arena is too large for the protocol");
+        }
+        this.arena = arena;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.connections = new Connection[arena.getMaxPlayers()];
+        this.bots = new ArenaBots(arena);
+        bots.add(botCount);
+        int frameSize = FRAME_HEADER + Integer.BYTES + arena.getMaxPlayers() * MAX_PLAYER_BYTES
+                + arena.getMaxFood() * FOOD_BYTES;
+        for (int i = 0; i < frames.length; i++)
+            frames[i] = ByteBuffer.allocateDirect(frameSize);
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        LOGGER.info("Multiplayer server listening on " + serverChannel.getLocalAddress());
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     * @return the local port.
+     * @throws IOException if the port cannot be read.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Pauses or resumes ticking. While paused, connections are still accepted and pending frames are still sent.
+     * @param ticking {@code true} to tick, {@code false} to pause.
+     */
+    public void setTicking(boolean ticking) {
+        this.ticking = ticking;
+    }
+
+    /**
+     * Serves players until {@link #close()} is called. Must only be called once.
+     */
+    @Override
+    public void run() {
+        long next = System.nanoTime() + periodNanos;
+        try {
+            while (running) {
+                long wait = next - System.nanoTime();
+                if (wait > 0)
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                else
+                    selector.selectNow();
+                handleKeys();
+
+                long now = System.nanoTime();
+                if (now - next >= 0) {
+                    if (ticking)
+                        broadcastTick();
+                    next += periodNanos;
+                    if (now - next > periodNanos)
+                        next = now + periodNanos;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Multiplayer server stopped unexpectedly", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops the server. The serving thread closes every connection before it returns.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Handles every ready key.
+     * @hidden
+     */
+    private void handleKeys() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid())
+                continue;
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable())
+                read(connection);
+            if (key.isValid() && key.isWritable())
+                flush(connection);
+        }
+    }
+
+    /**
+     * Accepts a new player and sends them the welcome and a snapshot of the board.
+     * @hidden
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        int id = arena.join();
+        if (id < 0) {
+            LOGGER.fine("Rejected " + channel.getRemoteAddress() + ", the arena is full.");
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel, id);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connections[id] = connection;
+
+        ByteBuffer welcome = ByteBuffer.allocate(snapshotSize());
+        welcome.putInt(1 + Short.BYTES * 4).put(FRAME_WELCOME).putShort((short) id).putShort((short) arena.getCols())
+                .putShort((short) arena.getRows()).putShort((short) arena.getMaxPlayers());
+        encoder.begin(welcome, FRAME_SNAPSHOT, arena.getTicks());
+        arena.snapshot(encoder);
+        encoder.end();
+        welcome.flip();
+        queue(connection, welcome);
+        flush(connection);
+        LOGGER.fine("Player " + id + " connected from " + channel.getRemoteAddress());
+    }
+
+    /**
+     * Gets the number of bytes needed for the welcome and snapshot frames of the current board.
+     * @hidden
+     */
+    private int snapshotSize() {
+        int size = FRAME_HEADER + Short.BYTES * 4 + FRAME_HEADER + Integer.BYTES + arena.getMaxFood() * FOOD_BYTES;
+        for (int id = 0; id < arena.getMaxPlayers(); id++)
+            size += 1 + Short.BYTES + Integer.BYTES * (1 + arena.getBody(id).size());
+        return size;
+    }
+
+    /**
+     * Reads the turns sent by a player.
+     * @hidden
+     */
+    private void read(Connection connection) {
+        try {
+            int read = connection.channel.read(connection.input);
+            if (read < 0) {
+                disconnect(connection, "closed the connection");
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection, "failed to read: " + e.getMessage());
+            return;
+        }
+        ByteBuffer input = connection.input.flip();
+        while (input.hasRemaining()) {
+            int ordinal = input.get();
+            if (ordinal < 0 || ordinal >= DIRECTIONS.length) {
+                disconnect(connection, "sent an invalid direction");
+                return;
+            }
+            arena.steer(connection.playerId, DIRECTIONS[ordinal]);
+        }
+        input.clear();
+    }
+
+    /**
+     * Steers the bots, ticks the arena, encodes the changes into the next pooled frame and sends it to every player.
+     * @hidden
+     */
+    private void broadcastTick() {
+        ByteBuffer frame = frames[(int) (frameCount++ % frames.length)];
+        frame.clear();
+        encoder.begin(frame, FRAME_TICK, arena.getTicks() + 1);
+        bots.steer();
+        arena.tick(encoder);
+        encoder.end();
+        frame.flip();
+        for (Connection connection : connections) {
+            if (connection != null && queue(connection, frame.asReadOnlyBuffer()))
+                flush(connection);
+        }
+    }
+
+    /**
+     * Adds a frame to the ones waiting to be sent to a player, disconnecting them if too many are waiting.
+     * @return true if the frame was queued, false if the player was disconnected.
+     * @hidden
+     */
+    private boolean queue(Connection connection, ByteBuffer frame) {
+        if (connection.pendingCount == connection.pending.length) {
+            disconnect(connection, "fell too far behind");
+            return false;
+        }
+        connection.pending[connection.pendingCount++] = frame;
+        return true;
+    }
+
+    /**
+     * Sends as many waiting frames to a player as the socket accepts, in a single gathering write.
+     * @hidden
+     */
+    private void flush(Connection connection) {
+        try {
+            connection.channel.write(connection.pending, 0, connection.pendingCount);
+        } catch (IOException e) {
+            disconnect(connection, "failed to write: " + e.getMessage());
+            return;
+        }
+        int sent = 0;
+        while (sent < connection.pendingCount && !connection.pending[sent].hasRemaining())
+            sent++;
+        if (sent > 0) {
+            System.arraycopy(connection.pending, sent, connection.pending, 0, connection.pendingCount - sent);
+            for (int i = connection.pendingCount - sent; i < connection.pendingCount; i++)
+                connection.pending[i] = null;
+            connection.pendingCount -= sent;
+        }
+        connection.key.interestOps(connection.pendingCount > 0
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Closes a player's connection and removes their snake.
+     * @hidden
+     */
+    private void disconnect(Connection connection, String reason) {
+        if (connections[connection.playerId] != connection)
+            return;
+        connections[connection.playerId] = null;
+        arena.leave(connection.playerId);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close connection of player " + connection.playerId, e);
+        }
+        LOGGER.fine("Player " + connection.playerId + " disconnected: " + reason);
+    }
+
+    /**
+     * Closes every connection and the listening socket.
+     * @hidden
+     */
+    private void shutdown() {
+        for (Connection connection : connections) {
+            if (connection != null)
+                disconnect(connection, "server stopped");
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to close the multiplayer server", e);
+        }
+        LOGGER.info("Multiplayer server stopped.");
+    }
+
+    /**
+     * Starts a server and serves until the process is stopped. Arguments, all optional, are the port, the number of
+     * columns and rows, the player limit, the delay between ticks in milliseconds, the number of food items and the
+     * number of bots.
+     * @param args command line arguments.
+     * @throws IOException if the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7275;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int players = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+        int delayMillis = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        int food = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int botCount = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+        Arena arena = new Arena(cols, rows, players, food, System.nanoTime());
+        new MultiplayerServer(arena, new InetSocketAddress(port), delayMillis, botCount).run();
+    }
+
+    /**
+     * The state of one connected player.
+     */
+    private static final class Connection {
+        /** Maximum number of turn bytes read at once. */
+        private static final int INPUT_BUFFER = 64;
+
+        /** The player's socket. */
+        final SocketChannel channel;
+
+        /** Id of the player in the arena. */
+        final int playerId;
+
+        /** Buffer turns are read into. */
+        final ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER);
+
+        /** Frames waiting to be sent, oldest first. One extra slot holds the welcome frame. */
+        final ByteBuffer[] pending = new ByteBuffer[MAX_PENDING_FRAMES + 1];
+
+        /** Number of frames waiting to be sent. */
+        int pendingCount;
+
+        /** Registration of the socket with the selector. */
+        SelectionKey key;
+
+        /**
+         * Creates the state of a newly accepted player.
+         * @hidden
+         */
+        Connection(SocketChannel channel, int playerId) {
+            this.channel = channel;
+            this.playerId = playerId;
+        }
+    }
+
+    /**
+     * Encodes arena changes as change records into a frame.
+     */
+    private final class FrameEncoder implements ArenaListener {
+        /** The frame being written. */
+        private ByteBuffer frame;
+
+        /** Position of the frame's length field. */
+        private int start;
+
+        /**
+         * Starts a frame of the given type.
+         * @hidden
+         */
+        void begin(ByteBuffer frame, byte type, int tick) {
+            this.frame = frame;
+            start = frame.position();
+            frame.putInt(0).put(type).putInt(tick);
+        }
+
+        /**
+         * Fills in the length of the frame.
+         * @hidden
+         */
+        void end() {
+            frame.putInt(start, frame.position() - start - Integer.BYTES);
+        }
+
+        @Override
+        public void spawned(int id, List<Point> body) {
+            frame.put(OP_SPAWN).putShort((short) id).putInt(body.size());
+            for (Point p : body)
+                frame.putInt(cell(p.x, p.y));
+        }
+
+        @Override
+        public void moved(int id, int headX, int headY, int tailX, int tailY) {
+            frame.put(OP_MOVE).putShort((short) id).putInt(cell(headX, headY)).putInt(tailX < 0 ? -1 : cell(tailX, tailY));
+        }
+
+        @Override
+        public void died(int id) {
+            frame.put(OP_DIE).putShort((short) id);
+        }
+
+        @Override
+        public void foodAdded(int x, int y) {
+            frame.put(OP_FOOD).putInt(cell(x, y));
+        }
+
+        @Override
+        public void foodRemoved(int x, int y) {
+            frame.put(OP_FOOD_EATEN).putInt(cell(x, y));
+        }
+
+        /**
+         * Converts a position into a cell index.
+         * @hidden
+         */
+        private int cell(int x, int y) {
+            return y * arena.getCols() + x;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package game.server;
+
+import game.LoggerSetup;
+import game.core.GameEngine;
+import game.core.InputQueue;
+import game.core.TickListener;
+import game.utils.Constants;
+import game.utils.Direction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One game hosted by a {@link SessionHost}. A session owns its own headless {@link GameEngine} and tick rate, and is
+ * only ever ticked by one worker thread at a time, so sessions are isolated from each other: a slow or failing session
+ * cannot corrupt another one.
+ * <p>
+ *     A session is re-armed only after its tick has finished, so it never has more than one tick waiting or running.
+ *     If it falls more than {@link #MAX_LAG} ticks behind schedule, the backlog is dropped instead of being run back to
+ *     back, which keeps an overloaded host from building an ever growing queue.
+ * </p>
+ * Inputs can be sent from one outside thread with {@link #steer(Direction)}, or the game can be driven by a controller
+ * that runs on the worker thread, but not both. Steering goes into a queue owned by the session, which outlives the
+ * snakes of restarted games, and the worker hands the inputs to the current snake before each tick.
+ */
+public class Session implements Runnable {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(Session.class.getName());
+
+    /** Most ticks a session may fall behind before the missed ticks are dropped. */
+    public static final int MAX_LAG = 3;
+
+    /** The host that schedules this session. */
+    private final SessionHost host;
+
+    /** Identifier of the session, unique within its host. */
+    private final long id;
+
+    /** The game played by this session. */
+    private final GameEngine gameEngine;
+
+    /** Time between ticks in nanoseconds. */
+    private final long periodNanos;
+
+    /** {@code true} if a new game is started whenever one ends instead of closing the session. */
+    private final boolean autoRestart;
+
+    /** Seed of the first game. Later games use the following seeds. */
+    private final long seed;
+
+    /** Inputs sent with {@link #steer(Direction)} that the worker has not handed to the snake yet. */
+    private final InputQueue inputs = new InputQueue(Constants.INPUT_QUEUE_CAPACITY);
+
+    /** Time the next tick is due, on the {@link System#nanoTime()} clock. */
+    long deadline;
+
+    /** Number of full turns of the timer wheel left before this session is due. Only used by the timer thread. */
+    long rounds;
+
+    /** Score of the current game, published after every tick. */
+    private volatile int score;
+
+    /** Number of ticks run so far, published after every tick. */
+    private volatile long ticks;
+
+    /** Number of games finished so far. */
+    private volatile int gamesPlayed;
+
+    /** Number of ticks dropped because the session fell too far behind. */
+    private volatile long skippedTicks;
+
+    /** {@code true} once the session has been closed. Set exactly once, so the host releases its slot only once. */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Creates a session. Sessions are opened through {@link SessionHost#open(long, int, TickListener, boolean)}.
+     * @hidden
+     */
+    Session(SessionHost host, long id, long seed, int delayMillis, TickListener controller, boolean autoRestart) {
+        this.host = host;
+        this.id = id;
+        this.seed = seed;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.autoRestart = autoRestart;
+        this.gameEngine = new GameEngine(seed);
+        if (controller != null)
+            gameEngine.addTickListener(controller);
+        this.deadline = System.nanoTime() + periodNanos;
+    }
+
+    /**
+     * Runs one tick on a worker thread, then schedules the next one. Anything thrown by the game closes this session
+     * only.
+     */
+    @Override
+    public void run() {
+        if (closed.get())
+            return;
+        long now = System.nanoTime();
+        host.recordLateness(now - deadline);
+        try {
+            Direction direction;
+            while ((direction = inputs.poll()) != null)
+                gameEngine.getSnake().changeDirection(direction, inputs.polledTimestamp());
+            gameEngine.updateGame();
+            if (gameEngine.hasEnded()) {
+                gamesPlayed++;
+                if (!autoRestart) {
+                    score = gameEngine.getScore();
+                    close();
+                    return;
+                }
+                gameEngine.startGame(seed + gamesPlayed);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Session " + id + " failed and was closed", e);
+            close();
+            return;
+        }
+        score = gameEngine.getScore();
+        ticks++;
+
+        deadline += periodNanos;
+        long behind = now - deadline;
+        if (behind > MAX_LAG * periodNanos) {
+            long missed = behind / periodNanos;
+            skippedTicks += missed;
+            deadline += missed * periodNanos;
+        }
+        host.schedule(this);
+    }
+
+    /**
+     * Queues a turn for the snake, which the worker applies at the start of the next tick, even if a new game has
+     * started by then. Only one thread may steer a session.
+     * @param direction the direction to turn towards.
+     */
+    public void steer(Direction direction) {
+        if (!closed.get() && !inputs.offer(direction, System.nanoTime()))
+            LOGGER.finer(() -> "Session " + id + " input queue full, dropped " + direction);
+    }
+
+    /**
+     * Stops the session. It is removed from its host before its next tick. Safe to call from any thread and more than
+     * once; only the first call frees the session's slot in the host.
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true))
+            host.release(this);
+    }
+
+    /**
+     * Returns {@code true} if the session has been closed.
+     * @return true if the session is closed, false otherwise.
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Gets the identifier of the session.
+     * @return the session id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the score of the current game, or of the last game if the session is closed.
+     * @return the score.
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the number of ticks run by this session.
+     * @return the number of ticks.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Gets the number of games finished by this session.
+     * @return the number of games played.
+     */
+    public int getGamesPlayed() {
+        return gamesPlayed;
+    }
+
+    /**
+     * Gets the number of ticks that were dropped because the session fell behind.
+     * @return the number of skipped ticks.
+     */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+}
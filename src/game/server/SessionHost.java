@@ -0,0 +1,321 @@
+package game.server;
+
+import game.LoggerSetup;
+import game.ai.GreedyController;
+import game.core.TickListener;
+import game.core.TickStats;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Owns and runs many {@link Session}s from a single hashed wheel timer, so thousands of games can share a handful of
+ * threads while each keeps its own tick rate.
+ * <p>
+ *     The wheel is an array of buckets that the timer thread visits one per {@link #TICK_MILLIS} milliseconds. A session
+ *     due in {@code n} wheel ticks is placed in bucket {@code (now + n) % WHEEL_SIZE} together with the number of full
+ *     turns it still has to wait, so scheduling and expiring a session are both constant time no matter how many
+ *     sessions are open. Due sessions are handed to a fixed pool of worker threads in the order they expire, and every
+ *     session is visited on every turn of the wheel, so no session can starve another.
+ * </p><p>
+ *     Sessions re-arm themselves through a concurrent queue when their tick finishes, and the timer thread moves them
+ *     into the wheel. Because a session is never re-armed before its tick completes, the work queue never holds more
+ *     than one entry per session. Overload shows up as lateness and skipped ticks rather than unbounded memory, and
+ *     {@link #open(long, int, TickListener, boolean)} refuses new sessions once the host is full.
+ * </p>
+ * Running {@link #main(String[])} opens thousands of bot controlled sessions and reports throughput and lateness.
+ */
+public class SessionHost implements AutoCloseable {
+    /**
+     * Logger for logging information.
+     * @hidden
+     */
+    private static final Logger LOGGER = LoggerSetup.getLogger(SessionHost.class.getName());
+
+    /** Resolution of the timer wheel in milliseconds. */
+    public static final int TICK_MILLIS = 1;
+
+    /** Number of buckets in the timer wheel. Must be a power of two. */
+    public static final int WHEEL_SIZE = 512;
+
+    /** Resolution of the timer wheel in nanoseconds. */
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    /** Sessions waiting in each bucket of the wheel. Only used by the timer thread. */
+    private final Session[][] buckets = new Session[WHEEL_SIZE][];
+
+    /** Number of sessions in each bucket. Only used by the timer thread. */
+    private final int[] bucketSizes = new int[WHEEL_SIZE];
+
+    /** Sessions that were opened or finished a tick and need to be put back into the wheel. */
+    private final Queue<Session> pending = new ConcurrentLinkedQueue<>();
+
+    /** Runs the ticks of due sessions. */
+    private final ExecutorService workers;
+
+    /** Thread that turns the wheel. */
+    private final Thread timer;
+
+    /** Largest number of sessions that may be open at once. */
+    private final int maxSessions;
+
+    /** Number of sessions currently open. */
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /** Source of session identifiers. */
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * How late sessions were started compared to their deadline, one recorder per worker thread so recording never
+     * contends on a shared lock. Merged when read.
+     */
+    private final List<TickStats> lateness = new CopyOnWriteArrayList<>();
+
+    /** The lateness recorder of the current worker thread, created and registered on its first tick. */
+    private final ThreadLocal<TickStats> workerLateness = ThreadLocal.withInitial(() -> {
+        TickStats stats = new TickStats();
+        lateness.add(stats);
+        return stats;
+    });
+
+    /** Time the wheel started turning. */
+    private final long startTime;
+
+    /** {@code true} once the host has been closed. */
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a host and starts its timer and worker threads.
+     * @param maxSessions the largest number of sessions that may be open at once.
+     * @param workerThreads the number of threads that run ticks.
+     * @throws IllegalArgumentException if either argument is not positive.
+     */
+    public SessionHost(int maxSessions, int workerThreads) {
+        if (maxSessions <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException("maxSessions and workerThreads must be positive");
+        }
+        this.maxSessions = maxSessions;
+        for (int b = 0; b < WHEEL_SIZE; b++)
+            buckets[b] = new Session[8];
+        workers = Executors.newFixedThreadPool(workerThreads, daemonThreads("session-worker-"));
+        startTime = System.nanoTime();
+        timer = new Thread(this::turnWheel, "session-timer");
+        timer.setDaemon(true);
+        timer.start();
+        LOGGER.config("Session host started with " + workerThreads + " workers for up to " + maxSessions
+                + " sessions.");
+    }
+
+    /**
+     * Opens a new session. Its first tick is due one delay from now.
+     * @param seed the seed of the session's first game.
+     * @param delayMillis the time between ticks in milliseconds.
+     * @param controller a listener that steers the snake on the worker thread, or {@code null} to steer with
+     *                   {@link Session#steer(game.utils.Direction)}.
+     * @param autoRestart {@code true} to start a new game whenever one ends, {@code false} to close the session.
+     * @return the new session.
+     * @throws IllegalArgumentException if {@code delayMillis} is not positive.
+     * @throws IllegalStateException if the host is closed or already has {@code maxSessions} sessions open.
+     */
+    public Session open(long seed, int delayMillis, TickListener controller, boolean autoRestart) {
+        if (delayMillis <= 0) {
+            throw new IllegalArgumentException("delayMillis must be positive");
+        }
+        if (shutdown) {
+            throw new IllegalStateException("Session host is closed");
+        }
+        if (sessionCount.incrementAndGet() > maxSessions) {
+            sessionCount.decrementAndGet();
+            throw new IllegalStateException("Session host is full");
+        }
+        Session session = new Session(this, nextId.getAndIncrement(), seed, delayMillis, controller, autoRestart);
+        schedule(session);
+        return session;
+    }
+
+    /**
+     * Gets the number of sessions currently open.
+     * @return the number of open sessions.
+     */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    /**
+     * Gets how late ticks started compared to their deadlines, merged from every worker thread. Merging copies the
+     * recent lateness of each worker, so this should be read occasionally rather than every tick.
+     * @return a new copy of the lateness statistics, which does not change as sessions keep running.
+     */
+    public TickStats getLateness() {
+        TickStats merged = new TickStats(TickStats.WINDOW * Math.max(1, lateness.size()));
+        for (TickStats stats : lateness)
+            merged.addAll(stats);
+        return merged;
+    }
+
+    /**
+     * Stops the timer and worker threads. Open sessions stop ticking.
+     */
+    @Override
+    public void close() {
+        shutdown = true;
+        LockSupport.unpark(timer);
+        workers.shutdown();
+        LOGGER.config("Session host closed.");
+    }
+
+    /**
+     * Queues a session to be put back into the wheel. Called when it is opened and after every tick.
+     * @param session the session to schedule.
+     */
+    void schedule(Session session) {
+        pending.add(session);
+    }
+
+    /**
+     * Frees the slot of a closed session.
+     * @param session the session that was closed.
+     */
+    void release(Session session) {
+        sessionCount.decrementAndGet();
+    }
+
+    /**
+     * Records how late a session's tick started.
+     * @param nanos the time between the deadline and the start of the tick.
+     */
+    void recordLateness(long nanos) {
+        workerLateness.get().record(Math.max(0, nanos), 0);
+    }
+
+    /**
+     * The body of the timer thread. Every wheel tick it moves pending sessions into their buckets and dispatches the
+     * sessions in the current bucket that are due.
+     * @hidden
+     */
+    private void turnWheel() {
+        long tick = 0;
+        while (!shutdown) {
+            long wait = startTime + (tick + 1) * TICK_NANOS - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            transferPending(tick);
+            expire(tick);
+            tick++;
+        }
+    }
+
+    /**
+     * Moves every pending session into the bucket of its deadline. Sessions that are already due go into the current
+     * bucket.
+     * @hidden
+     */
+    private void transferPending(long tick) {
+        Session session;
+        while ((session = pending.poll()) != null) {
+            if (session.isClosed())
+                continue;
+            long due = Math.max(tick, Math.floorDiv(session.deadline - startTime, TICK_NANOS));
+            session.rounds = (due - tick) / WHEEL_SIZE;
+            add((int) (due & (WHEEL_SIZE - 1)), session);
+        }
+    }
+
+    /**
+     * Hands every due session in the current bucket to the workers and counts down the rest.
+     * @hidden
+     */
+    private void expire(long tick) {
+        int b = (int) (tick & (WHEEL_SIZE - 1));
+        Session[] bucket = buckets[b];
+        int size = bucketSizes[b];
+        int i = 0;
+        while (i < size) {
+            Session session = bucket[i];
+            if (session.isClosed() || session.rounds == 0) {
+                bucket[i] = bucket[--size];
+                bucket[size] = null;
+                if (!session.isClosed())
+                    workers.execute(session);
+            } else {
+                session.rounds--;
+                i++;
+            }
+        }
+        bucketSizes[b] = size;
+    }
+
+    /**
+     * Adds a session to a bucket, growing it if needed.
+     * @hidden
+     */
+    private void add(int b, Session session) {
+        if (bucketSizes[b] == buckets[b].length)
+            buckets[b] = Arrays.copyOf(buckets[b], buckets[b].length * 2);
+        buckets[b][bucketSizes[b]++] = session;
+    }
+
+    /**
+     * Creates daemon threads with numbered names.
+     * @hidden
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Benchmarks the host with bot controlled sessions and logs the ticks per second and lateness percentiles every
+     * second. Arguments, all optional, are the number of sessions, the delay between ticks in milliseconds, the number
+     * of seconds to run and the number of worker threads.
+     * @param args command line arguments.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int delayMillis = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        try (SessionHost host = new SessionHost(sessions, threads)) {
+            Session[] open = new Session[sessions];
+            for (int i = 0; i < sessions; i++)
+                open[i] = host.open(i, delayMillis, new GreedyController(), true);
+            LOGGER.info("Opened " + sessions + " sessions ticking every " + delayMillis + " ms on " + threads
+                    + " workers.");
+
+            long previous = 0;
+            for (int s = 0; s < seconds; s++) {
+                Thread.sleep(1000);
+                long ticks = 0;
+                long skipped = 0;
+                for (Session session : open) {
+                    ticks += session.getTicks();
+                    skipped += session.getSkippedTicks();
+                }
+                TickStats lateness = host.getLateness();
+                LOGGER.info(String.format("%d ticks/s (target %d), %d skipped, lateness p50 %.2f ms, p99 %.2f ms",
+                        ticks - previous, sessions * 1000L / delayMillis, skipped,
+                        lateness.percentile(50) / 1e6, lateness.percentile(99) / 1e6));
+                previous = ticks;
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * Hosts many games in one process, for example behind a browser front end or for bot ladders. Games in this package
+ * run on headless {@link game.core.GameEngine}s that are ticked by a shared scheduler rather than by a timer or thread
+ * of their own.
+ * @see game.core.GameEngine
+ */
+package game.server;
@@ -2,6 +2,7 @@ package game.utils;
 
 import game.LoggerSetup;
 import game.core.Food;
+import game.core.LevelMap;
 import game.core.Snake;
 import java.awt.Point;
 import java.util.List;
@@ -13,39 +14,49 @@ public class CollisionDetector {
     private static final Logger LOGGER = LoggerSetup.getLogger(CollisionDetector.class.getName());
     private final Snake snake;
     private final Food food;
+    private final LevelMap level;
 
     /**
-     * Constructor to check for any collisions in the game's state
+     * Constructor to check for any collisions in the game's state on an open board
      * @throws IllegalArgumentException for if snake or food is null
      */
 
     public CollisionDetector(Snake snake, Food food) {
-        if (snake == null || food == null) {
+        this(snake, food, LevelMap.empty(Constants.NUM_COLS, Constants.NUM_ROWS));
+    }
+
+    /**
+     * Constructor to check for any collisions in the game's state on a level with walls
+     * @throws IllegalArgumentException for if snake, food or level is null
+     */
+    public CollisionDetector(Snake snake, Food food, LevelMap level) {
+        if (snake == null || food == null || level == null) {
             throw new IllegalArgumentException();
         }
         this.snake = snake;
         this.food = food;
+        this.level = level;
     }
 
     /**
-     * Checks for collision with wall
+     * Checks for collision with the board edges or a wall of the level
      */
     public boolean wallCollision() {
         Point head = snake.getSnake().get(0);
-        if (head.x < 0 || head.x >= Constants.NUM_COLS || head.y < 0 || head.y >= Constants.NUM_ROWS) {
-            LOGGER.fine("Collision with wall.");
+        if (level.isWall(head.x, head.y)) {
+            LOGGER.finest("Collision with wall.");
             return true;
         }
         return false;
     }
 
     /**
-     * Checks for collision with food
+     * Checks for collision with any food item
      */
     public boolean foodCollision() {
         Point head = snake.getSnake().get(0);
-        if (head.equals(food.getPosition())) {
-            LOGGER.fine("Collision with food.");
+        if (food.isAt(head)) {
+            LOGGER.finest("Collision with food.");
             return true;
         }
         return false;
@@ -59,7 +70,7 @@ public class CollisionDetector {
         Point head = snakeBody.get(0);
         for (int i = 1; i < snakeBody.size(); i++) {
             if (head.equals(snakeBody.get(i))) {
-                LOGGER.fine("Collision onto snake body.");
+                LOGGER.finest("Collision onto snake body.");
                 return true;
             }
         }
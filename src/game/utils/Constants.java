@@ -37,15 +37,31 @@ public final class Constants {
     /** Number of cols in the game grid. */
     public static final int NUM_COLS = 17;
 
-    /** Delay for the game loop {@link javax.swing.Timer}. */
+    /** Delay in milliseconds between ticks at the start of a game. */
     public static final int DELAY = 200;
 
+    /** Milliseconds taken off the delay between ticks for every apple eaten. */
+    public static final int DELAY_STEP = 4;
+
+    /** Shortest delay in milliseconds between ticks, reached as the score grows. */
+    public static final int MIN_DELAY = 80;
+
+    /** Maximum number of direction inputs that can wait for the next frames. Must be a power of two. */
+    public static final int INPUT_QUEUE_CAPACITY = 16;
+
     /**
-     * Size of the cells in the grid.
+     * Size of the cells in the grid at the default window size. The grid is drawn in units of this size and scaled to
+     * the size of the window and the pixel density of the screen.
      * Calculated based on {@code WIDTH}, {@code PADDING_SIZE}, and {@code NUM_COLS}.
      */
     public static final int CELL_SIZE = (int) ((WIDTH - 2.0 * PADDING_SIZE) / NUM_COLS + 0.5);
 
+    /**
+     * Smallest size of the cells in the grid when the window is shrunk. A board that does not fit at this size is
+     * shown at {@code CELL_SIZE} and scrolls instead.
+     */
+    public static final int MIN_CELL_SIZE = 12;
+
     /** Length of the snake at the start of each game. */
     public static final int SNAKE_INITIAL_LENGTH = 3;
 
@@ -54,4 +70,13 @@ public final class Constants {
 
     /** Position of the first fruit at the start of the game. */
     public static final Point FOOD_INITIAL_POSITION = new Point(12, 7);
+
+    /** Number of fruits on the board at once. The first is placed at {@code FOOD_INITIAL_POSITION}. */
+    public static final int FOOD_COUNT = 1;
+
+    /** Path to the level that can be switched on in place of the open board. Must match the board size. */
+    public static final String LEVEL_PATH = "src/resources/levels/pillars.lvl";
+
+    /** Path to the trained policy used by the autopilot. */
+    public static final String POLICY_PATH = "src/resources/data/policy.bin";
 }
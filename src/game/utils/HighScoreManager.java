@@ -1,9 +1,12 @@
 package game.utils;
 
 import game.LoggerSetup;
+import game.metrics.GameMetrics;
+import game.metrics.HighScoreEvent;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -54,6 +57,8 @@ public class HighScoreManager {
      * stored as a HighScore record within the list.
      */
     private void loadHighScores() {
+        HighScoreEvent event = new HighScoreEvent();
+        event.begin();
         try (BufferedReader br = new BufferedReader(new FileReader(path))) {
             String line;
             while((line = br.readLine()) != null) {
@@ -70,6 +75,7 @@ public class HighScoreManager {
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to load file from path: " + path, e);
         }
+        commit(event, "load");
     }
 
     /**
@@ -81,6 +87,9 @@ public class HighScoreManager {
      * @throws IllegalArgumentException if {@code score} is negative or if {@code name} is {@code null} or blank
      */
     public void saveHighScore(int score, String name) {
+        long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+        HighScoreEvent event = new HighScoreEvent();
+        event.begin();
         HighScore newScore = new HighScore(score, name, LocalDate.now());
         int l = 0;
         int r = highscores.size() - 1;
@@ -109,6 +118,24 @@ public class HighScoreManager {
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to save highscores at file: " + path, e);
         }
+        commit(event, "save");
+        if (GameMetrics.ENABLED)
+            GameMetrics.recordSave(System.nanoTime() - start);
+    }
+
+    /**
+     * Ends a flight recorder event for a load or save of the file and commits it if it is being recorded.
+     * @hidden
+     */
+    private void commit(HighScoreEvent event, String operation) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = path;
+            event.records = highscores.size();
+            event.bytes = new File(path).length();
+            event.commit();
+        }
     }
 
     /**